@@ -0,0 +1,92 @@
+package com.udacity.udasecurity.benchmarks;
+
+import com.udacity.udasecurity.security.data.AlarmStatus;
+import com.udacity.udasecurity.security.data.ArmingStatus;
+import com.udacity.udasecurity.security.data.SecurityRepository;
+import com.udacity.udasecurity.security.data.Sensor;
+import com.udacity.udasecurity.security.data.SensorType;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Repository that keeps everything in memory and does no I/O, so service benchmarks measure the
+ * service rather than storage.
+ */
+class InMemorySecurityRepository implements SecurityRepository {
+
+    private final Map<UUID, Sensor> sensors = new HashMap<>();
+    private final Map<UUID, Boolean> recordedActive = new HashMap<>();
+    private final int[] activeByType = new int[SensorType.values().length];
+    private int activeCount;
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    @Override
+    public synchronized boolean isAnySensorActive() {
+        return activeCount > 0;
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount() {
+        return activeCount;
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount(SensorType sensorType) {
+        return activeByType[sensorType.ordinal()];
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        updateSensor(sensor);
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        record(sensor, false);
+        sensors.remove(sensor.getSensorId());
+        recordedActive.remove(sensor.getSensorId());
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        sensors.put(sensor.getSensorId(), sensor);
+        record(sensor, sensor.getActive());
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+    }
+
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        return new LinkedHashSet<>(sensors.values());
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public synchronized ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    private void record(Sensor sensor, boolean active) {
+        Boolean previous = recordedActive.put(sensor.getSensorId(), active);
+        int delta = (active ? 1 : 0) - (Boolean.TRUE.equals(previous) ? 1 : 0);
+        activeCount += delta;
+        activeByType[sensor.getSensorType().ordinal()] += delta;
+    }
+}
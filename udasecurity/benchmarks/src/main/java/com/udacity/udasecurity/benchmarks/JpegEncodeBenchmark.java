@@ -0,0 +1,64 @@
+package com.udacity.udasecurity.benchmarks;
+
+import com.udacity.udasecurity.image.service.JpegEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a camera frame into the JPEG bytes AwsImageService sends to Rekognition: the
+ * pooled encoder it uses, next to a plain ImageIO.write into a fresh stream for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JpegEncodeBenchmark {
+
+    private BufferedImage frame;
+
+    @Setup
+    public void setUp() {
+        frame = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < frame.getHeight(); y++) {
+            for (int x = 0; x < frame.getWidth(); x++) {
+                //smooth gradient with some noise, closer to a camera frame than random pixels
+                int base = (x + y) / 5;
+                frame.setRGB(x, y, ((base + random.nextInt(16)) & 0xff) << 16 | (base & 0xff) << 8 | ((255 - base) & 0xff));
+            }
+        }
+    }
+
+    @Benchmark
+    public int pooledEncoder() throws IOException {
+        try (JpegEncoder encoder = JpegEncoder.acquire()) {
+            ByteBuffer jpeg = encoder.encode(frame);
+            return jpeg.remaining();
+        }
+    }
+
+    @Benchmark
+    public int imageIoWrite() throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ImageIO.write(frame, "jpg", os);
+        return os.toByteArray().length;
+    }
+}
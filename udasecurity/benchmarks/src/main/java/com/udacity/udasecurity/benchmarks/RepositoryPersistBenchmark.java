@@ -0,0 +1,96 @@
+package com.udacity.udasecurity.benchmarks;
+
+import com.udacity.udasecurity.security.data.EventLogSecurityRepositoryImpl;
+import com.udacity.udasecurity.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.udasecurity.security.data.SecurityRepository;
+import com.udacity.udasecurity.security.data.Sensor;
+import com.udacity.udasecurity.security.data.SensorType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Latency of persisting a single sensor change in each repository implementation.
+ *
+ * The preferences-backed repository writes to the user preferences, so the forked JVM points the
+ * preferences root at the build directory to keep the benchmark away from the real application data.
+ * At 1000 sensors its encoded sensors no longer fit one preference value and are saved in chunks,
+ * so that run also measures rewriting every chunk on each change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.util.prefs.userRoot=target/jmh-prefs")
+public class RepositoryPersistBenchmark {
+
+    @Param({"10", "1000"})
+    private int sensorCount;
+
+    @Param({"pretend", "eventLog"})
+    private String repository;
+
+    private SecurityRepository securityRepository;
+    private Path eventLogDirectory;
+    private Sensor[] sensors;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (repository.equals("pretend")) {
+            securityRepository = new PretendDatabaseSecurityRepositoryImpl();
+            securityRepository.getSensors().forEach(securityRepository::removeSensor);
+        } else {
+            eventLogDirectory = Files.createTempDirectory("event-log-benchmark");
+            securityRepository = new EventLogSecurityRepositoryImpl(eventLogDirectory);
+        }
+        sensors = new Sensor[sensorCount];
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < sensorCount; i++) {
+            sensors[i] = new Sensor("sensor" + i, types[i % types.length]);
+        }
+        //one write, rather than rewriting every sensor saved so far for each one added
+        securityRepository.updateSensors(Arrays.asList(sensors));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (securityRepository instanceof EventLogSecurityRepositoryImpl) {
+            ((EventLogSecurityRepositoryImpl) securityRepository).close();
+            try (Stream<Path> files = Files.walk(eventLogDirectory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        } else {
+            for (Sensor sensor : sensors) {
+                securityRepository.removeSensor(sensor);
+            }
+        }
+    }
+
+    @Benchmark
+    public void updateSensor() {
+        Sensor sensor = sensors[next];
+        next = next + 1 == sensors.length ? 0 : next + 1;
+        sensor.setActive(!sensor.getActive());
+        securityRepository.updateSensor(sensor);
+    }
+}
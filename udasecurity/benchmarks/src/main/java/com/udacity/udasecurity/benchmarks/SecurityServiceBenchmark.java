@@ -0,0 +1,73 @@
+package com.udacity.udasecurity.benchmarks;
+
+import com.udacity.udasecurity.image.service.ImageService;
+import com.udacity.udasecurity.security.data.ArmingStatus;
+import com.udacity.udasecurity.security.data.Sensor;
+import com.udacity.udasecurity.security.data.SensorType;
+import com.udacity.udasecurity.security.service.SecurityService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the SecurityService entry points against an in-memory repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecurityServiceBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int sensorCount;
+
+    private SecurityService securityService;
+    private Sensor[] sensors;
+    private BufferedImage frame;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        //stub classifier so processImage measures the service, not image analysis
+        ImageService noCats = (image, confidenceThreshhold) -> false;
+        securityService = new SecurityService(new InMemorySecurityRepository(), noCats);
+        sensors = new Sensor[sensorCount];
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < sensorCount; i++) {
+            sensors[i] = new Sensor("sensor" + i, types[i % types.length]);
+            securityService.addSensor(sensors[i]);
+        }
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        frame = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /**
+     * Flips one sensor per call, walking through all of them, so both the activation and the
+     * deactivation paths are exercised.
+     */
+    @Benchmark
+    public void changeSensorActivationStatus() {
+        Sensor sensor = sensors[next];
+        next = next + 1 == sensors.length ? 0 : next + 1;
+        securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+    }
+
+    @Benchmark
+    public void processImage() {
+        securityService.processImage(frame);
+    }
+}
@@ -0,0 +1,66 @@
+package com.udacity.udasecurity.benchmarks;
+
+import com.udacity.udasecurity.security.data.Sensor;
+import com.udacity.udasecurity.security.data.SensorType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of ordering sensors: a single compareTo, and the remove-and-add churn a TreeSet of
+ * sensors pays on every update.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SensorOrderingBenchmark {
+
+    @Param({"1000"})
+    private int sensorCount;
+
+    private Sensor first;
+    private Sensor sameName;
+    private Sensor[] sensors;
+    private TreeSet<Sensor> sorted;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        //equal names force the comparison down to type and id, the most expensive case
+        first = new Sensor("front door", SensorType.DOOR);
+        sameName = new Sensor("front door", SensorType.DOOR);
+        sensors = new Sensor[sensorCount];
+        sorted = new TreeSet<>();
+        for (int i = 0; i < sensorCount; i++) {
+            sensors[i] = new Sensor("sensor" + i, SensorType.values()[i % SensorType.values().length]);
+            sorted.add(sensors[i]);
+        }
+    }
+
+    @Benchmark
+    public int compareTo() {
+        return first.compareTo(sameName);
+    }
+
+    @Benchmark
+    public boolean treeSetChurn() {
+        Sensor sensor = sensors[next];
+        next = next + 1 == sensors.length ? 0 : next + 1;
+        sorted.remove(sensor);
+        return sorted.add(sensor);
+    }
+}
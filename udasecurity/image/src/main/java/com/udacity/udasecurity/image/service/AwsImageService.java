@@ -1,5 +1,7 @@
 package com.udacity.udasecurity.image.service;
 
+import com.udacity.udasecurity.metrics.MetricsRegistry;
+import com.udacity.udasecurity.metrics.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
@@ -7,17 +9,20 @@ import software.amazon.awssdk.auth.credentials.AwsCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.rekognition.RekognitionAsyncClient;
 import software.amazon.awssdk.services.rekognition.RekognitionClient;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
 import software.amazon.awssdk.services.rekognition.model.Image;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -37,8 +42,14 @@ public class AwsImageService implements ImageService {
 
     private Logger log = LoggerFactory.getLogger(AwsImageService.class);
 
+    //time spent encoding frames versus waiting for Rekognition
+    private static final Timer encodeTimer = MetricsRegistry.global().timer("image.aws.encode");
+    private static final Timer requestTimer = MetricsRegistry.global().timer("image.aws.request");
+
     //aws recommendation is to maintain only a single instance of client objects
     private static RekognitionClient rekognitionClient;
+    //used for batches, so many requests can be in flight without a thread per request
+    private static RekognitionAsyncClient rekognitionAsyncClient;
 
     public AwsImageService() {
         Properties props = new Properties();
@@ -58,6 +69,10 @@ public class AwsImageService implements ImageService {
                 .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
                 .region(Region.of(awsRegion))
                 .build();
+        rekognitionAsyncClient = RekognitionAsyncClient.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
+                .region(Region.of(awsRegion))
+                .build();
     }
 
     /**
@@ -67,20 +82,111 @@ public class AwsImageService implements ImageService {
      * @return
      */
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
-        Image awsImage = null;
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "jpg", os);
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
+        SdkBytes bytes;
+        long start = encodeTimer.start();
+        try (JpegEncoder encoder = JpegEncoder.acquire()) {
+            //SdkBytes takes its own copy, so the encoder can go back to the pool straight away
+            bytes = SdkBytes.fromByteBuffer(encoder.encode(image));
         } catch (IOException ioe) {
             log.error("Error building image byte array", ioe);
             return false;
+        } finally {
+            encodeTimer.stop(start);
         }
-        DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
-        DetectLabelsResponse response = rekognitionClient.detectLabels(detectLabelsRequest);
+        return detectCat(bytes, confidenceThreshhold);
+    }
+
+    /**
+     * Returns true if the provided JPEG-encoded image contains a cat. The bytes are sent to
+     * Rekognition as they are, without decoding or re-encoding the image.
+     * @param jpeg Encoded image, from its position to its limit
+     * @param confidenceThreshhold Minimum threshhold to consider for cat
+     */
+    @Override
+    public boolean imageContainsCat(ByteBuffer jpeg, float confidenceThreshhold) {
+        return detectCat(toSdkBytes(jpeg), confidenceThreshhold);
+    }
+
+    /**
+     * Classifies several images by pipelining their requests over the shared async client. Each
+     * image is encoded on the calling thread and its request sent immediately, so encoding of the
+     * next image overlaps with the network round trips of the previous ones. An image whose
+     * request fails is logged and counts as showing no cat; the rest of the batch is unaffected.
+     * @param images Images to scan
+     * @param confidenceThreshhold Minimum threshhold to consider for cat
+     * @return Whether each image contains a cat, in the same order as the images
+     */
+    @Override
+    public List<Boolean> classifyBatch(List<BufferedImage> images, float confidenceThreshhold) {
+        List<CompletableFuture<Boolean>> requests = new ArrayList<>(images.size());
+        for (BufferedImage image : images) {
+            DetectLabelsRequest request;
+            long encodeStart = encodeTimer.start();
+            try (JpegEncoder encoder = JpegEncoder.acquire()) {
+                request = buildRequest(SdkBytes.fromByteBuffer(encoder.encode(image)), confidenceThreshhold);
+            } catch (IOException ioe) {
+                log.error("Error building image byte array", ioe);
+                requests.add(CompletableFuture.completedFuture(false));
+                continue;
+            } finally {
+                encodeTimer.stop(encodeStart);
+            }
+            requests.add(sendAsync(request));
+        }
+        return requests.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
+    /**
+     * Sends one request of a batch.
+     * @return Future completed with whether the image contains a cat, or false if the request failed
+     */
+    private CompletableFuture<Boolean> sendAsync(DetectLabelsRequest request) {
+        long start = requestTimer.start();
+        CompletableFuture<DetectLabelsResponse> response;
+        try {
+            response = rekognitionAsyncClient.detectLabels(request);
+        } catch (RuntimeException e) {
+            //the client may reject a request before returning a future
+            response = CompletableFuture.failedFuture(e);
+        }
+        return response.handle((result, error) -> {
+            requestTimer.stop(start);
+            if (error != null) {
+                log.error("Rekognition request failed", error);
+                return false;
+            }
+            return containsCat(result);
+        });
+    }
+
+    private boolean detectCat(SdkBytes bytes, float confidenceThreshhold) {
+        long start = requestTimer.start();
+        DetectLabelsResponse response = rekognitionClient.detectLabels(buildRequest(bytes, confidenceThreshhold));
+        requestTimer.stop(start);
+        return containsCat(response);
+    }
+
+    private DetectLabelsRequest buildRequest(SdkBytes bytes, float confidenceThreshhold) {
+        Image awsImage = Image.builder().bytes(bytes).build();
+        return DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
+    }
+
+    private boolean containsCat(DetectLabelsResponse response) {
         logLabelsForFun(response);
         return response.labels().stream().filter(l -> l.name().toLowerCase().contains("cat")).findFirst().isPresent();
     }
 
+    /**
+     * Wraps a buffer that exactly covers its backing array without copying it. Any other buffer,
+     * such as a slice or a memory-mapped file, needs a single copy onto the heap.
+     */
+    private static SdkBytes toSdkBytes(ByteBuffer jpeg) {
+        if (jpeg.hasArray() && jpeg.arrayOffset() == 0 && jpeg.position() == 0 && jpeg.remaining() == jpeg.array().length) {
+            return SdkBytes.fromByteArrayUnsafe(jpeg.array());
+        }
+        return SdkBytes.fromByteBuffer(jpeg.duplicate());
+    }
+
     private void logLabelsForFun(DetectLabelsResponse response) {
         log.info(response.labels().stream()
                 .map(label -> String.format("%s(%.1f%%)", label.name(), label.confidence()))
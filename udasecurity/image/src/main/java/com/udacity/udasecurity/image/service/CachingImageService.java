@@ -0,0 +1,213 @@
+package com.udacity.udasecurity.image.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * ImageService decorator that remembers recent results, keyed on a perceptual hash of the image.
+ * Camera frames of an unchanged scene hash to the same or nearly the same value, so they can be
+ * answered from the cache instead of paying for another classifier call.
+ *
+ * Encoded images are passed on to the wrapped service still encoded. They are keyed on a hash of
+ * their bytes instead, which needs no decode but only matches byte-identical images.
+ *
+ * Entries are kept per confidence threshold, expire after a fixed time to live, and the least
+ * recently used entry is evicted once the cache is full.
+ */
+public class CachingImageService implements ImageService {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    public static final int DEFAULT_MAX_HAMMING_DISTANCE = 4;
+
+    private final ImageService delegate;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final int maxHammingDistance;
+    private final LongSupplier nanoClock;
+
+    //access-ordered so iteration starts at the least recently used entry
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CachingImageService(ImageService delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS, DEFAULT_MAX_HAMMING_DISTANCE);
+    }
+
+    /**
+     * @param delegate Service that classifies images missing from the cache
+     * @param maxEntries Maximum number of cached results
+     * @param ttlMillis How long a cached result may be reused
+     * @param maxHammingDistance Number of differing hash bits still treated as the same scene. Zero requires an exact match.
+     */
+    public CachingImageService(ImageService delegate, int maxEntries, long ttlMillis, int maxHammingDistance) {
+        this(delegate, maxEntries, ttlMillis, maxHammingDistance, System::nanoTime);
+    }
+
+    CachingImageService(ImageService delegate, int maxEntries, long ttlMillis, int maxHammingDistance, LongSupplier nanoClock) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxHammingDistance = maxHammingDistance;
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if (image == null) {
+            return delegate.imageContainsCat(image, confidenceThreshhold);
+        }
+        long hash = ImageSampling.differenceHash(image);
+        Boolean cached = lookup(hash, false, confidenceThreshhold);
+        if (cached != null) {
+            return cached;
+        }
+        boolean result = delegate.imageContainsCat(image, confidenceThreshhold);
+        store(hash, false, confidenceThreshhold, result);
+        return result;
+    }
+
+    @Override
+    public boolean imageContainsCat(ByteBuffer jpeg, float confidenceThreshhold) {
+        long hash = ImageSampling.contentHash(jpeg);
+        Boolean cached = lookup(hash, true, confidenceThreshhold);
+        if (cached != null) {
+            return cached;
+        }
+        boolean result = delegate.imageContainsCat(jpeg, confidenceThreshhold);
+        store(hash, true, confidenceThreshhold, result);
+        return result;
+    }
+
+    @Override
+    public boolean imageContainsCat(Path jpegFile, float confidenceThreshhold) throws IOException {
+        long hash = ImageSampling.contentHash(ImageSampling.map(jpegFile));
+        Boolean cached = lookup(hash, true, confidenceThreshhold);
+        if (cached != null) {
+            return cached;
+        }
+        boolean result = delegate.imageContainsCat(jpegFile, confidenceThreshhold);
+        store(hash, true, confidenceThreshhold, result);
+        return result;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Finds a live result for the image and counts the hit or miss.
+     * @param encoded Whether the hash was taken over encoded bytes, which only match exactly
+     */
+    private synchronized Boolean lookup(long hash, boolean encoded, float confidenceThreshhold) {
+        Boolean result = find(hash, encoded, confidenceThreshhold);
+        if (result != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return result;
+    }
+
+    private Boolean find(long hash, boolean encoded, float confidenceThreshhold) {
+        long now = nanoClock.getAsLong();
+        Key exact = new Key(hash, encoded, confidenceThreshhold);
+        Entry entry = entries.get(exact);
+        if (entry != null) {
+            if (now - entry.createdNanos < ttlNanos) {
+                return entry.catDetected;
+            }
+            entries.remove(exact);
+        }
+        if (encoded || maxHammingDistance == 0) {
+            return null;
+        }
+
+        //no exact hit, so look for the closest live entry of the same scene
+        Key nearest = null;
+        int nearestDistance = maxHammingDistance + 1;
+        for (Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Key, Entry> candidate = it.next();
+            if (now - candidate.getValue().createdNanos >= ttlNanos) {
+                it.remove();
+                continue;
+            }
+            Key key = candidate.getKey();
+            if (key.encoded || key.confidenceThreshhold != confidenceThreshhold) {
+                continue;
+            }
+            int distance = Long.bitCount(key.hash ^ hash);
+            if (distance < nearestDistance) {
+                nearest = key;
+                nearestDistance = distance;
+            }
+        }
+        return nearest == null ? null : entries.get(nearest).catDetected;
+    }
+
+    private synchronized void store(long hash, boolean encoded, float confidenceThreshhold, boolean catDetected) {
+        entries.put(new Key(hash, encoded, confidenceThreshhold), new Entry(catDetected, nanoClock.getAsLong()));
+        if (entries.size() > maxEntries) {
+            Iterator<Key> eldest = entries.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private static class Key {
+        private final long hash;
+        private final boolean encoded;
+        private final float confidenceThreshhold;
+
+        Key(long hash, boolean encoded, float confidenceThreshhold) {
+            this.hash = hash;
+            this.encoded = encoded;
+            this.confidenceThreshhold = confidenceThreshhold;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return hash == key.hash && encoded == key.encoded && Float.compare(key.confidenceThreshhold, confidenceThreshhold) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hash, encoded, confidenceThreshhold);
+        }
+    }
+
+    private static class Entry {
+        private final boolean catDetected;
+        private final long createdNanos;
+
+        Entry(boolean catDetected, long createdNanos) {
+            this.catDetected = catDetected;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
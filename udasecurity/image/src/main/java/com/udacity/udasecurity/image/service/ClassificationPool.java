@@ -0,0 +1,23 @@
+package com.udacity.udasecurity.image.service;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Shared worker pool used by {@link ImageService#classifyBatch(java.util.List, float)} to fan
+ * out classification calls. Created on first use.
+ */
+final class ClassificationPool {
+
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    private ClassificationPool() {
+    }
+
+    static ExecutorService get() {
+        return Holder.POOL;
+    }
+
+    private static class Holder {
+        private static final ExecutorService POOL = ImageAnalysisPipeline.newWorkerExecutor(THREADS);
+    }
+}
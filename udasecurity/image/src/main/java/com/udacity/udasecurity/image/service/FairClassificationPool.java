@@ -0,0 +1,180 @@
+package com.udacity.udasecurity.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Classifier shared by many tenants, for example every home hosted in one JVM. Each tenant gets
+ * an {@link ImageService} view from {@link #forTenant(String)} whose images wait in a queue of
+ * their own. Workers take one image at a time from each tenant with waiting images in turn, so a
+ * tenant sending a flood of frames only delays its own frames: everyone else still gets a turn
+ * after at most one image from each other busy tenant.
+ *
+ * Calls on a tenant view block until their images have been classified.
+ */
+public class FairClassificationPool implements AutoCloseable {
+
+    private final ImageService imageService;
+
+    //tenants with waiting images, in the order they are served
+    private final Deque<TenantQueue> ready = new ArrayDeque<>();
+    private boolean closed;
+
+    /**
+     * @param imageService Classifier doing the actual work
+     * @param threads Number of images classified at the same time across all tenants
+     */
+    public FairClassificationPool(ImageService imageService, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.imageService = imageService;
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(this::work, "fair-classifier-" + (i + 1));
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * @param tenantId Name of the tenant, shown by the view's toString
+     * @return Classifier whose images are queued separately from every other view's
+     */
+    public ImageService forTenant(String tenantId) {
+        return new TenantImageService(new TenantQueue(tenantId));
+    }
+
+    /**
+     * Stops the workers. Images still waiting fail with a {@link CancellationException}.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (TenantQueue tenant : ready) {
+            tenant.tasks.forEach(task -> task.result.cancel(false));
+            tenant.tasks.clear();
+            tenant.queued = false;
+        }
+        ready.clear();
+        notifyAll();
+    }
+
+    private CompletableFuture<Boolean> submit(TenantQueue tenant, Supplier<Boolean> classification) {
+        Task task = new Task(classification);
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Classification pool is closed");
+            }
+            tenant.tasks.add(task);
+            if (!tenant.queued) {
+                tenant.queued = true;
+                ready.add(tenant);
+            }
+            notify();
+        }
+        return task.result;
+    }
+
+    private void work() {
+        while (true) {
+            Task task;
+            synchronized (this) {
+                while (ready.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                TenantQueue tenant = ready.poll();
+                task = tenant.tasks.poll();
+                if (tenant.tasks.isEmpty()) {
+                    tenant.queued = false;
+                } else {
+                    //back of the line until every other waiting tenant had a turn
+                    ready.add(tenant);
+                }
+            }
+            task.run();
+        }
+    }
+
+    private static boolean join(CompletableFuture<Boolean> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static class Task {
+        private final Supplier<Boolean> classification;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        Task(Supplier<Boolean> classification) {
+            this.classification = classification;
+        }
+
+        void run() {
+            try {
+                result.complete(classification.get());
+            } catch (RuntimeException | Error e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static class TenantQueue {
+        private final String tenantId;
+        private final Deque<Task> tasks = new ArrayDeque<>();
+        //whether the tenant is in the ready queue
+        private boolean queued;
+
+        TenantQueue(String tenantId) {
+            this.tenantId = tenantId;
+        }
+    }
+
+    private class TenantImageService implements ImageService {
+        private final TenantQueue tenant;
+
+        TenantImageService(TenantQueue tenant) {
+            this.tenant = tenant;
+        }
+
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+            return join(submit(tenant, () -> imageService.imageContainsCat(image, confidenceThreshhold)));
+        }
+
+        /**
+         * Queues every image at once, so the batch is spread over the workers while still taking
+         * turns with other tenants.
+         */
+        @Override
+        public List<Boolean> classifyBatch(List<BufferedImage> images, float confidenceThreshhold) {
+            List<CompletableFuture<Boolean>> results = images.stream()
+                    .map(image -> submit(tenant, () -> imageService.imageContainsCat(image, confidenceThreshhold)))
+                    .collect(Collectors.toList());
+            return results.stream().map(FairClassificationPool::join).collect(Collectors.toList());
+        }
+
+        @Override
+        public String toString() {
+            return "FairClassificationPool tenant " + tenant.tenantId;
+        }
+    }
+}
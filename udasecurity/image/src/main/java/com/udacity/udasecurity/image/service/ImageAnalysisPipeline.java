@@ -0,0 +1,303 @@
+package com.udacity.udasecurity.image.service;
+
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs image analysis off the caller's thread. Frames wait in a bounded queue until one of the
+ * worker slots is free; when the queue is full the oldest waiting frame is dropped, so a queue
+ * capacity of 1 gives latest-wins behavior for camera feeds.
+ *
+ * Frames may be classified in parallel, but results are always handed to the result handler
+ * in the order the frames were submitted. Dropped frames are skipped and their futures cancelled.
+ */
+public class ImageAnalysisPipeline implements AutoCloseable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+    /**
+     * Receives the result for each classified frame, in submission order.
+     */
+    public interface ResultHandler {
+        void accept(BufferedImage image, boolean catDetected);
+    }
+
+    private final ImageService imageService;
+    private final float confidenceThreshhold;
+    private final ExecutorService workers;
+    private final int maxInFlight;
+    private final int queueCapacity;
+    private final Executor resultExecutor;
+    private final ResultHandler resultHandler;
+
+    //frames that have not started classification yet, oldest first
+    private final Deque<Frame> waiting = new ArrayDeque<>();
+    //every frame that has not been delivered yet, in submission order
+    private final Deque<Frame> undelivered = new ArrayDeque<>();
+    private int inFlight;
+    private boolean delivering;
+    private boolean discarded;
+
+    /**
+     * @param imageService Classifier used for each frame
+     * @param confidenceThreshhold Threshold passed to the classifier
+     * @param workers Executor the classification calls run on
+     * @param maxInFlight Maximum number of frames classified at the same time
+     * @param queueCapacity Maximum number of frames waiting for a free worker
+     * @param resultExecutor Executor the result handler is invoked on. Must preserve submission order.
+     * @param resultHandler Receives the result of each frame that was not dropped
+     */
+    public ImageAnalysisPipeline(ImageService imageService, float confidenceThreshhold, ExecutorService workers,
+                                 int maxInFlight, int queueCapacity, Executor resultExecutor, ResultHandler resultHandler) {
+        if (maxInFlight < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("maxInFlight and queueCapacity must be positive");
+        }
+        this.imageService = imageService;
+        this.confidenceThreshhold = confidenceThreshhold;
+        this.workers = workers;
+        this.maxInFlight = maxInFlight;
+        this.queueCapacity = queueCapacity;
+        this.resultExecutor = resultExecutor;
+        this.resultHandler = resultHandler;
+    }
+
+    /**
+     * Queues a frame for classification.
+     * @param image Frame to classify
+     * @return Future completed with the classification result once the result handler has run,
+     * or cancelled if the frame was dropped before classification started or the pipeline was discarded
+     */
+    public CompletableFuture<Boolean> submit(BufferedImage image) {
+        Frame frame = new Frame(image);
+        Frame dropped = null;
+        boolean start = false;
+        synchronized (this) {
+            if (discarded) {
+                frame.future.cancel(false);
+                return frame.future;
+            }
+            undelivered.addLast(frame);
+            if (inFlight < maxInFlight) {
+                inFlight++;
+                start = true;
+            } else {
+                if (waiting.size() == queueCapacity) {
+                    dropped = waiting.pollFirst();
+                    dropped.done = true;
+                }
+                waiting.addLast(frame);
+            }
+        }
+        if (dropped != null) {
+            dropped.future.cancel(false);
+            deliverCompleted();
+        }
+        if (start) {
+            start(frame);
+        }
+        return frame.future;
+    }
+
+    /**
+     * Creates a worker executor for classification calls, using virtual threads when the running
+     * JVM provides them and a fixed pool of daemon threads otherwise. Either way no more than the
+     * given number of calls run at the same time.
+     * @param threads Maximum number of calls running at the same time
+     */
+    public static ExecutorService newWorkerExecutor(int threads) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            //a thread per task has no limit of its own, so tasks queue for a permit instead
+            return new BoundedExecutor((ExecutorService) factory.invoke(null), threads);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "image-analysis-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Runs tasks on another executor, at most a fixed number at a time. Tasks over the limit wait
+     * for a permit on their own thread, which is cheap when the threads are virtual.
+     */
+    static class BoundedExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        BoundedExecutor(ExecutorService delegate, int maxRunning) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxRunning);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(() -> {
+                permits.acquireUninterruptibly();
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+
+    /**
+     * Stops handing results to the result handler, for example once the camera feeding the pipeline
+     * is gone. Frames still waiting are cancelled, and frames being classified are cancelled once
+     * they finish instead of being delivered; a result already being handed over still completes.
+     * The worker executor is left running, so this is the way to stop a pipeline sharing one.
+     */
+    public void discard() {
+        List<Frame> cancelled;
+        synchronized (this) {
+            discarded = true;
+            cancelled = new ArrayList<>(waiting);
+            waiting.clear();
+            cancelled.forEach(frame -> frame.done = true);
+        }
+        cancelled.forEach(frame -> frame.future.cancel(false));
+        deliverCompleted();
+    }
+
+    /**
+     * Shuts down the worker executor. Pipelines that share an executor should leave it to its owner instead.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+
+    private void start(Frame frame) {
+        try {
+            workers.execute(() -> classify(frame));
+        } catch (RuntimeException e) {
+            finish(frame, null, e);
+        }
+    }
+
+    private void classify(Frame frame) {
+        try {
+            finish(frame, imageService.imageContainsCat(frame.image, confidenceThreshhold), null);
+        } catch (RuntimeException e) {
+            finish(frame, null, e);
+        }
+    }
+
+    private void finish(Frame frame, Boolean result, Throwable error) {
+        Frame next;
+        synchronized (this) {
+            frame.result = result;
+            frame.error = error;
+            frame.done = true;
+            next = waiting.pollFirst();
+            if (next == null) {
+                inFlight--;
+            }
+        }
+        if (next != null) {
+            start(next);
+        }
+        deliverCompleted();
+    }
+
+    /**
+     * Hands finished frames to the result handler in submission order. Only one thread delivers
+     * at a time; other threads finishing frames meanwhile leave their results for it to pick up.
+     */
+    private void deliverCompleted() {
+        synchronized (this) {
+            if (delivering) {
+                return;
+            }
+            delivering = true;
+        }
+        while (true) {
+            Frame frame;
+            synchronized (this) {
+                Frame head = undelivered.peekFirst();
+                if (head == null || !head.done) {
+                    delivering = false;
+                    return;
+                }
+                frame = undelivered.pollFirst();
+            }
+            if (frame.error != null) {
+                frame.future.completeExceptionally(frame.error);
+            } else if (frame.result != null) {
+                try {
+                    resultExecutor.execute(() -> deliver(frame));
+                } catch (RuntimeException e) {
+                    frame.future.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private void deliver(Frame frame) {
+        synchronized (this) {
+            if (discarded) {
+                frame.future.cancel(false);
+                return;
+            }
+        }
+        try {
+            resultHandler.accept(frame.image, frame.result);
+            frame.future.complete(frame.result);
+        } catch (RuntimeException e) {
+            frame.future.completeExceptionally(e);
+        }
+    }
+
+    private static class Frame {
+        private final BufferedImage image;
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        private Boolean result;
+        private Throwable error;
+        private boolean done;
+
+        Frame(BufferedImage image) {
+            this.image = image;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.udacity.udasecurity.image.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+
+/**
+ * Small helpers for decoding images and reducing them to a coarse grayscale grid. Used by the
+ * services that only need a rough picture of a frame, such as hashing and motion detection.
+ */
+final class ImageSampling {
+
+    private ImageSampling() {
+    }
+
+    /**
+     * Shrinks an image to the requested size by averaging the luminance of each block of source pixels.
+     * @param image Source image
+     * @param width Width of the resulting grid
+     * @param height Height of the resulting grid
+     * @return Row-major luminance values in the range 0-255
+     */
+    static int[] downsampleGray(BufferedImage image, int width, int height) {
+        int sourceWidth = image.getWidth();
+        int sourceHeight = image.getHeight();
+        long[] sums = new long[width * height];
+        int[] counts = new int[width * height];
+        int[] row = new int[sourceWidth];
+
+        //precompute which grid column each source column falls into
+        int[] column = new int[sourceWidth];
+        for (int x = 0; x < sourceWidth; x++) {
+            column[x] = (int) ((long) x * width / sourceWidth);
+        }
+
+        for (int y = 0; y < sourceHeight; y++) {
+            int offset = (int) ((long) y * height / sourceHeight) * width;
+            image.getRGB(0, y, sourceWidth, 1, row, 0, sourceWidth);
+            for (int x = 0; x < sourceWidth; x++) {
+                int cell = offset + column[x];
+                sums[cell] += luminance(row[x]);
+                counts[cell]++;
+            }
+        }
+
+        int[] gray = new int[width * height];
+        for (int i = 0; i < gray.length; i++) {
+            gray[i] = counts[i] == 0 ? 0 : (int) (sums[i] / counts[i]);
+        }
+        return gray;
+    }
+
+    /**
+     * Difference hash: each bit records whether a cell of a 9x8 grayscale grid is brighter
+     * than its right-hand neighbor. Visually similar images produce hashes that differ in few bits.
+     */
+    static long differenceHash(BufferedImage image) {
+        int[] gray = downsampleGray(image, 9, 8);
+        long hash = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                hash <<= 1;
+                if (gray[y * 9 + x] > gray[y * 9 + x + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    static int luminance(int rgb) {
+        int r = (rgb >> 16) & 0xff;
+        int g = (rgb >> 8) & 0xff;
+        int b = rgb & 0xff;
+        return (r * 299 + g * 587 + b * 114) / 1000;
+    }
+
+    /**
+     * Decodes an encoded image, from the buffer's position to its limit, without changing the
+     * buffer's position. With a minimum size only every n-th pixel in each direction is read, which
+     * is much cheaper than a full decode when only a rough picture is needed.
+     * @param minWidth Smallest width the result may have; zero decodes at full size
+     * @param minHeight Smallest height the result may have; zero decodes at full size
+     * @throws IllegalArgumentException If no installed image reader understands the data
+     */
+    static BufferedImage decode(ByteBuffer encoded, int minWidth, int minHeight) {
+        ByteBuffer view = encoded.duplicate();
+        byte[] bytes;
+        int offset;
+        if (view.hasArray()) {
+            bytes = view.array();
+            offset = view.arrayOffset() + view.position();
+        } else {
+            bytes = new byte[view.remaining()];
+            view.get(bytes);
+            offset = 0;
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes, offset, encoded.remaining()))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IllegalArgumentException("Image data is in no format an installed image reader supports");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (minWidth > 0 && minHeight > 0) {
+                    int step = Math.max(1, Math.min(reader.getWidth(0) / minWidth, reader.getHeight(0) / minHeight));
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to decode image", ioe);
+        }
+    }
+
+    /**
+     * Memory-maps a whole file read-only. The mapping stays valid after this returns.
+     */
+    static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Hashes encoded image bytes, from the buffer's position to its limit, without changing the
+     * buffer's position. Unlike {@link #differenceHash} it only matches identical bytes, but it
+     * needs no decode.
+     */
+    static long contentHash(ByteBuffer encoded) {
+        ByteBuffer view = encoded.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        long hash = 0x9E3779B97F4A7C15L ^ view.remaining();
+        while (view.remaining() >= Long.BYTES) {
+            hash = Long.rotateLeft(hash ^ view.getLong() * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+        }
+        while (view.hasRemaining()) {
+            hash = (hash ^ (view.get() & 0xff)) * 0x100000001B3L;
+        }
+        return hash ^ (hash >>> 29);
+    }
+}
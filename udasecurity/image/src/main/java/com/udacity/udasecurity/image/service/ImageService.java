@@ -1,8 +1,52 @@
 package com.udacity.udasecurity.image.service;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 public interface ImageService {
 
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold);
+
+    /**
+     * Returns true if the provided JPEG-encoded image contains a cat. The default implementation
+     * decodes the image and delegates to {@link #imageContainsCat(BufferedImage, float)}; services
+     * that work on encoded bytes should override it to skip the decode, and decorators should
+     * override it to pass the bytes on to the service they wrap.
+     * @param jpeg Encoded image, from its position to its limit. The buffer's position is not changed.
+     * @param confidenceThreshhold Minimum threshhold to consider for cat
+     * @throws IllegalArgumentException If the bytes are in no format an installed image reader supports
+     */
+    public default boolean imageContainsCat(ByteBuffer jpeg, float confidenceThreshhold) {
+        return imageContainsCat(ImageSampling.decode(jpeg, 0, 0), confidenceThreshhold);
+    }
+
+    /**
+     * Returns true if the JPEG file contains a cat. The file is memory-mapped and passed to
+     * {@link #imageContainsCat(ByteBuffer, float)} rather than read onto the heap.
+     * @param jpegFile Path to a JPEG-encoded image
+     * @param confidenceThreshhold Minimum threshhold to consider for cat
+     */
+    public default boolean imageContainsCat(Path jpegFile, float confidenceThreshhold) throws IOException {
+        return imageContainsCat(ImageSampling.map(jpegFile), confidenceThreshhold);
+    }
+
+    /**
+     * Classifies several images at once, for example the latest frame of each camera. The default
+     * implementation runs {@link #imageContainsCat(BufferedImage, float)} for every image in
+     * parallel on a shared worker pool.
+     * @param images Images to scan
+     * @param confidenceThreshhold Minimum threshhold to consider for cat
+     * @return Whether each image contains a cat, in the same order as the images
+     */
+    public default List<Boolean> classifyBatch(List<BufferedImage> images, float confidenceThreshhold) {
+        List<CompletableFuture<Boolean>> results = images.stream()
+                .map(image -> CompletableFuture.supplyAsync(() -> imageContainsCat(image, confidenceThreshhold), ClassificationPool.get()))
+                .collect(Collectors.toList());
+        return results.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
 }
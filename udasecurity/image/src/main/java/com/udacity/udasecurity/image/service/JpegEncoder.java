@@ -0,0 +1,104 @@
+package com.udacity.udasecurity.image.service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Reusable JPEG encoder. Encoders are borrowed from a small shared pool with {@link #acquire()}
+ * and handed back with {@link #close()}, so the ImageWriter, the output buffer and the scratch
+ * image used to strip alpha channels are allocated once rather than for every frame.
+ *
+ * Not thread safe: an encoder must only be used by the thread that acquired it.
+ */
+public final class JpegEncoder implements AutoCloseable {
+
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final ArrayBlockingQueue<JpegEncoder> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private final ImageWriter writer;
+    private final ExposedByteArrayOutputStream output = new ExposedByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+    private BufferedImage rgbScratch;
+
+    private JpegEncoder() {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
+        if (!writers.hasNext()) {
+            throw new IllegalStateException("No JPEG ImageWriter available");
+        }
+        writer = writers.next();
+    }
+
+    /**
+     * Borrows an encoder from the pool, creating one if the pool is empty.
+     */
+    public static JpegEncoder acquire() {
+        JpegEncoder encoder = pool.poll();
+        return encoder != null ? encoder : new JpegEncoder();
+    }
+
+    /**
+     * Encodes the image as JPEG. Images with an alpha channel are flattened to RGB first, since
+     * JPEG cannot store transparency.
+     * @return A view of the encoded bytes. Only valid until the next call to encode or close.
+     */
+    public ByteBuffer encode(BufferedImage image) throws IOException {
+        output.reset();
+        try (ImageOutputStream ios = new MemoryCacheImageOutputStream(output)) {
+            writer.setOutput(ios);
+            writer.write(new IIOImage(toRgb(image), null, null));
+        } finally {
+            writer.setOutput(null);
+        }
+        return output.view();
+    }
+
+    /**
+     * Returns the encoder to the pool. Buffers returned by {@link #encode(BufferedImage)} must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (!pool.offer(this)) {
+            writer.dispose();
+        }
+    }
+
+    private BufferedImage toRgb(BufferedImage image) {
+        if (!image.getColorModel().hasAlpha()) {
+            return image;
+        }
+        if (rgbScratch == null || rgbScratch.getWidth() != image.getWidth() || rgbScratch.getHeight() != image.getHeight()) {
+            rgbScratch = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        }
+        Graphics2D g = rgbScratch.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return rgbScratch;
+    }
+
+    /**
+     * ByteArrayOutputStream that exposes its buffer instead of copying it out.
+     */
+    private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        ExposedByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        ByteBuffer view() {
+            return ByteBuffer.wrap(buf, 0, count).asReadOnlyBuffer();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.udacity.udasecurity.image.service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Image Recognition Service that runs entirely on the local CPU, with no network or credentials
+ * required. Rather than a trained network it uses a deterministic feature-based classifier: cats
+ * show up as large areas of fur, which is both fur-colored (neutral, tan, orange or brown) and
+ * finely textured. The share of such pixels, penalized by strongly saturated colors that fur
+ * never has, is mapped through a logistic curve to a 0-100 confidence score.
+ *
+ * Images are scanned in horizontal bands on a ForkJoinPool so large frames use every core, and
+ * pixel rows are read straight from the raster's backing array where the image type allows it.
+ */
+public class LocalImageService implements ImageService {
+
+    //rows per unit of parallel work
+    private static final int BAND_ROWS = 64;
+
+    /*
+     * The constants below were tuned by hand against the three sample images bundled in
+     * src/main/resources, not fitted to a labelled data set, so they are a starting point rather
+     * than a measured accuracy. The tests pin down what they mean independently of those images:
+     * a frame in which 12% of the pixels are fur-colored texture scores exactly 50, and only
+     * luminance steps from 17 to 64 count as texture.
+     */
+
+    //gradient range that counts as fur texture: flat areas are below, hard object edges above
+    private static final int MIN_TEXTURE_GRADIENT = 16;
+    private static final int MAX_TEXTURE_GRADIENT = 64;
+
+    //logistic model weights, in units of the pixel ratios computed below
+    private static final double FUR_TEXTURE_WEIGHT = 40.0;
+    private static final double FUR_TEXTURE_MIDPOINT = 0.12;
+    private static final double SATURATED_WEIGHT = 20.0;
+
+    private final ForkJoinPool pool;
+
+    public LocalImageService() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public LocalImageService(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Returns true if the provided image contains a cat.
+     * @param image Image to scan
+     * @param confidenceThreshhold Minimum threshhold to consider for cat. For example, 90.0f would require 90% confidence minimum
+     */
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return image != null && confidence(image) >= confidenceThreshhold;
+    }
+
+    /**
+     * Scores how likely the image is to contain a cat.
+     * @return Confidence between 0 and 100
+     */
+    public float confidence(BufferedImage image) {
+        if (image.getWidth() < 2 || image.getHeight() < 2) {
+            return 0;
+        }
+        Features features = pool.invoke(new BandTask(image, 0, image.getHeight()));
+        double pixels = features.pixels;
+        double z = FUR_TEXTURE_WEIGHT * (features.furTexture / pixels - FUR_TEXTURE_MIDPOINT)
+                - SATURATED_WEIGHT * (features.saturated / pixels);
+        return (float) (100.0 / (1.0 + Math.exp(-z)));
+    }
+
+    /**
+     * Pixel counts gathered over a range of rows.
+     */
+    private static class Features {
+        private long pixels;
+        private long furTexture;
+        private long saturated;
+
+        Features merge(Features other) {
+            pixels += other.pixels;
+            furTexture += other.furTexture;
+            saturated += other.saturated;
+            return this;
+        }
+    }
+
+    /**
+     * Scans a range of rows, splitting it in half until it is small enough to process directly.
+     */
+    private static class BandTask extends RecursiveTask<Features> {
+        private final BufferedImage image;
+        private final int startRow;
+        private final int endRow;
+
+        BandTask(BufferedImage image, int startRow, int endRow) {
+            this.image = image;
+            this.startRow = startRow;
+            this.endRow = endRow;
+        }
+
+        @Override
+        protected Features compute() {
+            if (endRow - startRow <= BAND_ROWS) {
+                return scan();
+            }
+            int middle = (startRow + endRow) >>> 1;
+            BandTask top = new BandTask(image, startRow, middle);
+            top.fork();
+            Features bottom = new BandTask(image, middle, endRow).compute();
+            return top.join().merge(bottom);
+        }
+
+        private Features scan() {
+            Features features = new Features();
+            RowReader reader = new RowReader(image);
+            int width = image.getWidth();
+            int[] previous = new int[width];
+            int[] current = new int[width];
+
+            //the first row of the image has no row above it to compare against, so skip it
+            int y = Math.max(startRow, 1);
+            reader.read(y - 1, previous);
+            toLuminance(previous);
+            int[] rgb = new int[width];
+            for (; y < endRow; y++) {
+                reader.read(y, rgb);
+                for (int x = 0; x < width; x++) {
+                    current[x] = ImageSampling.luminance(rgb[x]);
+                }
+                for (int x = 1; x < width; x++) {
+                    int pixel = rgb[x];
+                    int r = (pixel >> 16) & 0xff;
+                    int g = (pixel >> 8) & 0xff;
+                    int b = pixel & 0xff;
+                    int max = Math.max(r, Math.max(g, b));
+                    int min = Math.min(r, Math.min(g, b));
+
+                    int gradient = Math.abs(current[x] - current[x - 1]) + Math.abs(current[x] - previous[x]);
+                    if (gradient > MIN_TEXTURE_GRADIENT && gradient <= MAX_TEXTURE_GRADIENT && isFurColored(r, g, b, max, min)) {
+                        features.furTexture++;
+                    }
+                    if (max - min > 100) {
+                        features.saturated++;
+                    }
+                }
+                features.pixels += width - 1;
+                int[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            return features;
+        }
+
+        private static boolean isFurColored(int r, int g, int b, int max, int min) {
+            boolean neutral = max - min < 20;
+            boolean warm = r >= g && g >= b && r - b > 30 && r - b < 150;
+            return neutral || warm;
+        }
+
+        private static void toLuminance(int[] row) {
+            for (int x = 0; x < row.length; x++) {
+                row[x] = ImageSampling.luminance(row[x]);
+            }
+        }
+    }
+
+    /**
+     * Reads rows of packed RGB values, copying directly out of the raster's backing array for the
+     * common image types instead of going through the per-pixel color model.
+     */
+    private static class RowReader {
+        private final BufferedImage image;
+        private final int width;
+        private final int[] intPixels;
+        private final byte[] bytePixels;
+
+        RowReader(BufferedImage image) {
+            this.image = image;
+            this.width = image.getWidth();
+            WritableRaster raster = image.getRaster();
+            boolean packed = raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+                    && raster.getParent() == null;
+            int type = image.getType();
+            if (packed && (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)) {
+                intPixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+                bytePixels = null;
+            } else if (packed && type == BufferedImage.TYPE_3BYTE_BGR) {
+                intPixels = null;
+                bytePixels = ((DataBufferByte) raster.getDataBuffer()).getData();
+            } else {
+                intPixels = null;
+                bytePixels = null;
+            }
+        }
+
+        void read(int y, int[] rgb) {
+            if (intPixels != null) {
+                System.arraycopy(intPixels, y * width, rgb, 0, width);
+            } else if (bytePixels != null) {
+                int offset = y * width * 3;
+                for (int x = 0; x < width; x++, offset += 3) {
+                    rgb[x] = (bytePixels[offset + 2] & 0xff) << 16 | (bytePixels[offset + 1] & 0xff) << 8 | (bytePixels[offset] & 0xff);
+                }
+            } else {
+                image.getRGB(0, y, width, 1, rgb, 0, width);
+            }
+        }
+    }
+}
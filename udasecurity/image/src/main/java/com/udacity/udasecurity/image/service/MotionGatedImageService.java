@@ -0,0 +1,283 @@
+package com.udacity.udasecurity.image.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ImageService decorator that only classifies frames showing motion. Each frame is shrunk to a
+ * small grayscale grid and compared against a rolling background model; if too few cells changed,
+ * the scene is considered unchanged and the previous result is returned without calling the
+ * wrapped service.
+ *
+ * Encoded frames are checked for motion on a subsampled decode that reads just enough pixels
+ * for the grid, and frames with motion are passed on to the wrapped service still encoded.
+ *
+ * The background model and previous result describe one camera's scene, so frames from different
+ * cameras must not share them: calls on the service itself are treated as one camera, and each
+ * further camera gets a view with a model of its own from {@link #forCamera(String)}. Views share
+ * the wrapped service and the counters.
+ */
+public class MotionGatedImageService implements ImageService {
+
+    public static final int DEFAULT_GRID_WIDTH = 64;
+    public static final int DEFAULT_GRID_HEIGHT = 48;
+    public static final int DEFAULT_PIXEL_THRESHOLD = 25;
+    public static final float DEFAULT_CHANGED_RATIO = 0.02f;
+    public static final float DEFAULT_BACKGROUND_RATE = 0.1f;
+
+    private final ImageService delegate;
+    private final int gridWidth;
+    private final int gridHeight;
+    private final int pixelThreshold;
+    private final float changedRatio;
+    private final float backgroundRate;
+
+    private final LongAdder forwarded = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    private final Scene scene = new Scene();
+
+    public MotionGatedImageService(ImageService delegate) {
+        this(delegate, DEFAULT_CHANGED_RATIO);
+    }
+
+    public MotionGatedImageService(ImageService delegate, float changedRatio) {
+        this(delegate, DEFAULT_GRID_WIDTH, DEFAULT_GRID_HEIGHT, DEFAULT_PIXEL_THRESHOLD, changedRatio, DEFAULT_BACKGROUND_RATE);
+    }
+
+    /**
+     * @param delegate Service that classifies frames with motion
+     * @param gridWidth Width of the grayscale grid frames are compared at
+     * @param gridHeight Height of the grayscale grid frames are compared at
+     * @param pixelThreshold Luminance difference (0-255) at which a grid cell counts as changed
+     * @param changedRatio Share of changed cells (0-1) a frame must exceed to be classified
+     * @param backgroundRate How quickly the background model follows the scene (0-1). Higher values forget motion sooner.
+     */
+    public MotionGatedImageService(ImageService delegate, int gridWidth, int gridHeight, int pixelThreshold,
+                                   float changedRatio, float backgroundRate) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.gridWidth = gridWidth;
+        this.gridHeight = gridHeight;
+        this.pixelThreshold = pixelThreshold;
+        this.changedRatio = changedRatio;
+        this.backgroundRate = backgroundRate;
+    }
+
+    /**
+     * @param cameraName Name of the camera, shown by the view's toString
+     * @return Gate with a background model and previous result of its own, for frames of one more camera
+     */
+    public ImageService forCamera(String cameraName) {
+        return new CameraView(cameraName, new Scene());
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return imageContainsCat(scene, image, confidenceThreshhold);
+    }
+
+    @Override
+    public boolean imageContainsCat(ByteBuffer jpeg, float confidenceThreshhold) {
+        return imageContainsCat(scene, jpeg, confidenceThreshhold);
+    }
+
+    @Override
+    public boolean imageContainsCat(Path jpegFile, float confidenceThreshhold) throws IOException {
+        return imageContainsCat(scene, jpegFile, confidenceThreshhold);
+    }
+
+    /**
+     * Checks the frames for motion one after the other, in list order, as if they had arrived one
+     * at a time, and then passes only the frames with motion on to the wrapped service in one batch.
+     */
+    @Override
+    public List<Boolean> classifyBatch(List<BufferedImage> images, float confidenceThreshhold) {
+        return classifyBatch(scene, images, confidenceThreshhold);
+    }
+
+    public long getForwardedCount() {
+        return forwarded.sum();
+    }
+
+    public long getSkippedCount() {
+        return skipped.sum();
+    }
+
+    private boolean imageContainsCat(Scene scene, BufferedImage image, float confidenceThreshhold) {
+        if (image == null) {
+            return delegate.imageContainsCat(image, confidenceThreshhold);
+        }
+        Boolean previous = scene.previousIfStill(image, confidenceThreshhold);
+        if (previous != null) {
+            return previous;
+        }
+        return scene.remember(delegate.imageContainsCat(image, confidenceThreshhold), confidenceThreshhold);
+    }
+
+    private boolean imageContainsCat(Scene scene, ByteBuffer jpeg, float confidenceThreshhold) {
+        Boolean previous = scene.previousIfStill(ImageSampling.decode(jpeg, gridWidth, gridHeight), confidenceThreshhold);
+        if (previous != null) {
+            return previous;
+        }
+        return scene.remember(delegate.imageContainsCat(jpeg, confidenceThreshhold), confidenceThreshhold);
+    }
+
+    private boolean imageContainsCat(Scene scene, Path jpegFile, float confidenceThreshhold) throws IOException {
+        BufferedImage preview = ImageSampling.decode(ImageSampling.map(jpegFile), gridWidth, gridHeight);
+        Boolean previous = scene.previousIfStill(preview, confidenceThreshhold);
+        if (previous != null) {
+            return previous;
+        }
+        return scene.remember(delegate.imageContainsCat(jpegFile, confidenceThreshhold), confidenceThreshhold);
+    }
+
+    private List<Boolean> classifyBatch(Scene scene, List<BufferedImage> images, float confidenceThreshhold) {
+        int[][] grays = new int[images.size()][];
+        for (int i = 0; i < grays.length; i++) {
+            BufferedImage image = images.get(i);
+            grays[i] = image == null ? null : ImageSampling.downsampleGray(image, gridWidth, gridHeight);
+        }
+        boolean[] still = new boolean[grays.length];
+        List<BufferedImage> moving = new ArrayList<>();
+        Boolean previous;
+        synchronized (scene) {
+            previous = scene.lastConfidenceThreshhold == confidenceThreshhold ? scene.lastResult : null;
+            //whether an earlier frame, from before or in this batch, has a result a still frame may reuse
+            boolean known = previous != null;
+            for (int i = 0; i < grays.length; i++) {
+                if (grays[i] == null) {
+                    moving.add(null);
+                } else if (!scene.updateBackground(grays[i]) && known) {
+                    still[i] = true;
+                } else {
+                    moving.add(images.get(i));
+                    known = true;
+                }
+            }
+        }
+        List<Boolean> classified = moving.isEmpty() ? List.of() : delegate.classifyBatch(moving, confidenceThreshhold);
+
+        List<Boolean> results = new ArrayList<>(grays.length);
+        Boolean last = previous;
+        boolean anyClassified = false;
+        int next = 0;
+        for (int i = 0; i < grays.length; i++) {
+            if (still[i]) {
+                skipped.increment();
+                results.add(last);
+                continue;
+            }
+            Boolean result = classified.get(next++);
+            if (grays[i] != null) {
+                forwarded.increment();
+                last = result;
+                anyClassified = true;
+            }
+            results.add(result);
+        }
+        if (anyClassified) {
+            scene.remember(last, confidenceThreshhold);
+        }
+        return results;
+    }
+
+    /**
+     * Background model and previous result of one camera's frames.
+     */
+    private class Scene {
+        private float[] background;
+        private Boolean lastResult;
+        private float lastConfidenceThreshhold;
+
+        /**
+         * Updates the background model with a frame.
+         * @return The previous result if the frame shows no motion and may reuse it, otherwise null
+         */
+        Boolean previousIfStill(BufferedImage image, float confidenceThreshhold) {
+            int[] gray = ImageSampling.downsampleGray(image, gridWidth, gridHeight);
+            synchronized (this) {
+                boolean motion = updateBackground(gray);
+                if (!motion && lastResult != null && lastConfidenceThreshhold == confidenceThreshhold) {
+                    skipped.increment();
+                    return lastResult;
+                }
+            }
+            forwarded.increment();
+            return null;
+        }
+
+        synchronized boolean remember(boolean result, float confidenceThreshhold) {
+            lastResult = result;
+            lastConfidenceThreshhold = confidenceThreshhold;
+            return result;
+        }
+
+        /**
+         * Compares a frame against the background model and then blends the frame into it. The
+         * caller holds the scene's lock.
+         * @return true if enough of the frame differs from the background to count as motion
+         */
+        boolean updateBackground(int[] gray) {
+            if (background == null) {
+                background = new float[gray.length];
+                for (int i = 0; i < gray.length; i++) {
+                    background[i] = gray[i];
+                }
+                return true;
+            }
+            int changed = 0;
+            for (int i = 0; i < gray.length; i++) {
+                float difference = gray[i] - background[i];
+                if (Math.abs(difference) > pixelThreshold) {
+                    changed++;
+                }
+                background[i] += backgroundRate * difference;
+            }
+            return changed > changedRatio * gray.length;
+        }
+    }
+
+    /**
+     * Gate for one more camera, with a scene of its own.
+     */
+    private class CameraView implements ImageService {
+        private final String cameraName;
+        private final Scene scene;
+
+        CameraView(String cameraName, Scene scene) {
+            this.cameraName = cameraName;
+            this.scene = scene;
+        }
+
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+            return MotionGatedImageService.this.imageContainsCat(scene, image, confidenceThreshhold);
+        }
+
+        @Override
+        public boolean imageContainsCat(ByteBuffer jpeg, float confidenceThreshhold) {
+            return MotionGatedImageService.this.imageContainsCat(scene, jpeg, confidenceThreshhold);
+        }
+
+        @Override
+        public boolean imageContainsCat(Path jpegFile, float confidenceThreshhold) throws IOException {
+            return MotionGatedImageService.this.imageContainsCat(scene, jpegFile, confidenceThreshhold);
+        }
+
+        @Override
+        public List<Boolean> classifyBatch(List<BufferedImage> images, float confidenceThreshhold) {
+            return MotionGatedImageService.this.classifyBatch(scene, images, confidenceThreshhold);
+        }
+
+        @Override
+        public String toString() {
+            return "MotionGatedImageService camera " + cameraName;
+        }
+    }
+}
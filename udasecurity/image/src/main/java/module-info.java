@@ -1,5 +1,6 @@
 module com.udacity.udasecurity.image {
     requires org.slf4j;
+    requires transitive com.udacity.udasecurity.metrics;
     requires java.desktop;
     requires software.amazon.awssdk.auth;
     requires software.amazon.awssdk.core;
@@ -0,0 +1,129 @@
+package com.udacity.udasecurity.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CachingImageServiceTest {
+
+    private final AtomicInteger classifierCalls = new AtomicInteger();
+    private final AtomicLong now = new AtomicLong();
+    private CachingImageService cachingImageService;
+
+    @BeforeEach
+    void init() {
+        ImageService classifier = (image, threshold) -> {
+            classifierCalls.incrementAndGet();
+            return true;
+        };
+        cachingImageService = new CachingImageService(classifier, 2, 1000, 4, now::get);
+    }
+
+    @Test
+    public void imageContainsCat_sameScene_classifiedOnce() {
+        cachingImageService.imageContainsCat(gradient(0), 50.0f);
+        cachingImageService.imageContainsCat(gradient(0), 50.0f);
+        cachingImageService.imageContainsCat(withNoise(gradient(0)), 50.0f);
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(1, classifierCalls.get()),
+                () -> Assertions.assertEquals(2, cachingImageService.getHitCount()),
+                () -> Assertions.assertEquals(1, cachingImageService.getMissCount())
+        );
+    }
+
+    @Test
+    public void imageContainsCat_differentThreshold_classifiedAgain() {
+        cachingImageService.imageContainsCat(gradient(0), 50.0f);
+        cachingImageService.imageContainsCat(gradient(0), 90.0f);
+
+        Assertions.assertEquals(2, classifierCalls.get());
+    }
+
+    @Test
+    public void imageContainsCat_entryExpired_classifiedAgain() {
+        cachingImageService.imageContainsCat(gradient(0), 50.0f);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        cachingImageService.imageContainsCat(gradient(0), 50.0f);
+
+        Assertions.assertEquals(2, classifierCalls.get());
+    }
+
+    @Test
+    public void imageContainsCat_cacheFull_evictsLeastRecentlyUsed() {
+        cachingImageService.imageContainsCat(gradient(0), 10.0f);
+        cachingImageService.imageContainsCat(gradient(0), 20.0f);
+        cachingImageService.imageContainsCat(gradient(0), 10.0f);
+        cachingImageService.imageContainsCat(gradient(0), 30.0f);
+        cachingImageService.imageContainsCat(gradient(0), 20.0f);
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(2, cachingImageService.size()),
+                () -> Assertions.assertEquals(4, classifierCalls.get())
+        );
+    }
+
+    @Test
+    public void imageContainsCat_encodedImage_forwardedEncodedAndCachedByContent() throws IOException {
+        AtomicInteger decodedCalls = new AtomicInteger();
+        AtomicInteger encodedCalls = new AtomicInteger();
+        ImageService passthrough = new ImageService() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+                decodedCalls.incrementAndGet();
+                return false;
+            }
+
+            @Override
+            public boolean imageContainsCat(ByteBuffer jpeg, float confidenceThreshhold) {
+                encodedCalls.incrementAndGet();
+                return true;
+            }
+        };
+        CachingImageService service = new CachingImageService(passthrough, 4, 1000, 4, now::get);
+
+        boolean first = service.imageContainsCat(encode(gradient(0)), 50.0f);
+        boolean second = service.imageContainsCat(encode(gradient(0)), 50.0f);
+        service.imageContainsCat(encode(gradient(1)), 50.0f);
+
+        Assertions.assertAll(
+                () -> Assertions.assertTrue(first),
+                () -> Assertions.assertTrue(second),
+                () -> Assertions.assertEquals(0, decodedCalls.get()),
+                () -> Assertions.assertEquals(2, encodedCalls.get()),
+                () -> Assertions.assertEquals(1, service.getHitCount())
+        );
+    }
+
+    private static BufferedImage gradient(int offset) {
+        BufferedImage image = new BufferedImage(90, 80, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int v = ((x * 7 + y * 13 + offset) * 5) & 0xff;
+                image.setRGB(x, y, v << 16 | v << 8 | v);
+            }
+        }
+        return image;
+    }
+
+    private static ByteBuffer encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    private static BufferedImage withNoise(BufferedImage image) {
+        image.setRGB(3, 3, 0xffffff);
+        image.setRGB(40, 50, 0);
+        return image;
+    }
+}
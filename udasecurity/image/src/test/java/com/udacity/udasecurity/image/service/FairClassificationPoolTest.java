@@ -0,0 +1,75 @@
+package com.udacity.udasecurity.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class FairClassificationPoolTest {
+
+    private static final BufferedImage NOISY = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    private static final BufferedImage QUIET = new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB);
+
+    @Test
+    public void classifyBatch_floodFromOneTenant_otherTenantServedNext() throws InterruptedException {
+        List<BufferedImage> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ImageService classifier = (image, threshold) -> {
+            order.add(image);
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return image == QUIET;
+        };
+
+        try (FairClassificationPool pool = new FairClassificationPool(classifier, 1)) {
+            ImageService noisy = pool.forTenant("noisy");
+            ImageService quiet = pool.forTenant("quiet");
+            List<Boolean> noisyResults = Collections.synchronizedList(new ArrayList<>());
+            boolean[] quietResult = new boolean[1];
+
+            Thread noisyThread = new Thread(() -> noisyResults.addAll(noisy.classifyBatch(Collections.nCopies(20, NOISY), 50.0f)));
+            noisyThread.start();
+            started.await();
+            awaitBlocked(noisyThread);
+            Thread quietThread = new Thread(() -> quietResult[0] = quiet.imageContainsCat(QUIET, 50.0f));
+            quietThread.start();
+            awaitBlocked(quietThread);
+            release.countDown();
+            noisyThread.join();
+            quietThread.join();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(21, order.size()),
+                    () -> Assertions.assertEquals(2, order.indexOf(QUIET)),
+                    () -> Assertions.assertTrue(quietResult[0]),
+                    () -> Assertions.assertEquals(Collections.nCopies(20, false), noisyResults)
+            );
+        }
+    }
+
+    @Test
+    public void imageContainsCat_classifierThrows_exceptionPropagated() {
+        try (FairClassificationPool pool = new FairClassificationPool((image, threshold) -> {
+            throw new IllegalStateException("offline");
+        }, 2)) {
+            ImageService tenant = pool.forTenant("home");
+
+            Assertions.assertThrows(IllegalStateException.class, () -> tenant.imageContainsCat(NOISY, 50.0f));
+        }
+    }
+
+    private static void awaitBlocked(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+    }
+}
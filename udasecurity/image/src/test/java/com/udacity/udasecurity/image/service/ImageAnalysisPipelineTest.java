@@ -0,0 +1,133 @@
+package com.udacity.udasecurity.image.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ImageAnalysisPipelineTest {
+
+    private final ExecutorService workers = Executors.newFixedThreadPool(4);
+    private final List<BufferedImage> delivered = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterEach
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    @Test
+    public void submit_slowFirstFrame_deliversInSubmissionOrder() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BufferedImage first = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        BufferedImage second = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        ImageService imageService = (image, threshold) -> {
+            if (image == first) {
+                await(release);
+            }
+            return image == second;
+        };
+        ImageAnalysisPipeline pipeline = new ImageAnalysisPipeline(imageService, 50.0f, workers, 2, 1,
+                Runnable::run, (image, cat) -> delivered.add(image));
+
+        CompletableFuture<Boolean> firstResult = pipeline.submit(first);
+        CompletableFuture<Boolean> secondResult = pipeline.submit(second);
+        Assertions.assertFalse(secondResult.isDone(), "second frame must wait for the first to be delivered");
+
+        release.countDown();
+        Assertions.assertFalse(firstResult.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(secondResult.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of(first, second), delivered);
+    }
+
+    @Test
+    public void submit_queueFull_dropsOldestWaitingFrame() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ImageService imageService = (image, threshold) -> {
+            await(release);
+            return true;
+        };
+        ImageAnalysisPipeline pipeline = new ImageAnalysisPipeline(imageService, 50.0f, workers, 1, 1,
+                Runnable::run, (image, cat) -> delivered.add(image));
+
+        BufferedImage running = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        BufferedImage stale = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        BufferedImage latest = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        pipeline.submit(running);
+        CompletableFuture<Boolean> staleResult = pipeline.submit(stale);
+        CompletableFuture<Boolean> latestResult = pipeline.submit(latest);
+
+        release.countDown();
+        latestResult.get(5, TimeUnit.SECONDS);
+        Assertions.assertTrue(staleResult.isCancelled());
+        Assertions.assertEquals(List.of(running, latest), delivered);
+    }
+
+    @Test
+    public void discard_frameBeingClassified_resultNotDelivered() throws Exception {
+        CountDownLatch classifying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ImageService imageService = (image, threshold) -> {
+            classifying.countDown();
+            await(release);
+            return true;
+        };
+        ImageAnalysisPipeline pipeline = new ImageAnalysisPipeline(imageService, 50.0f, workers, 1, 1,
+                Runnable::run, (image, cat) -> delivered.add(image));
+
+        CompletableFuture<Boolean> running = pipeline.submit(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+        CompletableFuture<Boolean> waiting = pipeline.submit(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+        Assertions.assertTrue(classifying.await(5, TimeUnit.SECONDS));
+        pipeline.discard();
+        release.countDown();
+
+        Assertions.assertAll(
+                () -> Assertions.assertTrue(waiting.isCancelled()),
+                () -> Assertions.assertThrows(CancellationException.class, () -> running.get(5, TimeUnit.SECONDS)),
+                () -> Assertions.assertTrue(pipeline.submit(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB)).isCancelled()),
+                () -> Assertions.assertTrue(delivered.isEmpty())
+        );
+    }
+
+    @Test
+    public void boundedExecutor_unboundedDelegate_runsAtMostLimitAtOnce() throws Exception {
+        //stands in for a virtual thread per task executor, which has no limit of its own
+        ExecutorService executor = new ImageAnalysisPipeline.BoundedExecutor(Executors.newCachedThreadPool(), 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            tasks.add(CompletableFuture.runAsync(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            }, executor));
+        }
+
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+        Assertions.assertEquals(2, maxRunning.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
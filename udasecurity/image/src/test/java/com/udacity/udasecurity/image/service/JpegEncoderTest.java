@@ -0,0 +1,42 @@
+package com.udacity.udasecurity.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class JpegEncoderTest {
+
+    @Test
+    public void encode_imageWithAlpha_producesDecodableJpeg() throws IOException {
+        BufferedImage image = new BufferedImage(40, 30, BufferedImage.TYPE_INT_ARGB);
+        byte[] bytes;
+        try (JpegEncoder encoder = JpegEncoder.acquire()) {
+            ByteBuffer jpeg = encoder.encode(image);
+            bytes = new byte[jpeg.remaining()];
+            jpeg.get(bytes);
+        }
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(bytes));
+        Assertions.assertEquals(40, decoded.getWidth());
+        Assertions.assertEquals(30, decoded.getHeight());
+    }
+
+    @Test
+    public void imageContainsCat_encodedBytes_decodedForDefaultImplementation() throws IOException {
+        AtomicReference<BufferedImage> received = new AtomicReference<>();
+        ImageService imageService = (image, threshold) -> {
+            received.set(image);
+            return true;
+        };
+        try (JpegEncoder encoder = JpegEncoder.acquire()) {
+            Assertions.assertTrue(imageService.imageContainsCat(encoder.encode(new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB)), 50.0f));
+        }
+        Assertions.assertEquals(20, received.get().getWidth());
+    }
+}
@@ -0,0 +1,113 @@
+package com.udacity.udasecurity.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class LocalImageServiceTest {
+
+    private final LocalImageService imageService = new LocalImageService();
+
+    @Test
+    public void imageContainsCat_catImage_returnTrue() throws IOException {
+        Assertions.assertTrue(imageService.imageContainsCat(load("sample-cat.jpg"), 50.0f));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"sample-not-cat.jpg", "sample-not-a-cat-fail.jpg"})
+    public void imageContainsCat_notCatImage_returnFalse(String resource) throws IOException {
+        Assertions.assertFalse(imageService.imageContainsCat(load(resource), 50.0f));
+    }
+
+    @Test
+    public void imageContainsCat_unreadableBytes_throwsIllegalArgument() {
+        ByteBuffer notAnImage = ByteBuffer.wrap("not an image".getBytes(StandardCharsets.US_ASCII));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> imageService.imageContainsCat(notAnImage, 50.0f));
+    }
+
+    @Test
+    public void confidence_rasterFastPath_matchesGenericPath() throws IOException {
+        BufferedImage image = load("sample-cat.jpg");
+        BufferedImage generic = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_BGR);
+        generic.getGraphics().drawImage(image, 0, 0, null);
+        BufferedImage packed = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        packed.getGraphics().drawImage(image, 0, 0, null);
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(imageService.confidence(image), imageService.confidence(generic), 0.001f),
+                () -> Assertions.assertEquals(imageService.confidence(image), imageService.confidence(packed), 0.001f)
+        );
+    }
+
+    @Test
+    public void confidence_furTextureShareAroundMidpoint_scoresAroundFifty() {
+        //each row has 100 scored pixels, so the textured columns give the fur texture share in percent
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(50.0f, imageService.confidence(stripes(12, 20)), 0.5f),
+                () -> Assertions.assertTrue(imageService.confidence(stripes(10, 20)) < 50.0f),
+                () -> Assertions.assertTrue(imageService.confidence(stripes(14, 20)) > 50.0f)
+        );
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {17, 64})
+    public void imageContainsCat_gradientInsideTextureBand_returnTrue(int step) {
+        Assertions.assertTrue(imageService.imageContainsCat(stripes(100, step), 50.0f));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {16, 65, 155})
+    public void imageContainsCat_gradientOutsideTextureBand_returnFalse(int step) {
+        Assertions.assertFalse(imageService.imageContainsCat(stripes(100, step), 50.0f));
+    }
+
+    @Test
+    public void imageContainsCat_flatOrSaturatedImages_returnFalse() {
+        BufferedImage flat = stripes(0, 0);
+        BufferedImage saturated = new BufferedImage(101, 101, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        int[] primaries = {0xff0000, 0x00ff00, 0x0000ff};
+        for (int y = 0; y < saturated.getHeight(); y++) {
+            for (int x = 0; x < saturated.getWidth(); x++) {
+                saturated.setRGB(x, y, primaries[random.nextInt(primaries.length)]);
+            }
+        }
+
+        Assertions.assertAll(
+                () -> Assertions.assertFalse(imageService.imageContainsCat(flat, 50.0f)),
+                () -> Assertions.assertFalse(imageService.imageContainsCat(saturated, 50.0f)),
+                () -> Assertions.assertEquals(0.0f, imageService.confidence(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB)))
+        );
+    }
+
+    /**
+     * Builds a gray 101x101 image whose first columns alternate between two shades, so those
+     * columns are texture with a horizontal luminance step of the given size and the rest is flat.
+     */
+    private static BufferedImage stripes(int texturedColumns, int step) {
+        BufferedImage image = new BufferedImage(101, 101, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < image.getWidth(); x++) {
+            int gray = x <= texturedColumns && x % 2 == 1 ? 100 + step : 100;
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.setRGB(x, y, gray << 16 | gray << 8 | gray);
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage load(String resource) throws IOException {
+        try (InputStream is = LocalImageServiceTest.class.getResourceAsStream("/" + resource)) {
+            return ImageIO.read(is);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.udacity.udasecurity.image.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+public class MotionGatedImageServiceTest {
+
+    private final AtomicInteger classifierCalls = new AtomicInteger();
+    private MotionGatedImageService imageService;
+
+    @BeforeEach
+    void init() {
+        ImageService classifier = (image, threshold) -> classifierCalls.incrementAndGet() % 2 == 1;
+        imageService = new MotionGatedImageService(classifier);
+    }
+
+    @Test
+    public void imageContainsCat_unchangedScene_carriesPreviousResultForward() {
+        boolean first = imageService.imageContainsCat(scene(false), 50.0f);
+        boolean second = imageService.imageContainsCat(scene(false), 50.0f);
+
+        Assertions.assertAll(
+                () -> Assertions.assertTrue(first),
+                () -> Assertions.assertTrue(second),
+                () -> Assertions.assertEquals(1, classifierCalls.get()),
+                () -> Assertions.assertEquals(1, imageService.getSkippedCount())
+        );
+    }
+
+    @Test
+    public void imageContainsCat_objectEntersScene_classifiesFrame() {
+        imageService.imageContainsCat(scene(false), 50.0f);
+        boolean result = imageService.imageContainsCat(scene(true), 50.0f);
+
+        Assertions.assertFalse(result);
+        Assertions.assertEquals(2, imageService.getForwardedCount());
+    }
+
+    @Test
+    public void imageContainsCat_differentThreshold_classifiesFrame() {
+        imageService.imageContainsCat(scene(false), 50.0f);
+        imageService.imageContainsCat(scene(false), 90.0f);
+
+        Assertions.assertEquals(2, classifierCalls.get());
+    }
+
+    @Test
+    public void forCamera_framesFromTwoCameras_gatedSeparately() {
+        ImageService porch = imageService.forCamera("porch");
+        ImageService garage = imageService.forCamera("garage");
+
+        boolean porchFirst = porch.imageContainsCat(scene(false), 50.0f);
+        boolean garageFirst = garage.imageContainsCat(scene(true), 50.0f);
+        boolean porchSecond = porch.imageContainsCat(scene(false), 50.0f);
+        boolean garageSecond = garage.imageContainsCat(scene(true), 50.0f);
+
+        Assertions.assertAll(
+                () -> Assertions.assertTrue(porchFirst),
+                () -> Assertions.assertFalse(garageFirst),
+                () -> Assertions.assertTrue(porchSecond),
+                () -> Assertions.assertFalse(garageSecond),
+                () -> Assertions.assertEquals(2, classifierCalls.get()),
+                () -> Assertions.assertEquals(2, imageService.getSkippedCount())
+        );
+    }
+
+    @Test
+    public void classifyBatch_stillFramesAfterMotion_reuseResultOfEarlierFrameInBatch() {
+        List<List<BufferedImage>> batches = new ArrayList<>();
+        MotionGatedImageService service = new MotionGatedImageService(new ImageService() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+                throw new AssertionError("frames must be classified as a batch");
+            }
+
+            @Override
+            public List<Boolean> classifyBatch(List<BufferedImage> images, float confidenceThreshhold) {
+                batches.add(images);
+                return images.stream().map(image -> batches.size() == 1).collect(Collectors.toList());
+            }
+        });
+        BufferedImage empty = scene(false);
+        BufferedImage object = scene(true);
+
+        List<Boolean> first = service.classifyBatch(List.of(empty, scene(false), scene(false)), 50.0f);
+        List<Boolean> second = service.classifyBatch(List.of(scene(false), object), 50.0f);
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(List.of(true, true, true), first),
+                () -> Assertions.assertEquals(List.of(true, false), second),
+                () -> Assertions.assertEquals(List.of(List.of(empty), List.of(object)), batches),
+                () -> Assertions.assertEquals(3, service.getSkippedCount()),
+                () -> Assertions.assertEquals(2, service.getForwardedCount())
+        );
+    }
+
+    @Test
+    public void imageContainsCat_encodedFrames_gatedAndForwardedEncoded(@TempDir Path directory) throws IOException {
+        List<String> forwardedAs = new ArrayList<>();
+        ImageService passthrough = new ImageService() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+                forwardedAs.add("image");
+                return false;
+            }
+
+            @Override
+            public boolean imageContainsCat(ByteBuffer jpeg, float confidenceThreshhold) {
+                forwardedAs.add("bytes");
+                return true;
+            }
+
+            @Override
+            public boolean imageContainsCat(Path jpegFile, float confidenceThreshhold) {
+                forwardedAs.add("file");
+                return true;
+            }
+        };
+        MotionGatedImageService service = new MotionGatedImageService(passthrough);
+        Path withObject = directory.resolve("object.jpg");
+        ImageIO.write(scene(true), "jpg", withObject.toFile());
+
+        service.imageContainsCat(encode(scene(false)), 50.0f);
+        service.imageContainsCat(encode(scene(false)), 50.0f);
+        service.imageContainsCat(withObject, 50.0f);
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(List.of("bytes", "file"), forwardedAs),
+                () -> Assertions.assertEquals(1, service.getSkippedCount())
+        );
+    }
+
+    private static BufferedImage scene(boolean withObject) {
+        BufferedImage image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+        Graphics g = image.getGraphics();
+        g.setColor(Color.LIGHT_GRAY);
+        g.fillRect(0, 0, 320, 240);
+        if (withObject) {
+            g.setColor(Color.DARK_GRAY);
+            g.fillRect(100, 80, 80, 60);
+        }
+        g.dispose();
+        return image;
+    }
+
+    private static ByteBuffer encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+}
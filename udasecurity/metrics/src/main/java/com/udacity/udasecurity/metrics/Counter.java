@@ -0,0 +1,30 @@
+package com.udacity.udasecurity.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts occurrences of an event. Increments are ignored while metrics are disabled.
+ */
+public class Counter {
+
+    private final MetricsRegistry registry;
+    private final LongAdder count = new LongAdder();
+
+    Counter(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void increment() {
+        if (registry.isEnabled()) {
+            count.increment();
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    void reset() {
+        count.reset();
+    }
+}
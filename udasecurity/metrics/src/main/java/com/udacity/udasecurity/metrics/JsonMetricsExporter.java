@@ -0,0 +1,60 @@
+package com.udacity.udasecurity.metrics;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * JSON export for scraping by other tools. Counters map to their count; timers map to an
+ * object with the count and latency statistics in nanoseconds.
+ */
+public class JsonMetricsExporter implements MetricsExporter {
+
+    @Override
+    public void export(MetricsRegistry registry, Appendable out) throws IOException {
+        out.append("{\"counters\":{");
+        Iterator<Map.Entry<String, Counter>> counters = registry.getCounters().entrySet().iterator();
+        while (counters.hasNext()) {
+            Map.Entry<String, Counter> counter = counters.next();
+            appendString(out, counter.getKey());
+            out.append(':').append(Long.toString(counter.getValue().getCount()));
+            if (counters.hasNext()) {
+                out.append(',');
+            }
+        }
+        out.append("},\"timers\":{");
+        Iterator<Map.Entry<String, Timer>> timers = registry.getTimers().entrySet().iterator();
+        while (timers.hasNext()) {
+            Map.Entry<String, Timer> timer = timers.next();
+            LatencyHistogram.Snapshot s = timer.getValue().getHistogram().snapshot();
+            appendString(out, timer.getKey());
+            out.append(":{\"count\":").append(Long.toString(s.getCount()))
+                    .append(",\"meanNanos\":").append(Long.toString(Math.round(s.getMean())))
+                    .append(",\"p50Nanos\":").append(Long.toString(s.getValueAtPercentile(50)))
+                    .append(",\"p90Nanos\":").append(Long.toString(s.getValueAtPercentile(90)))
+                    .append(",\"p99Nanos\":").append(Long.toString(s.getValueAtPercentile(99)))
+                    .append(",\"p999Nanos\":").append(Long.toString(s.getValueAtPercentile(99.9)))
+                    .append(",\"maxNanos\":").append(Long.toString(s.getMax()))
+                    .append('}');
+            if (timers.hasNext()) {
+                out.append(',');
+            }
+        }
+        out.append("}}");
+    }
+
+    private static void appendString(Appendable out, String value) throws IOException {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,73 @@
+package com.udacity.udasecurity.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * MXBean implementation backed by a registry.
+ */
+class Metrics implements MetricsMXBean {
+
+    private final MetricsRegistry registry;
+
+    Metrics(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return registry.isEnabled();
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        registry.setEnabled(enabled);
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        registry.getCounters().forEach((name, counter) -> counts.put(name, counter.getCount()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getLatencies() {
+        Map<String, Long> latencies = new LinkedHashMap<>();
+        registry.getTimers().forEach((name, timer) -> {
+            LatencyHistogram.Snapshot s = timer.getHistogram().snapshot();
+            latencies.put(name + ".count", s.getCount());
+            latencies.put(name + ".p50", s.getValueAtPercentile(50));
+            latencies.put(name + ".p99", s.getValueAtPercentile(99));
+            latencies.put(name + ".max", s.getMax());
+        });
+        return latencies;
+    }
+
+    @Override
+    public String getText() {
+        return export(new TextMetricsExporter());
+    }
+
+    @Override
+    public String getJson() {
+        return export(new JsonMetricsExporter());
+    }
+
+    @Override
+    public void reset() {
+        registry.reset();
+    }
+
+    private String export(MetricsExporter exporter) {
+        StringBuilder out = new StringBuilder();
+        try {
+            registry.export(exporter, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,10 @@
+package com.udacity.udasecurity.metrics;
+
+import java.io.IOException;
+
+/**
+ * Writes the contents of a registry in some format. Implement this to plug in a different output.
+ */
+public interface MetricsExporter {
+    void export(MetricsRegistry registry, Appendable out) throws IOException;
+}
@@ -0,0 +1,35 @@
+package com.udacity.udasecurity.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of a {@link MetricsRegistry}, published by {@link MetricsRegistry#registerMBean()}.
+ */
+public interface MetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return Count of every counter, by name
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * @return Timer statistics in nanoseconds, keyed by timer name and statistic, e.g. "security.processImage.p99"
+     */
+    Map<String, Long> getLatencies();
+
+    /**
+     * @return All metrics in the text export format
+     */
+    String getText();
+
+    /**
+     * @return All metrics in the JSON export format
+     */
+    String getJson();
+
+    void reset();
+}
@@ -0,0 +1,107 @@
+package com.udacity.udasecurity.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Named timers and counters for the application's hot paths.
+ *
+ * Components look their metrics up once, usually into a static field, and update them on every
+ * call. Recording only happens while the registry is enabled, which it is not by default; set the
+ * {@code udasecurity.metrics} system property to {@code true}, call {@link #setEnabled(boolean)}
+ * or flip the Enabled attribute over JMX to start collecting.
+ */
+public class MetricsRegistry {
+
+    public static final String JMX_NAME = "com.udacity.udasecurity:type=Metrics";
+
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry(Boolean.getBoolean("udasecurity.metrics"));
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+
+    public MetricsRegistry(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return Registry shared by the whole application
+     */
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return Timer with the given name, created on first use
+     */
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, n -> new Timer(this));
+    }
+
+    /**
+     * @return Counter with the given name, created on first use
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter(this));
+    }
+
+    /**
+     * @return Timers sorted by name
+     */
+    public SortedMap<String, Timer> getTimers() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(timers));
+    }
+
+    /**
+     * @return Counters sorted by name
+     */
+    public SortedMap<String, Counter> getCounters() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(counters));
+    }
+
+    /**
+     * Clears every recorded value. Timers and counters stay registered.
+     */
+    public void reset() {
+        timers.values().forEach(t -> t.getHistogram().reset());
+        counters.values().forEach(Counter::reset);
+    }
+
+    /**
+     * Writes the current values using the given exporter.
+     */
+    public void export(MetricsExporter exporter, Appendable out) throws IOException {
+        exporter.export(this, out);
+    }
+
+    /**
+     * Publishes this registry on the platform MBean server under {@link #JMX_NAME}. Does nothing
+     * if a registry is already published there.
+     */
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Metrics(this), new ObjectName(JMX_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            //already published
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to register metrics MBean", e);
+        }
+    }
+}
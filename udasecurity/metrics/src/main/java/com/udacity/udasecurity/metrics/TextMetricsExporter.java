@@ -0,0 +1,30 @@
+package com.udacity.udasecurity.metrics;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Human-readable export: one line per counter, then one line per timer with its count and
+ * latency percentiles in microseconds.
+ */
+public class TextMetricsExporter implements MetricsExporter {
+
+    @Override
+    public void export(MetricsRegistry registry, Appendable out) throws IOException {
+        for (Map.Entry<String, Counter> counter : registry.getCounters().entrySet()) {
+            out.append(String.format(Locale.ROOT, "%-48s %d%n", counter.getKey(), counter.getValue().getCount()));
+        }
+        for (Map.Entry<String, Timer> timer : registry.getTimers().entrySet()) {
+            LatencyHistogram.Snapshot s = timer.getValue().getHistogram().snapshot();
+            out.append(String.format(Locale.ROOT, "%-48s count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus%n",
+                    timer.getKey(), s.getCount(), s.getMean() / 1000,
+                    micros(s.getValueAtPercentile(50)), micros(s.getValueAtPercentile(90)),
+                    micros(s.getValueAtPercentile(99)), micros(s.getValueAtPercentile(99.9)), micros(s.getMax())));
+        }
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
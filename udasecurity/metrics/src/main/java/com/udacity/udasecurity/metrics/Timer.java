@@ -0,0 +1,55 @@
+package com.udacity.udasecurity.metrics;
+
+/**
+ * Measures how long a step takes and records the durations in a {@link LatencyHistogram}.
+ *
+ * <pre>
+ * long start = timer.start();
+ * try {
+ *     ...
+ * } finally {
+ *     timer.stop(start);
+ * }
+ * </pre>
+ *
+ * While metrics are disabled, {@link #start()} returns 0 without reading the clock and
+ * {@link #stop(long)} ignores it, so an idle timer costs one volatile read.
+ */
+public class Timer {
+
+    private final MetricsRegistry registry;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    Timer(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * @return Start timestamp to pass to {@link #stop(long)}
+     */
+    public long start() {
+        return registry.isEnabled() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time elapsed since the given start timestamp.
+     */
+    public void stop(long start) {
+        if (start != 0) {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records a duration measured elsewhere.
+     */
+    public void record(long nanos) {
+        if (registry.isEnabled()) {
+            histogram.record(nanos);
+        }
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+}
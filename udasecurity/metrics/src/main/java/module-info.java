@@ -0,0 +1,4 @@
+module com.udacity.udasecurity.metrics {
+    requires java.management;
+    exports com.udacity.udasecurity.metrics;
+}
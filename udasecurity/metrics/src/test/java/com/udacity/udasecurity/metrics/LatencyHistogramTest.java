@@ -0,0 +1,35 @@
+package com.udacity.udasecurity.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void getValueAtPercentile_uniformValues_withinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 100_000; v++) {
+            histogram.record(v * 1000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(100_000, snapshot.getCount()),
+                () -> Assertions.assertEquals(100_000_000, snapshot.getMax()),
+                () -> Assertions.assertEquals(50_000_000, snapshot.getValueAtPercentile(50), 50_000_000 * 0.04),
+                () -> Assertions.assertEquals(99_000_000, snapshot.getValueAtPercentile(99), 99_000_000 * 0.04),
+                () -> Assertions.assertEquals(50_000_500, snapshot.getMean(), 1)
+        );
+    }
+
+    @Test
+    public void bucketIndex_everyBucketBoundary_roundTrips() {
+        for (int index = 0; index <= LatencyHistogram.bucketIndex(Long.MAX_VALUE); index++) {
+            long highest = LatencyHistogram.highestValueIn(index);
+            Assertions.assertEquals(index, LatencyHistogram.bucketIndex(highest));
+            if (highest < Long.MAX_VALUE) {
+                Assertions.assertEquals(index + 1, LatencyHistogram.bucketIndex(highest + 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.udacity.udasecurity.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void record_whileDisabled_nothingCollected() {
+        MetricsRegistry registry = new MetricsRegistry(false);
+        Timer timer = registry.timer("step");
+        timer.stop(timer.start());
+        registry.counter("events").increment();
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(0, timer.getHistogram().snapshot().getCount()),
+                () -> Assertions.assertEquals(0, registry.counter("events").getCount())
+        );
+    }
+
+    @Test
+    public void export_enabled_textAndJsonContainMetrics() throws IOException {
+        MetricsRegistry registry = new MetricsRegistry(true);
+        registry.counter("alarm.transition.NO_ALARM.ALARM").increment();
+        registry.timer("security.processImage").record(2_000);
+
+        StringBuilder text = new StringBuilder();
+        registry.export(new TextMetricsExporter(), text);
+        StringBuilder json = new StringBuilder();
+        registry.export(new JsonMetricsExporter(), json);
+
+        Assertions.assertAll(
+                () -> Assertions.assertTrue(text.toString().matches("(?s)alarm\\.transition\\.NO_ALARM\\.ALARM +1\\R.*")),
+                () -> Assertions.assertTrue(text.toString().contains("security.processImage")),
+                () -> Assertions.assertTrue(text.toString().contains("count=1")),
+                () -> Assertions.assertEquals("{\"counters\":{\"alarm.transition.NO_ALARM.ALARM\":1},\"timers\":{\"security.processImage\":"
+                        + "{\"count\":1,\"meanNanos\":2000,\"p50Nanos\":2000,\"p90Nanos\":2000,\"p99Nanos\":2000,\"p999Nanos\":2000,\"maxNanos\":2000}}}", json.toString())
+        );
+    }
+
+    @Test
+    public void registerMBean_platformServer_exposesCounters() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry(true);
+        registry.counter("events").increment();
+        registry.registerMBean();
+
+        Object counters = java.lang.management.ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new javax.management.ObjectName(MetricsRegistry.JMX_NAME), "Counters");
+        Assertions.assertNotNull(counters);
+    }
+}
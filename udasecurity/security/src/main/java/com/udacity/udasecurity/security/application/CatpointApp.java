@@ -1,10 +1,13 @@
 package com.udacity.udasecurity.security.application;
 
+import com.udacity.udasecurity.metrics.MetricsRegistry;
+
 /**
  * This is the main class that launches the application.
  */
 public class CatpointApp {
     public static void main(String[] args) {
+        MetricsRegistry.global().registerMBean();
         CatpointGui gui = new CatpointGui();
         gui.setVisible(true);
     }
@@ -29,6 +29,9 @@ public class CatpointGui extends JFrame {
         setTitle("Very Secure App");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
+        //scan results update the panels, so apply them back on the Swing event thread
+        securityService.configureImageProcessing(2, 1, SwingUtilities::invokeLater);
+
         JPanel mainPanel = new JPanel();
         mainPanel.setLayout(new MigLayout());
         mainPanel.add(displayPanel, "wrap");
@@ -0,0 +1,206 @@
+package com.udacity.udasecurity.security.application;
+
+import com.udacity.udasecurity.security.data.ArmingStatus;
+import com.udacity.udasecurity.security.data.Camera;
+import com.udacity.udasecurity.security.data.Sensor;
+import com.udacity.udasecurity.security.data.SensorSnapshot;
+import com.udacity.udasecurity.security.data.SensorType;
+import com.udacity.udasecurity.security.service.SecurityService;
+import com.udacity.udasecurity.security.service.SensorEvent;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interprets the line protocol read by the headless runtime from files and sockets. Each line
+ * holds one command and its arguments separated by whitespace, so names may not contain spaces.
+ * Blank lines and lines starting with '#' are ignored.
+ *
+ * <pre>
+ * sensor add NAME TYPE           adds a sensor, e.g. "sensor add FrontDoor DOOR"
+ * sensor remove NAME
+ * sensor NAME active|inactive    reports a sensor event
+ * camera add NAME
+ * frame [CAMERA] PATH            submits an image file as a frame, from the default camera if none is named
+ * arm home|away
+ * disarm
+ * sync                           waits until every event and frame submitted so far has been applied
+ * status                         syncs, then replies "alarm=... arming=... sensors=... active=..."
+ * </pre>
+ *
+ * Sensor events and frames are handed to the service's batchers and produce no reply, so a
+ * producer can stream them as fast as it likes. A command that fails replies with a line starting
+ * with "error". One interpreter may be shared by several connections.
+ */
+public class CommandInterpreter {
+
+    private final SecurityService securityService;
+    private final Map<String, Sensor> sensorsByName = new ConcurrentHashMap<>();
+    private final Map<String, Camera> camerasByName = new ConcurrentHashMap<>();
+    private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+
+    public CommandInterpreter(SecurityService securityService) {
+        this.securityService = securityService;
+        securityService.getSensors().forEach(s -> sensorsByName.put(s.getName(), s));
+        securityService.getCameras().forEach(c -> camerasByName.put(c.getName(), c));
+    }
+
+    /**
+     * Executes every line from the reader, writing replies to the writer, until the input ends.
+     * Waits for submitted work to be applied before returning.
+     */
+    public void run(BufferedReader in, Writer out) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            reply(out, execute(line));
+        }
+        reply(out, execute("sync"));
+    }
+
+    private static void reply(Writer out, String reply) throws IOException {
+        if (reply != null) {
+            out.write(reply);
+            out.write(System.lineSeparator());
+            out.flush();
+        }
+    }
+
+    /**
+     * Executes a single command.
+     * @return The reply to send back, or null if the command has none
+     */
+    public String execute(String line) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+            return null;
+        }
+        String[] words = trimmed.split("\\s+");
+        try {
+            switch (words[0].toLowerCase(Locale.ROOT)) {
+                case "sensor":
+                    return sensor(words);
+                case "camera":
+                    return camera(words);
+                case "frame":
+                    return frame(words);
+                case "arm":
+                    expectArguments(words, 2);
+                    securityService.setArmingStatus(ArmingStatus.valueOf("ARMED_" + words[1].toUpperCase(Locale.ROOT)));
+                    return null;
+                case "disarm":
+                    securityService.setArmingStatus(ArmingStatus.DISARMED);
+                    return null;
+                case "sync":
+                    sync();
+                    return null;
+                case "status":
+                    sync();
+                    return status();
+                default:
+                    throw new IllegalArgumentException("unknown command " + words[0]);
+            }
+        } catch (IllegalArgumentException | IOException | CompletionException e) {
+            return "error " + trimmed + ": " + e.getMessage();
+        }
+    }
+
+    private String sensor(String[] words) {
+        expectArguments(words, 3);
+        if (words[1].equals("add")) {
+            expectArguments(words, 4);
+            Sensor sensor = new Sensor(words[2], SensorType.valueOf(words[3].toUpperCase(Locale.ROOT)));
+            securityService.addSensor(sensor);
+            sensorsByName.put(sensor.getName(), sensor);
+        } else if (words[1].equals("remove")) {
+            securityService.removeSensor(findSensor(words[2]));
+            sensorsByName.remove(words[2]);
+        } else {
+            boolean active;
+            if (words[2].equals("active")) {
+                active = true;
+            } else if (words[2].equals("inactive")) {
+                active = false;
+            } else {
+                throw new IllegalArgumentException("expected active or inactive");
+            }
+            track(securityService.submitSensorEvent(new SensorEvent(findSensor(words[1]), active)));
+        }
+        return null;
+    }
+
+    private String camera(String[] words) {
+        expectArguments(words, 3);
+        if (!words[1].equals("add")) {
+            throw new IllegalArgumentException("unknown camera command " + words[1]);
+        }
+        Camera camera = new Camera(words[2]);
+        securityService.addCamera(camera);
+        camerasByName.put(camera.getName(), camera);
+        return null;
+    }
+
+    private String frame(String[] words) throws IOException {
+        expectArguments(words, 2);
+        Camera camera = securityService.getDefaultCamera();
+        String path = words[1];
+        if (words.length > 2) {
+            camera = camerasByName.get(words[1]);
+            if (camera == null) {
+                throw new IllegalArgumentException("unknown camera " + words[1]);
+            }
+            path = words[2];
+        }
+        BufferedImage image = ImageIO.read(new File(path));
+        if (image == null) {
+            throw new IOException("not a readable image");
+        }
+        track(securityService.submitFrame(camera.getCameraId(), image));
+        return null;
+    }
+
+    private String status() {
+        SensorSnapshot sensors = securityService.getSensorSnapshot();
+        return "alarm=" + securityService.getAlarmStatus() + " arming=" + securityService.getArmingStatus()
+                + " sensors=" + sensors.getSensors().size() + " active=" + sensors.getActiveCount();
+    }
+
+    private void sync() {
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    private void track(CompletableFuture<?> future) {
+        pending.add(future);
+        future.whenComplete((result, failure) -> pending.remove(future));
+    }
+
+    /**
+     * Looks a sensor up by name, falling back to the service in case it was added elsewhere.
+     */
+    private Sensor findSensor(String name) {
+        Sensor sensor = sensorsByName.get(name);
+        if (sensor == null) {
+            securityService.getSensors().forEach(s -> sensorsByName.putIfAbsent(s.getName(), s));
+            sensor = sensorsByName.get(name);
+        }
+        if (sensor == null) {
+            throw new IllegalArgumentException("unknown sensor " + name);
+        }
+        return sensor;
+    }
+
+    private static void expectArguments(String[] words, int count) {
+        if (words.length < count) {
+            throw new IllegalArgumentException("missing arguments");
+        }
+    }
+}
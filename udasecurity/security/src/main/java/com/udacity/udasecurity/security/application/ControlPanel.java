@@ -24,7 +24,7 @@ public class ControlPanel extends JPanel {
         this.securityService = securityService;
 
         JLabel panelLabel = new JLabel("System Control");
-        panelLabel.setFont(SecurityService.HEADING_FONT);
+        panelLabel.setFont(StyleService.HEADING_FONT);
 
         add(panelLabel, "span 3, wrap");
 
@@ -36,7 +36,7 @@ public class ControlPanel extends JPanel {
         buttonMap.forEach((k, v) -> {
             v.addActionListener(e -> {
                 securityService.setArmingStatus(k);
-                buttonMap.forEach((status, button) -> button.setBackground(status == k ? status.getColor() : null));
+                buttonMap.forEach((status, button) -> button.setBackground(status == k ? StyleService.getColor(status) : null));
             });
         });
 
@@ -44,7 +44,7 @@ public class ControlPanel extends JPanel {
         Arrays.stream(ArmingStatus.values()).forEach(status -> add(buttonMap.get(status)));
 
         ArmingStatus currentStatus = securityService.getArmingStatus();
-        buttonMap.get(currentStatus).setBackground(currentStatus.getColor());
+        buttonMap.get(currentStatus).setBackground(StyleService.getColor(currentStatus));
 
     }
 }
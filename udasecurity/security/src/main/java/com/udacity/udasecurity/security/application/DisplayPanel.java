@@ -24,7 +24,7 @@ public class DisplayPanel extends JPanel implements StatusListener {
         JLabel systemStatusLabel = new JLabel("System Status:");
         currentStatusLabel = new JLabel();
 
-        panelLabel.setFont(SecurityService.HEADING_FONT);
+        panelLabel.setFont(StyleService.HEADING_FONT);
 
         notify(securityService.getAlarmStatus());
 
@@ -37,7 +37,7 @@ public class DisplayPanel extends JPanel implements StatusListener {
     @Override
     public void notify(AlarmStatus status) {
         currentStatusLabel.setText(status.getDescription());
-        currentStatusLabel.setBackground(status.getColor());
+        currentStatusLabel.setBackground(StyleService.getColor(status));
         currentStatusLabel.setOpaque(true);
     }
 
@@ -50,4 +50,9 @@ public class DisplayPanel extends JPanel implements StatusListener {
     public void sensorStatusChanged() {
         // no behavior necessary
     }
+
+    @Override
+    public boolean onEventDispatchThread() {
+        return true;
+    }
 }
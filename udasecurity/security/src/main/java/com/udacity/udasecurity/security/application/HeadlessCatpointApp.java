@@ -0,0 +1,217 @@
+package com.udacity.udasecurity.security.application;
+
+import com.udacity.udasecurity.image.service.FakeImageService;
+import com.udacity.udasecurity.image.service.ImageService;
+import com.udacity.udasecurity.image.service.LocalImageService;
+import com.udacity.udasecurity.metrics.MetricsRegistry;
+import com.udacity.udasecurity.security.data.AlarmStatus;
+import com.udacity.udasecurity.security.data.EventLogSecurityRepositoryImpl;
+import com.udacity.udasecurity.security.data.HistoryStore;
+import com.udacity.udasecurity.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.udasecurity.security.data.SecurityRepository;
+import com.udacity.udasecurity.security.service.HistoryRecorder;
+import com.udacity.udasecurity.security.service.SecurityService;
+import com.udacity.udasecurity.security.service.StatusEventBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Launches the security system without a user interface. Sensor events and camera frames are read
+ * as {@link CommandInterpreter} commands from a file, standard input or connections to a local
+ * socket, and alarm status changes are printed to standard output.
+ *
+ * Nothing here touches Swing, and listeners are called on the runtime's own threads rather than
+ * the AWT event queue, so no Swing classes are loaded and the process starts quickly.
+ *
+ * <pre>
+ * HeadlessCatpointApp [--data DIR] [--history DIR] [--classifier local|fake] [--file PATH | --port PORT]
+ * </pre>
+ *
+ * --data keeps state in an event log in the given directory instead of the user preferences.
+ * --history records sensor and alarm history in a {@link HistoryStore} in the given directory.
+ * --file reads commands from a file, or standard input if PATH is "-", then exits. --port listens
+ * on the loopback interface until the process is stopped. Without either, commands are read from
+ * standard input.
+ */
+public class HeadlessCatpointApp implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(HeadlessCatpointApp.class);
+
+    private final SecurityRepository securityRepository;
+    private final ExecutorService dispatchExecutor;
+    private final SecurityService securityService;
+    private final CommandInterpreter commandInterpreter;
+
+    public HeadlessCatpointApp(SecurityRepository securityRepository, ImageService imageService) {
+        this.securityRepository = securityRepository;
+        AtomicInteger count = new AtomicInteger();
+        dispatchExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "headless-dispatch-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        //no listener needs the event dispatch thread, so both kinds run on our own threads
+        StatusEventBus statusEventBus = new StatusEventBus(dispatchExecutor, dispatchExecutor);
+        securityService = new SecurityService(securityRepository, imageService, statusEventBus);
+        commandInterpreter = new CommandInterpreter(securityService);
+    }
+
+    public SecurityService getSecurityService() {
+        return securityService;
+    }
+
+    public CommandInterpreter getCommandInterpreter() {
+        return commandInterpreter;
+    }
+
+    /**
+     * Executes the commands from the reader, writing replies to the writer, and waits for them to be applied.
+     */
+    public void process(BufferedReader in, Writer out) throws IOException {
+        commandInterpreter.run(in, out);
+    }
+
+    /**
+     * Accepts connections on the loopback interface and executes the commands each one sends.
+     * Every connection is served on its own thread. Does not return unless the socket fails.
+     */
+    public void serve(int port) throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                Thread connection = new Thread(() -> serve(socket), "headless-connection-" + socket.getPort());
+                connection.setDaemon(true);
+                connection.start();
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            process(in, out);
+        } catch (IOException e) {
+            log.warn("Connection {} failed", socket.getRemoteSocketAddress(), e);
+        }
+    }
+
+    /**
+     * Closes the security service, so pending batches are applied and submitted images finish,
+     * then stops the listener threads and closes the repository.
+     */
+    @Override
+    public void close() throws IOException {
+        securityService.close();
+        dispatchExecutor.shutdown();
+        try {
+            //let listeners see the last updates before the process exits
+            dispatchExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (securityRepository instanceof Closeable) {
+            ((Closeable) securityRepository).close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        Path data = null;
+        Path history = null;
+        String classifier = "local";
+        String file = null;
+        Integer port = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--data":
+                        data = Paths.get(args[++i]);
+                        break;
+                    case "--history":
+                        history = Paths.get(args[++i]);
+                        break;
+                    case "--classifier":
+                        classifier = args[++i];
+                        break;
+                    case "--file":
+                        file = args[++i];
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (!classifier.equals("local") && !classifier.equals("fake")) {
+                throw new IllegalArgumentException("Unknown classifier " + classifier);
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: HeadlessCatpointApp [--data DIR] [--history DIR] [--classifier local|fake] [--file PATH | --port PORT]");
+            System.exit(2);
+            return;
+        }
+
+        if (MetricsRegistry.global().isEnabled()) {
+            MetricsRegistry.global().registerMBean();
+        }
+        SecurityRepository repository = data == null ? new PretendDatabaseSecurityRepositoryImpl() : new EventLogSecurityRepositoryImpl(data);
+        ImageService imageService = classifier.equals("fake") ? new FakeImageService() : new LocalImageService();
+
+        HistoryStore historyStore = history == null ? null : new HistoryStore(history);
+        try (historyStore;
+             HeadlessCatpointApp app = new HeadlessCatpointApp(repository, imageService);
+             HistoryRecorder recorder = historyStore == null ? null : new HistoryRecorder(
+                     app.getSecurityService().getChangeFeed(), historyStore, HistoryRecorder.DEFAULT_POLL_MILLIS)) {
+            app.getSecurityService().addStatusListener(new StatusListener() {
+                @Override
+                public void notify(AlarmStatus status) {
+                    System.out.println("alarm " + status);
+                }
+
+                @Override
+                public void catDetected(boolean catDetected) {
+                    System.out.println("cat " + catDetected);
+                }
+
+                @Override
+                public void sensorStatusChanged() {
+                    //too frequent to be worth printing
+                }
+            });
+
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            if (port != null) {
+                app.serve(port);
+            } else if (file == null || file.equals("-")) {
+                app.process(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), out);
+            } else {
+                try (BufferedReader in = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+                    app.process(in, out);
+                }
+            }
+        }
+    }
+}
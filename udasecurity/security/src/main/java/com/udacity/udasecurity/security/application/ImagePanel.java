@@ -31,7 +31,7 @@ public class ImagePanel extends JPanel implements StatusListener {
         securityService.addStatusListener(this);
 
         cameraHeader = new JLabel("Camera Feed");
-        cameraHeader.setFont(SecurityService.HEADING_FONT);
+        cameraHeader.setFont(StyleService.HEADING_FONT);
 
         cameraLabel = new JLabel();
         cameraLabel.setBackground(Color.WHITE);
@@ -61,7 +61,7 @@ public class ImagePanel extends JPanel implements StatusListener {
         //button that sends the image to the image service
         JButton scanPictureButton = new JButton("Scan Picture");
         scanPictureButton.addActionListener(e -> {
-            securityService.processImage(currentCameraImage);
+            securityService.processImageAsync(currentCameraImage);
         });
 
         add(cameraHeader, "span 3, wrap");
@@ -88,4 +88,9 @@ public class ImagePanel extends JPanel implements StatusListener {
     public void sensorStatusChanged() {
         //no behavior necessary
     }
+
+    @Override
+    public boolean onEventDispatchThread() {
+        return true;
+    }
 }
@@ -2,15 +2,18 @@ package com.udacity.udasecurity.security.application;
 
 import com.udacity.udasecurity.security.data.AlarmStatus;
 import com.udacity.udasecurity.security.data.Sensor;
+import com.udacity.udasecurity.security.data.SensorSnapshot;
 import com.udacity.udasecurity.security.data.SensorType;
 import com.udacity.udasecurity.security.service.SecurityService;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Panel that allows users to add sensors to their system. Sensors may be
- * manually set to "active" and "inactive" to test the system.
+ * Panel that allows users to add sensors to their system. Sensors are listed in a table and
+ * may be manually set to "active" and "inactive" to test the system.
  */
 public class SensorPanel extends JPanel implements StatusListener {
 
@@ -23,7 +26,12 @@ public class SensorPanel extends JPanel implements StatusListener {
     private JComboBox newSensorTypeDropdown = new JComboBox(SensorType.values());
     private JButton addNewSensorButton = new JButton("Add New Sensor");
 
-    private JPanel sensorListPanel;
+    //version of the sensors the table last showed
+    private long shownVersion = SensorSnapshot.UNVERSIONED;
+    private SensorTableModel sensorTableModel = new SensorTableModel(this::setSensorActivity);
+    private JTable sensorTable = new JTable(sensorTableModel);
+    private JButton removeSensorButton = new JButton("Remove Sensor");
+
     private JPanel newSensorPanel;
 
     public SensorPanel(SecurityService securityService) {
@@ -32,20 +40,23 @@ public class SensorPanel extends JPanel implements StatusListener {
         this.securityService = securityService;
         securityService.addStatusListener(this);
 
-        panelLabel.setFont(SecurityService.HEADING_FONT);
+        panelLabel.setFont(StyleService.HEADING_FONT);
         addNewSensorButton.addActionListener(e ->
                 addSensor(new Sensor(newSensorNameField.getText(),
                         SensorType.valueOf(newSensorTypeDropdown.getSelectedItem().toString()))));
 
-        newSensorPanel = buildAddSensorPanel();
-        sensorListPanel = new JPanel();
-        sensorListPanel.setLayout(new MigLayout());
+        removeSensorButton.addActionListener(e -> removeSelectedSensors());
 
-        updateSensorList(sensorListPanel);
+        newSensorPanel = buildAddSensorPanel();
+        sensorTable.setFillsViewportHeight(true);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.NAME_COLUMN).setPreferredWidth(200);
+        updateSensorList();
 
         add(panelLabel, "wrap");
         add(newSensorPanel, "span");
-        add(sensorListPanel, "span");
+        //hard code some sizes, tsk tsk
+        add(new JScrollPane(sensorTable), "span, width 500:500:500, height 150:150:300, wrap");
+        add(removeSensorButton, "span");
     }
 
     /**
@@ -63,65 +74,53 @@ public class SensorPanel extends JPanel implements StatusListener {
     }
 
     /**
-     * Requests the current list of sensors and updates the provided panel to display them. Sensors
-     * will display in the order that they are created.
-     * @param p The Panel to populate with the current list of sensors
+     * Requests the current list of sensors and updates the table to match. Nothing is done if the
+     * sensors have not changed since the last update; otherwise only rows whose sensor was added,
+     * removed or changed are repainted.
      */
-    private void updateSensorList(JPanel p) {
-        p.removeAll();
-        securityService.getSensors().stream().sorted().forEach(s -> {
-            JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(),  s.getSensorType().toString(),(s.getActive() ? "Active" : "Inactive")));
-            JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
-            JButton sensorRemoveButton = new JButton("Remove Sensor");
-
-            sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()) );
-            sensorRemoveButton.addActionListener(e -> removeSensor(s));
-
-            //hard code some sizes, tsk tsk
-            p.add(sensorLabel, "width 300:300:300");
-            p.add(sensorToggleButton, "width 100:100:100");
-            p.add(sensorRemoveButton, "wrap");
-        });
-
-        repaint();
-        revalidate();
+    private void updateSensorList() {
+        SensorSnapshot snapshot = securityService.getSensorSnapshot();
+        if (snapshot.changedSince(shownVersion)) {
+            sensorTableModel.refresh(snapshot.getSensors());
+            shownVersion = snapshot.getVersion();
+        }
     }
 
     /**
-     * Asks the securityService to change a sensor activation status and then rebuilds the current sensor list
+     * Asks the securityService to change a sensor activation status and then refreshes the sensor table
      * @param sensor The sensor to update
      * @param isActive The sensor's activation status
      */
     private void setSensorActivity(Sensor sensor, Boolean isActive) {
         securityService.changeSensorActivationStatus(sensor, isActive);
-        updateSensorList(sensorListPanel);
+        updateSensorList();
     }
 
     /**
-     * Adds a sensor to the securityService and then rebuilds the sensor list
+     * Adds a sensor to the securityService and then refreshes the sensor table
      * @param sensor The sensor to add
      */
     private void addSensor(Sensor sensor) {
-        if(securityService.getSensors().size() < 4) {
-            securityService.addSensor(sensor);
-            updateSensorList(sensorListPanel);
-        } else {
-            JOptionPane.showMessageDialog(null, "To add more than 4 sensors, please subscribe to our Premium Membership!");
-        }
+        securityService.addSensor(sensor);
+        updateSensorList();
     }
 
     /**
-     * Remove a sensor from the securityService and then rebuild the sensor list
-     * @param sensor The sensor to remove
+     * Remove the sensors selected in the table from the securityService and then refresh the sensor table
      */
-    private void removeSensor(Sensor sensor) {
-        securityService.removeSensor(sensor);
-        updateSensorList(sensorListPanel);
+    private void removeSelectedSensors() {
+        int[] selected = sensorTable.getSelectedRows();
+        List<Sensor> sensors = new ArrayList<>(selected.length);
+        for (int row : selected) {
+            sensors.add(sensorTableModel.getSensorAt(sensorTable.convertRowIndexToModel(row)));
+        }
+        sensors.forEach(securityService::removeSensor);
+        updateSensorList();
     }
 
     @Override
     public void sensorStatusChanged() {
-        updateSensorList(sensorListPanel);
+        updateSensorList();
     }
 
     @Override
@@ -134,4 +133,8 @@ public class SensorPanel extends JPanel implements StatusListener {
         //no behavior necessary
     }
 
+    @Override
+    public boolean onEventDispatchThread() {
+        return true;
+    }
 }
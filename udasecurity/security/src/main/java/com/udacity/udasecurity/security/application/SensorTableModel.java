@@ -0,0 +1,169 @@
+package com.udacity.udasecurity.security.application;
+
+import com.udacity.udasecurity.security.data.Sensor;
+import com.udacity.udasecurity.security.data.SensorType;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Table model listing the sensors in the system. The model remembers what each row showed when it
+ * was last refreshed, so a refresh only fires events for the rows that were added, removed or
+ * changed and the table repaints just those rows.
+ */
+public class SensorTableModel extends AbstractTableModel {
+
+    static final int NAME_COLUMN = 0;
+    static final int TYPE_COLUMN = 1;
+    static final int ACTIVE_COLUMN = 2;
+
+    private static final String[] COLUMN_NAMES = {"Name", "Type", "Active"};
+
+    private final BiConsumer<Sensor, Boolean> activationHandler;
+    private List<Row> rows = new ArrayList<>();
+
+    /**
+     * @param activationHandler Called when the user ticks or clears a sensor's Active box
+     */
+    public SensorTableModel(BiConsumer<Sensor, Boolean> activationHandler) {
+        this.activationHandler = activationHandler;
+    }
+
+    /**
+     * Brings the table in line with the given sensors.
+     * @param sensors All sensors, in display order
+     */
+    public void refresh(Collection<Sensor> sensors) {
+        Set<UUID> current = new HashSet<>();
+        sensors.forEach(s -> current.add(s.getSensorId()));
+
+        //remove rows of sensors that are gone, bottom up so earlier indexes stay valid
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            if (!current.contains(rows.get(i).sensorId)) {
+                rows.remove(i);
+                fireTableRowsDeleted(i, i);
+            }
+        }
+
+        Map<UUID, Integer> previous = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            previous.put(rows.get(i).sensorId, i);
+        }
+        int next = 0;
+        for (Sensor sensor : sensors) {
+            Integer index = previous.get(sensor.getSensorId());
+            if (index != null && index < next) {
+                //a rename moved the sensor past others; let the table reload everything
+                rows = toRows(sensors);
+                fireTableDataChanged();
+                return;
+            }
+            next = index == null ? next : index + 1;
+        }
+
+        int i = 0;
+        for (Sensor sensor : sensors) {
+            if (i < rows.size() && rows.get(i).sensorId.equals(sensor.getSensorId())) {
+                if (rows.get(i).update(sensor)) {
+                    fireTableRowsUpdated(i, i);
+                }
+            } else {
+                rows.add(i, new Row(sensor));
+                fireTableRowsInserted(i, i);
+            }
+            i++;
+        }
+    }
+
+    public Sensor getSensorAt(int rowIndex) {
+        return rows.get(rowIndex).sensor;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        return columnIndex == ACTIVE_COLUMN ? Boolean.class : String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        return columnIndex == ACTIVE_COLUMN;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        Row row = rows.get(rowIndex);
+        switch (columnIndex) {
+            case NAME_COLUMN:
+                return row.name;
+            case TYPE_COLUMN:
+                return row.type.toString();
+            default:
+                return row.active;
+        }
+    }
+
+    @Override
+    public void setValueAt(Object value, int rowIndex, int columnIndex) {
+        if (columnIndex == ACTIVE_COLUMN) {
+            activationHandler.accept(rows.get(rowIndex).sensor, (Boolean) value);
+        }
+    }
+
+    private static List<Row> toRows(Collection<Sensor> sensors) {
+        List<Row> rows = new ArrayList<>(sensors.size());
+        sensors.forEach(s -> rows.add(new Row(s)));
+        return rows;
+    }
+
+    /**
+     * What a row showed the last time it was refreshed.
+     */
+    private static class Row {
+        private final UUID sensorId;
+        private Sensor sensor;
+        private String name;
+        private SensorType type;
+        private boolean active;
+
+        Row(Sensor sensor) {
+            this.sensorId = sensor.getSensorId();
+            update(sensor);
+        }
+
+        /**
+         * @return Whether anything shown in the row changed
+         */
+        boolean update(Sensor sensor) {
+            boolean changed = !Objects.equals(sensor.getName(), name) || sensor.getSensorType() != type || sensor.getActive() != active;
+            this.sensor = sensor;
+            this.name = sensor.getName();
+            this.type = sensor.getSensorType();
+            this.active = sensor.getActive();
+            return changed;
+        }
+    }
+}
@@ -9,4 +9,11 @@ public interface StatusListener {
     void notify(AlarmStatus status);
     void catDetected(boolean catDetected);
     void sensorStatusChanged();
+
+    /**
+     * Whether this listener must be called on the AWT event dispatch thread, as Swing components must.
+     */
+    default boolean onEventDispatchThread() {
+        return false;
+    }
 }
@@ -0,0 +1,23 @@
+package com.udacity.udasecurity.security.application;
+
+import com.udacity.udasecurity.security.data.AlarmStatus;
+import com.udacity.udasecurity.security.data.ArmingStatus;
+
+import java.awt.*;
+
+/**
+ * Fonts and colors used by the Swing panels. Kept out of the service and data classes so that a
+ * headless runtime never loads AWT.
+ */
+public class StyleService {
+
+    public static final Font HEADING_FONT = new Font("Sans Serif", Font.BOLD, 24);
+
+    public static Color getColor(AlarmStatus status) {
+        return new Color(status.getRgb());
+    }
+
+    public static Color getColor(ArmingStatus status) {
+        return new Color(status.getRgb());
+    }
+}
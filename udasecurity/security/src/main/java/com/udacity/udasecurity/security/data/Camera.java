@@ -0,0 +1,69 @@
+package com.udacity.udasecurity.security.data;
+
+import java.awt.image.BufferedImage;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Camera POJO. Besides its identity, a camera remembers the last frame it sent and whether that
+ * frame showed a cat. Frame and detection state only live in memory; they are not persisted.
+ */
+public class Camera {
+    private UUID cameraId;
+    private String name;
+    private volatile BufferedImage lastFrame;
+    private volatile boolean catDetected;
+
+    public Camera() {
+    }
+
+    public Camera(String name) {
+        this.name = name;
+        this.cameraId = UUID.randomUUID();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Camera camera = (Camera) o;
+        return cameraId.equals(camera.cameraId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(cameraId);
+    }
+
+    public UUID getCameraId() {
+        return cameraId;
+    }
+
+    public void setCameraId(UUID cameraId) {
+        this.cameraId = cameraId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public BufferedImage getLastFrame() {
+        return lastFrame;
+    }
+
+    public void setLastFrame(BufferedImage lastFrame) {
+        this.lastFrame = lastFrame;
+    }
+
+    public boolean isCatDetected() {
+        return catDetected;
+    }
+
+    public void setCatDetected(boolean catDetected) {
+        this.catDetected = catDetected;
+    }
+}
@@ -0,0 +1,504 @@
+package com.udacity.udasecurity.security.data;
+
+import com.google.gson.Gson;
+import com.udacity.udasecurity.metrics.Counter;
+import com.udacity.udasecurity.metrics.MetricsRegistry;
+import com.udacity.udasecurity.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Repository implementation that records every change as a small entry in an append-only,
+ * memory-mapped event log rather than rewriting the whole sensor set on each update.
+ *
+ * Appends are flushed to disk on a group-commit schedule, so a burst of changes costs a single
+ * fsync. Once a log segment holds enough records a new segment is started and a snapshot of the
+ * full state is written in the background, which keeps the amount of log to replay on restart bounded.
+ * Repositories opened through an {@link EventLogStorageEngine} share its flush and snapshot threads.
+ */
+public class EventLogSecurityRepositoryImpl implements SecurityRepository, Closeable {
+
+    public static final long DEFAULT_GROUP_COMMIT_MILLIS = 10;
+    public static final int DEFAULT_SNAPSHOT_THRESHOLD = 10_000;
+
+    //log record types
+    private static final byte SENSOR_UPSERT = 1;
+    private static final byte SENSOR_REMOVE = 2;
+    private static final byte ALARM_STATUS = 3;
+    private static final byte ARMING_STATUS = 4;
+
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    //written by earlier versions; still read if no binary snapshot exists yet
+    private static final String JSON_SNAPSHOT_FILE = "snapshot.json";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final Gson gson = new Gson();
+    private static final Logger log = LoggerFactory.getLogger(EventLogSecurityRepositoryImpl.class);
+    private static final Timer appendTimer = MetricsRegistry.global().timer("repository.eventLog.append");
+    private static final Timer forceTimer = MetricsRegistry.global().timer("repository.eventLog.force");
+    private static final Counter commitFailures = MetricsRegistry.global().counter("repository.eventLog.commitFailures");
+    private static final Counter snapshotFailures = MetricsRegistry.global().counter("repository.eventLog.snapshotFailures");
+
+    private final Path directory;
+    private final int snapshotThreshold;
+    private final boolean groupCommit;
+    private final ScheduledExecutorService committer;
+    private final ExecutorService snapshotter;
+    private final boolean ownsSnapshotter;
+    private final EventLogStorageEngine engine;
+
+    private SensorStore sensors = new SensorStore();
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    private EventLogSegment segment;
+    private long segmentNumber;
+    private int segmentRecords;
+    //snapshots run one after another even when the snapshot executor has several threads
+    private CompletableFuture<Void> lastSnapshot = CompletableFuture.completedFuture(null);
+
+    public EventLogSecurityRepositoryImpl(Path directory) {
+        this(directory, DEFAULT_GROUP_COMMIT_MILLIS, DEFAULT_SNAPSHOT_THRESHOLD);
+    }
+
+    /**
+     * @param directory Directory holding the snapshot and log segments. Created if missing.
+     * @param groupCommitMillis How often appended records are flushed to disk. Zero flushes on every write.
+     * @param snapshotThreshold Number of records written to a segment before a new snapshot is taken
+     */
+    public EventLogSecurityRepositoryImpl(Path directory, long groupCommitMillis, int snapshotThreshold) {
+        this(directory, snapshotThreshold, groupCommitMillis > 0,
+                groupCommitMillis > 0 ? Executors.newSingleThreadScheduledExecutor(daemon("event-log-commit")) : null,
+                Executors.newSingleThreadExecutor(daemon("event-log-snapshot")), true, null);
+        if (committer != null) {
+            committer.scheduleAtFixedRate(this::scheduledCommit, groupCommitMillis, groupCommitMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Opens a repository whose background work is done by a storage engine shared with other
+     * repositories. The engine flushes it on its group-commit schedule and takes its snapshots.
+     */
+    EventLogSecurityRepositoryImpl(Path directory, EventLogStorageEngine engine) {
+        this(directory, engine.getSnapshotThreshold(), engine.isGroupCommit(), null, engine.getSnapshotter(), false, engine);
+    }
+
+    private EventLogSecurityRepositoryImpl(Path directory, int snapshotThreshold, boolean groupCommit,
+                                           ScheduledExecutorService committer, ExecutorService snapshotter,
+                                           boolean ownsSnapshotter, EventLogStorageEngine engine) {
+        this.directory = directory;
+        this.snapshotThreshold = snapshotThreshold;
+        this.groupCommit = groupCommit;
+        this.committer = committer;
+        this.snapshotter = snapshotter;
+        this.ownsSnapshotter = ownsSnapshotter;
+        this.engine = engine;
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException ioe) {
+            if (committer != null) {
+                committer.shutdown();
+            }
+            if (ownsSnapshotter) {
+                snapshotter.shutdown();
+            }
+            throw new UncheckedIOException("Unable to open event log in " + directory, ioe);
+        }
+    }
+
+    @Override
+    public synchronized boolean isAnySensorActive() {
+        return sensors.isAnyActive();
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount() {
+        return sensors.activeCount();
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount(SensorType sensorType) {
+        return sensors.activeCount(sensorType);
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        sensors.update(sensor);
+        append(SENSOR_UPSERT, SensorCodec.encodeSensor(sensor));
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        sensors.remove(sensor.getSensorId());
+        append(SENSOR_REMOVE, toBytes(sensor.getSensorId()));
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        sensors.update(sensor);
+        append(SENSOR_UPSERT, SensorCodec.encodeSensor(sensor));
+    }
+
+    /**
+     * Appends one upsert record per sensor and, when group commit is off, flushes them together.
+     */
+    @Override
+    public synchronized void updateSensors(Collection<Sensor> changed) {
+        for (Sensor sensor : changed) {
+            sensors.update(sensor);
+            write(SENSOR_UPSERT, SensorCodec.encodeSensor(sensor));
+        }
+        if (!groupCommit) {
+            commit();
+        }
+    }
+
+    /**
+     * Appends one upsert record per sensor that was active and, when group commit is off, flushes
+     * them together.
+     */
+    @Override
+    public synchronized List<Sensor> resetAll() {
+        List<Sensor> deactivated = sensors.deactivateAll();
+        for (Sensor sensor : deactivated) {
+            write(SENSOR_UPSERT, SensorCodec.encodeSensor(sensor));
+        }
+        if (!groupCommit) {
+            commit();
+        }
+        return deactivated;
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+        append(ALARM_STATUS, new byte[]{SensorCodec.encode(alarmStatus)});
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+        append(ARMING_STATUS, new byte[]{SensorCodec.encode(armingStatus)});
+    }
+
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        return sensors.sorted();
+    }
+
+    @Override
+    public synchronized Sensor getSensor(UUID sensorId) {
+        return sensors.get(sensorId);
+    }
+
+    /**
+     * Takes the lock only to build a new snapshot after the sensors changed.
+     */
+    @Override
+    public SensorSnapshot getSensorSnapshot() {
+        SensorSnapshot snapshot = sensors.publishedSnapshot();
+        return snapshot != null ? snapshot : buildSensorSnapshot();
+    }
+
+    private synchronized SensorSnapshot buildSensorSnapshot() {
+        return sensors.snapshot();
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public synchronized ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    /**
+     * Flushes any records appended since the last group commit.
+     */
+    public synchronized void commit() {
+        if (segment != null && segment.isDirty()) {
+            long start = forceTimer.start();
+            segment.force();
+            forceTimer.stop(start);
+        }
+    }
+
+    /**
+     * Group commit run on a schedule. A failure is logged and counted instead of thrown, because
+     * an exception would cancel every later commit. The records stay unflushed, so the next
+     * commit tries them again.
+     */
+    void scheduledCommit() {
+        try {
+            commit();
+        } catch (RuntimeException e) {
+            commitFailures.increment();
+            log.error("Group commit of the event log in {} failed", directory, e);
+        }
+    }
+
+    /**
+     * Stops the background threads and flushes outstanding records. Snapshots already
+     * in progress are allowed to finish.
+     */
+    @Override
+    public void close() throws IOException {
+        if (committer != null) {
+            committer.shutdown();
+        }
+        CompletableFuture<Void> snapshot;
+        synchronized (this) {
+            snapshot = lastSnapshot;
+        }
+        try {
+            snapshot.get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            //already logged when it failed; the segments it would have replaced are still on disk
+        } catch (TimeoutException e) {
+            log.warn("Snapshot of the event log in {} still running at close", directory);
+        }
+        if (ownsSnapshotter) {
+            snapshotter.shutdown();
+        }
+        try {
+            synchronized (this) {
+                if (segment == null) {
+                    return;
+                }
+                try {
+                    segment.close();
+                    if (segmentRecords > 0 && sensors.isLoaded()) {
+                        //cover the whole log with a snapshot, so the next start maps it instead of replaying records
+                        long next = segmentNumber + 1;
+                        writeSnapshot(new Snapshot(next, alarmStatus, armingStatus, new ArrayList<>(sensors.sorted())));
+                        deleteSegmentsBefore(next);
+                    }
+                } finally {
+                    segment = null;
+                }
+            }
+        } finally {
+            //a failed close still releases the tenant; the log on disk is replayed when it is opened again
+            if (engine != null) {
+                engine.closed(this);
+            }
+        }
+    }
+
+    private void append(byte type, byte[] payload) {
+        write(type, payload);
+        if (!groupCommit) {
+            commit();
+        }
+    }
+
+    private void write(byte type, byte[] payload) {
+        long start = appendTimer.start();
+        try {
+            segment.append(type, payload);
+            appendTimer.stop(start);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to append to event log " + segment.getPath(), ioe);
+        }
+        if (++segmentRecords >= snapshotThreshold) {
+            segment.force();
+            rollSegment();
+        }
+    }
+
+    /**
+     * Starts a new log segment and hands the previous one to the snapshot thread. The old segment
+     * is only deleted once a snapshot covering it has been written, so a crash at any point
+     * still leaves a snapshot plus the segments needed to reach the latest state.
+     */
+    private void rollSegment() {
+        EventLogSegment previous = segment;
+        long nextNumber = segmentNumber + 1;
+        try {
+            segment = openSegment(nextNumber);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to start event log segment " + nextNumber, ioe);
+        }
+        segmentNumber = nextNumber;
+        segmentRecords = 0;
+
+        Snapshot snapshot = new Snapshot(nextNumber, alarmStatus, armingStatus, copyOf(sensors.sorted()));
+        lastSnapshot = lastSnapshot.handle((ignored, failure) -> null).thenRunAsync(() -> {
+            try {
+                previous.close();
+                writeSnapshot(snapshot);
+                deleteSegmentsBefore(snapshot.segment);
+            } catch (IOException ioe) {
+                throw new UncheckedIOException("Unable to write event log snapshot", ioe);
+            }
+        }, snapshotter).whenComplete((ignored, failure) -> {
+            if (failure != null) {
+                //the log segments stay on disk, so nothing is lost, but replay on restart grows
+                snapshotFailures.increment();
+                log.error("Snapshot of the event log in {} failed", directory, failure);
+            }
+        });
+    }
+
+    /**
+     * Restores the state from the latest snapshot and the log segments written after it. The alarm
+     * and arming status are read from the snapshot header right away, while its sensors are only
+     * decoded once they are needed, so a clean restart takes the same time for any number of sensors.
+     */
+    private void recover() throws IOException {
+        long firstSegment = 0;
+        Path snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        Path jsonSnapshotPath = directory.resolve(JSON_SNAPSHOT_FILE);
+        if (Files.exists(snapshotPath)) {
+            SnapshotFile snapshot = SnapshotFile.open(snapshotPath);
+            alarmStatus = snapshot.getAlarmStatus();
+            armingStatus = snapshot.getArmingStatus();
+            sensors = new SensorStore(snapshot.getSensors());
+            firstSegment = snapshot.getSegment();
+        } else if (Files.exists(jsonSnapshotPath)) {
+            Snapshot snapshot;
+            try (Reader reader = Files.newBufferedReader(jsonSnapshotPath, StandardCharsets.UTF_8)) {
+                snapshot = gson.fromJson(reader, Snapshot.class);
+            }
+            alarmStatus = snapshot.alarmStatus;
+            armingStatus = snapshot.armingStatus;
+            snapshot.sensors.forEach(sensors::update);
+            firstSegment = snapshot.segment;
+        }
+
+        TreeMap<Long, Path> segments = listSegments();
+        segmentNumber = firstSegment;
+        for (Long number : segments.tailMap(firstSegment).keySet()) {
+            if (segment != null) {
+                segment.close();
+            }
+            segmentNumber = number;
+            segment = openSegment(number);
+            segmentRecords = 0;
+            segment.replay(this::apply);
+        }
+        if (segment == null) {
+            segment = openSegment(segmentNumber);
+        }
+    }
+
+    private void apply(byte type, ByteBuffer payload) {
+        segmentRecords++;
+        switch (type) {
+            //upserts written by earlier versions hold the sensor as JSON, which the codec still reads
+            case SENSOR_UPSERT -> sensors.update(SensorCodec.decodeSensor(payload));
+            case SENSOR_REMOVE -> {
+                UUID sensorId = new UUID(payload.getLong(), payload.getLong());
+                sensors.remove(sensorId);
+            }
+            case ALARM_STATUS -> alarmStatus = SensorCodec.decodeAlarmStatus(payload.get());
+            case ARMING_STATUS -> armingStatus = SensorCodec.decodeArmingStatus(payload.get());
+        }
+    }
+
+    private void writeSnapshot(Snapshot snapshot) throws IOException {
+        SnapshotFile.write(directory.resolve(SNAPSHOT_FILE), snapshot.alarmStatus, snapshot.armingStatus,
+                snapshot.segment, snapshot.sensors);
+        Files.deleteIfExists(directory.resolve(JSON_SNAPSHOT_FILE));
+    }
+
+    private void deleteSegmentsBefore(long number) throws IOException {
+        for (Path path : listSegments().headMap(number).values()) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private TreeMap<Long, Path> listSegments() throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                segments.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), path);
+            }
+        }
+        return segments;
+    }
+
+    private EventLogSegment openSegment(long number) throws IOException {
+        return new EventLogSegment(directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX)));
+    }
+
+    private static List<Sensor> copyOf(Collection<Sensor> sensors) {
+        List<Sensor> copies = new ArrayList<>(sensors.size());
+        for (Sensor sensor : sensors) {
+            Sensor copy = new Sensor();
+            copy.setSensorId(sensor.getSensorId());
+            copy.setName(sensor.getName());
+            copy.setSensorType(sensor.getSensorType());
+            copy.setActive(sensor.getActive());
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    private static byte[] toBytes(UUID id) {
+        return ByteBuffer.allocate(Long.BYTES * 2)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+
+    static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Full copy of the repository state, written whenever a log segment is rolled over. Also the
+     * layout of the JSON snapshots written by earlier versions.
+     */
+    private static class Snapshot {
+        private long segment;
+        private AlarmStatus alarmStatus;
+        private ArmingStatus armingStatus;
+        private List<Sensor> sensors;
+
+        Snapshot() {
+        }
+
+        Snapshot(long segment, AlarmStatus alarmStatus, ArmingStatus armingStatus, List<Sensor> sensors) {
+            this.segment = segment;
+            this.alarmStatus = alarmStatus;
+            this.armingStatus = armingStatus;
+            this.sensors = sensors;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.udacity.udasecurity.security.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A single memory-mapped, append-only log file. Each record is laid out as
+ * [int length][int crc][byte type][payload], and every append is followed by a zero
+ * length marker so replay always stops at the end of the last complete record.
+ */
+final class EventLogSegment implements Closeable {
+
+    /**
+     * Callback used when replaying the records of a segment.
+     */
+    interface RecordHandler {
+        void accept(byte type, ByteBuffer payload);
+    }
+
+    private static final int RECORD_HEADER = Integer.BYTES + Integer.BYTES + Byte.BYTES;
+    private static final int INITIAL_CAPACITY = 1 << 20;
+
+    private final Path path;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int position;
+    private boolean dirty;
+
+    EventLogSegment(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), INITIAL_CAPACITY));
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Replays every intact record in the segment and positions the segment for appending
+     * directly after the last one. Anything after a torn or corrupt record is discarded.
+     * @param handler Receives the type and payload of each record, in append order
+     */
+    void replay(RecordHandler handler) {
+        int pos = 0;
+        CRC32 crc = new CRC32();
+        while (pos + RECORD_HEADER <= buffer.capacity()) {
+            int length = buffer.getInt(pos);
+            if (length <= 0 || pos + RECORD_HEADER + length - 1 > buffer.capacity()) {
+                break;
+            }
+            int checksum = buffer.getInt(pos + Integer.BYTES);
+            ByteBuffer record = buffer.duplicate();
+            record.limit(pos + RECORD_HEADER - 1 + length).position(pos + RECORD_HEADER - 1);
+            crc.reset();
+            crc.update(record.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            byte type = record.get();
+            handler.accept(type, record.slice());
+            pos += RECORD_HEADER - 1 + length;
+        }
+        position = pos;
+        terminate();
+    }
+
+    /**
+     * Appends a record to the segment. The record is visible to replay once the OS writes the
+     * page back, and durable after the next call to {@link #force()}.
+     */
+    void append(byte type, byte[] payload) throws IOException {
+        int length = payload.length + 1;
+        ensureCapacity(RECORD_HEADER + payload.length + Integer.BYTES);
+
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+
+        buffer.position(position + Integer.BYTES);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(type);
+        buffer.put(payload);
+        buffer.putInt(0);
+        //the length is written last so a partially written record is never considered valid
+        buffer.putInt(position, length);
+        position += RECORD_HEADER + payload.length;
+        dirty = true;
+    }
+
+    /**
+     * Flushes appended records to the storage device if anything changed since the last call.
+     */
+    void force() {
+        if (dirty) {
+            buffer.force();
+            //cleared only once the force succeeded, so a failed flush is retried
+            dirty = false;
+        }
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private void terminate() {
+        if (position + Integer.BYTES <= buffer.capacity()) {
+            buffer.putInt(position, 0);
+        }
+    }
+
+    private void ensureCapacity(int recordBytes) throws IOException {
+        if (position + recordBytes <= buffer.capacity()) {
+            return;
+        }
+        long capacity = buffer.capacity();
+        while (capacity < position + recordBytes) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("Event log segment is full: " + path);
+        }
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+}
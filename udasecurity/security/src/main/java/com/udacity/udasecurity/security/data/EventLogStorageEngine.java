@@ -0,0 +1,145 @@
+package com.udacity.udasecurity.security.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Storage shared by the event log repositories of many homes. Each home, or tenant, gets its own
+ * subdirectory and its own {@link EventLogSecurityRepositoryImpl}, so tenants never see each
+ * other's state, but the background work is shared: one thread flushes every open repository on
+ * the group-commit schedule and a small pool writes snapshots. Opening thousands of repositories
+ * therefore does not start thousands of threads.
+ *
+ * A tenant's repository may only be open once at a time. Closing it releases the tenant.
+ */
+public class EventLogStorageEngine implements Closeable {
+
+    private static final Pattern TENANT_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final Path root;
+    private final long groupCommitMillis;
+    private final int snapshotThreshold;
+    private final ScheduledExecutorService committer;
+    private final ExecutorService snapshotter;
+    private final Map<String, EventLogSecurityRepositoryImpl> open = new ConcurrentHashMap<>();
+    //tenants being opened or open; reserved before recovery, which runs outside the maps' locks
+    private final Set<String> reserved = ConcurrentHashMap.newKeySet();
+
+    public EventLogStorageEngine(Path root) {
+        this(root, EventLogSecurityRepositoryImpl.DEFAULT_GROUP_COMMIT_MILLIS,
+                EventLogSecurityRepositoryImpl.DEFAULT_SNAPSHOT_THRESHOLD, 2);
+    }
+
+    /**
+     * @param root Directory holding one subdirectory per tenant
+     * @param groupCommitMillis How often appended records are flushed to disk. Zero flushes on every write.
+     * @param snapshotThreshold Number of records written to a segment before a new snapshot is taken
+     * @param snapshotThreads Number of threads writing snapshots for all tenants
+     */
+    public EventLogStorageEngine(Path root, long groupCommitMillis, int snapshotThreshold, int snapshotThreads) {
+        this.root = root;
+        this.groupCommitMillis = groupCommitMillis;
+        this.snapshotThreshold = snapshotThreshold;
+        this.snapshotter = Executors.newFixedThreadPool(snapshotThreads, EventLogSecurityRepositoryImpl.daemon("event-log-snapshot"));
+        if (groupCommitMillis > 0) {
+            committer = Executors.newSingleThreadScheduledExecutor(EventLogSecurityRepositoryImpl.daemon("event-log-commit"));
+            committer.scheduleAtFixedRate(this::commit, groupCommitMillis, groupCommitMillis, TimeUnit.MILLISECONDS);
+        } else {
+            committer = null;
+        }
+    }
+
+    /**
+     * Opens the repository of a tenant, creating it if the tenant is new.
+     * @param tenantId Letters, digits, '-' and '_' only, as it names the tenant's directory
+     * @throws IllegalStateException If the tenant's repository is already open
+     */
+    public EventLogSecurityRepositoryImpl open(String tenantId) {
+        if (!TENANT_ID.matcher(tenantId).matches()) {
+            throw new IllegalArgumentException("Invalid tenant id " + tenantId);
+        }
+        if (!reserved.add(tenantId)) {
+            throw new IllegalStateException("Tenant " + tenantId + " is already open");
+        }
+        EventLogSecurityRepositoryImpl repository;
+        try {
+            repository = new EventLogSecurityRepositoryImpl(root.resolve(tenantId), this);
+        } catch (RuntimeException | Error e) {
+            reserved.remove(tenantId);
+            throw e;
+        }
+        open.put(tenantId, repository);
+        return repository;
+    }
+
+    /**
+     * @return Number of tenant repositories currently open
+     */
+    public int getOpenCount() {
+        return open.size();
+    }
+
+    /**
+     * Flushes every open repository with records appended since the last group commit. A
+     * repository that fails to flush is logged and does not stop the others.
+     */
+    public void commit() {
+        open.values().forEach(EventLogSecurityRepositoryImpl::scheduledCommit);
+    }
+
+    /**
+     * Closes every repository that is still open and stops the background threads.
+     */
+    @Override
+    public void close() throws IOException {
+        if (committer != null) {
+            committer.shutdown();
+        }
+        List<IOException> failures = new ArrayList<>();
+        for (EventLogSecurityRepositoryImpl repository : new ArrayList<>(open.values())) {
+            try {
+                repository.close();
+            } catch (IOException | UncheckedIOException e) {
+                failures.add(e instanceof IOException ? (IOException) e : ((UncheckedIOException) e).getCause());
+            }
+        }
+        snapshotter.shutdown();
+        if (!failures.isEmpty()) {
+            IOException failure = new IOException("Unable to close " + failures.size() + " tenant repositories");
+            failures.forEach(failure::addSuppressed);
+            throw failure;
+        }
+    }
+
+    void closed(EventLogSecurityRepositoryImpl repository) {
+        for (Map.Entry<String, EventLogSecurityRepositoryImpl> entry : open.entrySet()) {
+            if (entry.getValue() == repository && open.remove(entry.getKey(), repository)) {
+                reserved.remove(entry.getKey());
+            }
+        }
+    }
+
+    boolean isGroupCommit() {
+        return groupCommitMillis > 0;
+    }
+
+    int getSnapshotThreshold() {
+        return snapshotThreshold;
+    }
+
+    ExecutorService getSnapshotter() {
+        return snapshotter;
+    }
+}
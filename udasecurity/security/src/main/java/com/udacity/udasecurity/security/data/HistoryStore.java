@@ -0,0 +1,725 @@
+package com.udacity.udasecurity.security.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * History of sensor and alarm transitions, kept on disk to answer questions such as how often a
+ * sensor tripped in the last month or how long the system spent in pending alarm each week.
+ *
+ * Records go into partitions that each cover at most one day. The partition being written is held
+ * in memory. Each {@link #flush()} appends the rows added since the last one to its file as a new
+ * block, and queries likewise encode only the rows added since the last query; the blocks already
+ * encoded are kept. Once a record for a later day arrives the partition is sealed: its file is
+ * rewritten as a single block and, like every partition found on disk, read through a memory
+ * mapping. A block stores its rows by column:
+ *
+ * <pre>
+ * [int magic][short version][int crc][long base time][long min time][long max time]
+ * [int sensor runs][int sensor rows][int alarm rows]
+ * [int run table bytes][int time bytes][int alarm time bytes][int alarm status bytes]
+ * [run table][sensor times][sensor active bits][alarm times][alarm statuses]
+ * </pre>
+ *
+ * The CRC32 covers the rest of the block after it. A block torn by a crash during a flush fails
+ * its check and is ignored, along with anything after it.
+ *
+ * Sensor rows are sorted by sensor and then time, so each sensor's rows form one run. The run
+ * table holds, per run, the sensor's dictionary index as a delta from the previous run, the number
+ * of rows and the number of time bytes, all as varints; a query for one sensor skips straight to
+ * its run. Times are zigzag varint deltas, starting from the partition's base time at each run,
+ * and active flags are packed eight to a byte. Alarm rows are sorted by time, with times
+ * delta-encoded the same way and statuses run-length encoded. Sensor IDs and types are kept once,
+ * in a dictionary file shared by all partitions.
+ *
+ * All methods are synchronized; queries are meant for dashboards and reports, not the event path.
+ * Records not yet flushed are lost if the process dies.
+ */
+public class HistoryStore implements Closeable {
+
+    /**
+     * Receives sensor rows from {@link #scanSensors}.
+     */
+    public interface SensorVisitor {
+        void visit(long timeMillis, UUID sensorId, SensorType sensorType, boolean active);
+    }
+
+    /**
+     * Receives alarm rows from {@link #scanAlarm}.
+     */
+    public interface AlarmVisitor {
+        void visit(long timeMillis, AlarmStatus alarmStatus);
+    }
+
+    private static final int MAGIC = 0x43504853; //"CPHS"
+    private static final int DICTIONARY_MAGIC = 0x43505344; //"CPSD"
+    private static final short VERSION = 2;
+    private static final int CRC_OFFSET = Integer.BYTES + Short.BYTES;
+    private static final int HEADER = CRC_OFFSET + Integer.BYTES + 3 * Long.BYTES + 7 * Integer.BYTES;
+    private static final long DAY_MILLIS = 86_400_000L;
+    private static final int MAX_PARTITION_ROWS = 1 << 20;
+    //blocks of the open partition kept for queries before they are merged into one
+    private static final int MAX_OPEN_BLOCKS = 16;
+    private static final String DICTIONARY_FILE = "sensors.dict";
+    private static final String PARTITION_PREFIX = "partition-";
+    private static final String PARTITION_SUFFIX = ".seg";
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+
+    private final Path directory;
+    private final Map<UUID, Integer> sensorIndexes = new HashMap<>();
+    private final List<UUID> sensorIds = new ArrayList<>();
+    private final List<SensorType> sensorTypes = new ArrayList<>();
+    private int savedSensors;
+
+    private final TreeMap<Long, List<Segment>> sealed = new TreeMap<>();
+    private long openNumber;
+    private Partition open;
+    //blocks encoded from the open partition for queries, each holding the rows added since the one before
+    private final List<Segment> openBlocks = new ArrayList<>();
+
+    /**
+     * Opens the history in a directory, creating it if missing. Records written from now on go
+     * into a new partition.
+     */
+    public HistoryStore(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            readDictionary();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PARTITION_PREFIX + "*" + PARTITION_SUFFIX)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    long number = Long.parseLong(name.substring(PARTITION_PREFIX.length(), name.length() - PARTITION_SUFFIX.length()));
+                    sealed.put(number, Segment.map(file));
+                }
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to open history in " + directory, ioe);
+        }
+        openNumber = sealed.isEmpty() ? 0 : sealed.lastKey() + 1;
+    }
+
+    public synchronized void recordSensor(long timeMillis, UUID sensorId, SensorType sensorType, boolean active) {
+        Integer index = sensorIndexes.get(sensorId);
+        if (index == null) {
+            index = sensorIds.size();
+            sensorIndexes.put(sensorId, index);
+            sensorIds.add(sensorId);
+            sensorTypes.add(sensorType);
+        }
+        partitionFor(timeMillis).addSensor(timeMillis, index, active);
+    }
+
+    public synchronized void recordAlarm(long timeMillis, AlarmStatus alarmStatus) {
+        partitionFor(timeMillis).addAlarm(timeMillis, alarmStatus);
+    }
+
+    /**
+     * Visits the rows of one sensor, or of all sensors, within a time range. Within a block, rows
+     * are visited sorted by sensor and then time; blocks are visited oldest first.
+     * @param sensorId Sensor to visit, or null for all sensors
+     * @param fromMillis Start of the range, inclusive
+     * @param toMillis End of the range, exclusive
+     */
+    public synchronized void scanSensors(UUID sensorId, long fromMillis, long toMillis, SensorVisitor visitor) {
+        int filter;
+        if (sensorId == null) {
+            filter = -1;
+        } else {
+            Integer index = sensorIndexes.get(sensorId);
+            if (index == null) {
+                return;
+            }
+            filter = index;
+        }
+        for (Segment segment : segments(fromMillis, toMillis)) {
+            segment.scanSensors(filter, fromMillis, toMillis, (time, index, active) ->
+                    visitor.visit(time, sensorIds.get(index), sensorTypes.get(index), active));
+        }
+    }
+
+    /**
+     * Visits alarm transitions within a time range, oldest block first and sorted by time within
+     * each block.
+     */
+    public synchronized void scanAlarm(long fromMillis, long toMillis, AlarmVisitor visitor) {
+        for (Segment segment : segments(fromMillis, toMillis)) {
+            segment.scanAlarm(fromMillis, toMillis, visitor);
+        }
+    }
+
+    /**
+     * @return How many times the sensor became active within the range
+     */
+    public synchronized int countActivations(UUID sensorId, long fromMillis, long toMillis) {
+        int[] count = new int[1];
+        scanSensors(sensorId, fromMillis, toMillis, (time, id, type, active) -> {
+            if (active) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * @return How many times sensors of the type became active within the range
+     */
+    public synchronized int countActivations(SensorType sensorType, long fromMillis, long toMillis) {
+        int[] count = new int[1];
+        scanSensors(null, fromMillis, toMillis, (time, id, type, active) -> {
+            if (active && type == sensorType) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * @return Milliseconds spent in the alarm status within the range
+     */
+    public synchronized long timeInStatus(AlarmStatus alarmStatus, long fromMillis, long toMillis) {
+        return timeInStatus(alarmStatus, fromMillis, toMillis, Math.max(1, toMillis - fromMillis))[0];
+    }
+
+    /**
+     * Splits the range into buckets, e.g. of a week each, and works out how long the system spent
+     * in the alarm status in each. The status at the start of the range is the one set by the last
+     * transition before it; time before the first transition ever recorded does not count.
+     * @param toMillis End of the range, exclusive. Pass the current time for a range ending now.
+     * @return Milliseconds spent in the status per bucket, the last bucket possibly cut short
+     */
+    public synchronized long[] timeInStatus(AlarmStatus alarmStatus, long fromMillis, long toMillis, long bucketMillis) {
+        if (bucketMillis <= 0 || toMillis < fromMillis) {
+            throw new IllegalArgumentException("Invalid range or bucket size");
+        }
+        long[] totals = new long[(int) Math.max(1, (toMillis - fromMillis + bucketMillis - 1) / bucketMillis)];
+        AlarmStatus status = statusBefore(fromMillis);
+        List<long[]> transitions = new ArrayList<>();
+        scanAlarm(fromMillis, toMillis, (time, next) -> transitions.add(new long[]{time, next.ordinal()}));
+        transitions.sort(Comparator.comparingLong(transition -> transition[0]));
+
+        long start = fromMillis;
+        for (long[] transition : transitions) {
+            if (status == alarmStatus) {
+                addInterval(totals, fromMillis, bucketMillis, start, transition[0]);
+            }
+            start = transition[0];
+            status = ALARM_STATUSES[(int) transition[1]];
+        }
+        if (status == alarmStatus) {
+            addInterval(totals, fromMillis, bucketMillis, start, toMillis);
+        }
+        return totals;
+    }
+
+    /**
+     * Appends the rows added to the partition being filled since the last flush, and writes any
+     * new sensors to disk.
+     */
+    public synchronized void flush() throws IOException {
+        if (sensorIds.size() > savedSensors) {
+            writeDictionary();
+        }
+        if (open != null && open.hasUnflushed()) {
+            ByteBuffer block = open.encode(open.flushedRows, open.rows, open.flushedAlarmRows, open.alarmRows);
+            try (FileChannel channel = FileChannel.open(partitionPath(openNumber), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE)) {
+                //drops whatever a flush that failed halfway left behind
+                channel.truncate(open.flushedBytes);
+                channel.position(open.flushedBytes);
+                while (block.hasRemaining()) {
+                    channel.write(block);
+                }
+                channel.force(true);
+                open.flushedBytes = channel.position();
+            }
+            open.flushedRows = open.rows;
+            open.flushedAlarmRows = open.alarmRows;
+            open.flushedBlocks++;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+    }
+
+    private Partition partitionFor(long timeMillis) {
+        long day = Math.floorDiv(timeMillis, DAY_MILLIS);
+        if (open != null && (day > open.day || open.size() >= MAX_PARTITION_ROWS)) {
+            try {
+                flush();
+                if (open.flushedBlocks > 1) {
+                    //sealed partitions are read for good, so merge the flushed blocks once
+                    write(partitionPath(openNumber), open.encode(0, open.rows, 0, open.alarmRows));
+                }
+                sealed.put(openNumber, Segment.map(partitionPath(openNumber)));
+            } catch (IOException ioe) {
+                throw new UncheckedIOException("Unable to seal history partition " + openNumber, ioe);
+            }
+            openNumber++;
+            open = null;
+            openBlocks.clear();
+        }
+        if (open == null) {
+            open = new Partition(day);
+        }
+        return open;
+    }
+
+    /**
+     * Encodes the rows added to the open partition since the last query as one more block. Once
+     * there are too many blocks they are merged, so queries do not slow down as blocks pile up.
+     */
+    private List<Segment> openBlocks() {
+        if (open != null && open.hasUnencoded()) {
+            if (openBlocks.size() >= MAX_OPEN_BLOCKS) {
+                openBlocks.clear();
+                open.encodedRows = 0;
+                open.encodedAlarmRows = 0;
+            }
+            openBlocks.add(new Segment(open.encode(open.encodedRows, open.rows, open.encodedAlarmRows, open.alarmRows)));
+            open.encodedRows = open.rows;
+            open.encodedAlarmRows = open.alarmRows;
+        }
+        return openBlocks;
+    }
+
+    /**
+     * @return The blocks holding rows within the range, oldest first
+     */
+    private List<Segment> segments(long fromMillis, long toMillis) {
+        List<Segment> segments = new ArrayList<>();
+        for (List<Segment> partition : sealed.values()) {
+            for (Segment segment : partition) {
+                if (segment.overlaps(fromMillis, toMillis)) {
+                    segments.add(segment);
+                }
+            }
+        }
+        for (Segment segment : openBlocks()) {
+            if (segment.overlaps(fromMillis, toMillis)) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Finds the status set by the last transition before the time, or null if there was none.
+     * Blocks are visited by how late their rows reach, latest first, and the search stops once no
+     * remaining block can hold a later transition, so older history is not read. Of transitions
+     * in the same millisecond, the one recorded last wins.
+     */
+    private AlarmStatus statusBefore(long timeMillis) {
+        List<Segment> segments = segments(Long.MIN_VALUE, timeMillis);
+        Integer[] order = new Integer[segments.size()];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.comparingLong((Integer i) -> segments.get(i).maxTime).reversed());
+        long[] latest = {Long.MIN_VALUE, -1};
+        AlarmStatus[] status = new AlarmStatus[1];
+        for (int i : order) {
+            Segment segment = segments.get(i);
+            if (status[0] != null && Math.min(segment.maxTime, timeMillis - 1) < latest[0]) {
+                break;
+            }
+            segment.scanAlarm(Long.MIN_VALUE, timeMillis, (time, next) -> {
+                if (time > latest[0] || (time == latest[0] && i >= latest[1])) {
+                    latest[0] = time;
+                    latest[1] = i;
+                    status[0] = next;
+                }
+            });
+        }
+        return status[0];
+    }
+
+    private static void addInterval(long[] totals, long fromMillis, long bucketMillis, long start, long end) {
+        while (start < end) {
+            int bucket = (int) ((start - fromMillis) / bucketMillis);
+            long bucketEnd = Math.min(end, fromMillis + (bucket + 1) * bucketMillis);
+            totals[bucket] += bucketEnd - start;
+            start = bucketEnd;
+        }
+    }
+
+    private Path partitionPath(long number) {
+        return directory.resolve(PARTITION_PREFIX + number + PARTITION_SUFFIX);
+    }
+
+    private void readDictionary() throws IOException {
+        Path path = directory.resolve(DICTIONARY_FILE);
+        if (!Files.exists(path)) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        try {
+            if (buffer.getInt() != DICTIONARY_MAGIC) {
+                throw new IOException("Not a sensor dictionary: " + path);
+            }
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                UUID sensorId = new UUID(buffer.getLong(), buffer.getLong());
+                sensorIndexes.put(sensorId, i);
+                sensorIds.add(sensorId);
+                sensorTypes.add(SENSOR_TYPES[buffer.get()]);
+            }
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt sensor dictionary: " + path, e);
+        }
+        savedSensors = sensorIds.size();
+    }
+
+    private void writeDictionary() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Integer.BYTES + sensorIds.size() * (2 * Long.BYTES + Byte.BYTES));
+        buffer.putInt(DICTIONARY_MAGIC).putInt(sensorIds.size());
+        for (int i = 0; i < sensorIds.size(); i++) {
+            buffer.putLong(sensorIds.get(i).getMostSignificantBits())
+                    .putLong(sensorIds.get(i).getLeastSignificantBits())
+                    .put((byte) sensorTypes.get(i).ordinal());
+        }
+        buffer.flip();
+        write(directory.resolve(DICTIONARY_FILE), buffer);
+        savedSensors = sensorIds.size();
+    }
+
+    /**
+     * Atomically replaces a file with the buffer's remaining bytes.
+     */
+    private static void write(Path path, ByteBuffer buffer) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Rows of the partition being filled, in arrival order.
+     */
+    private static class Partition {
+        private final long day;
+        private long[] times = new long[64];
+        private int[] sensors = new int[64];
+        private final BitSet active = new BitSet();
+        private int rows;
+        private long[] alarmTimes = new long[16];
+        private byte[] alarmStatuses = new byte[16];
+        private int alarmRows;
+        //rows already encoded into query blocks and appended to the file
+        private int encodedRows;
+        private int encodedAlarmRows;
+        private int flushedRows;
+        private int flushedAlarmRows;
+        private long flushedBytes;
+        private int flushedBlocks;
+
+        Partition(long day) {
+            this.day = day;
+        }
+
+        int size() {
+            return rows + alarmRows;
+        }
+
+        boolean hasUnencoded() {
+            return encodedRows < rows || encodedAlarmRows < alarmRows;
+        }
+
+        boolean hasUnflushed() {
+            return flushedRows < rows || flushedAlarmRows < alarmRows;
+        }
+
+        void addSensor(long timeMillis, int sensor, boolean isActive) {
+            if (rows == times.length) {
+                times = Arrays.copyOf(times, rows * 2);
+                sensors = Arrays.copyOf(sensors, rows * 2);
+            }
+            times[rows] = timeMillis;
+            sensors[rows] = sensor;
+            active.set(rows, isActive);
+            rows++;
+        }
+
+        void addAlarm(long timeMillis, AlarmStatus alarmStatus) {
+            if (alarmRows == alarmTimes.length) {
+                alarmTimes = Arrays.copyOf(alarmTimes, alarmRows * 2);
+                alarmStatuses = Arrays.copyOf(alarmStatuses, alarmRows * 2);
+            }
+            alarmTimes[alarmRows] = timeMillis;
+            alarmStatuses[alarmRows] = (byte) alarmStatus.ordinal();
+            alarmRows++;
+        }
+
+        /**
+         * Encodes the sensor rows and alarm rows within the given ranges as one block.
+         */
+        ByteBuffer encode(int fromRow, int toRow, int fromAlarmRow, int toAlarmRow) {
+            long base = day * DAY_MILLIS;
+            int blockRows = toRow - fromRow;
+            int blockAlarmRows = toAlarmRow - fromAlarmRow;
+            long minTime = Long.MAX_VALUE;
+            long maxTime = Long.MIN_VALUE;
+            for (int row = fromRow; row < toRow; row++) {
+                minTime = Math.min(minTime, times[row]);
+                maxTime = Math.max(maxTime, times[row]);
+            }
+            for (int row = fromAlarmRow; row < toAlarmRow; row++) {
+                minTime = Math.min(minTime, alarmTimes[row]);
+                maxTime = Math.max(maxTime, alarmTimes[row]);
+            }
+
+            Integer[] order = new Integer[blockRows];
+            Arrays.setAll(order, i -> fromRow + i);
+            Arrays.sort(order, Comparator.<Integer>comparingInt(row -> sensors[row]).thenComparingLong(row -> times[row]));
+            ByteArrayOutputStream runTable = new ByteArrayOutputStream();
+            ByteArrayOutputStream timeColumn = new ByteArrayOutputStream();
+            byte[] activeColumn = new byte[(blockRows + 7) / 8];
+            int runs = 0;
+            int previousSensor = 0;
+            int i = 0;
+            while (i < blockRows) {
+                int sensor = sensors[order[i]];
+                int runStart = i;
+                int timeStart = timeColumn.size();
+                long previous = base;
+                for (; i < blockRows && sensors[order[i]] == sensor; i++) {
+                    int row = order[i];
+                    writeVarLong(timeColumn, zigzag(times[row] - previous));
+                    previous = times[row];
+                    if (active.get(row)) {
+                        activeColumn[i >> 3] |= 1 << (i & 7);
+                    }
+                }
+                writeVarLong(runTable, sensor - previousSensor);
+                writeVarLong(runTable, i - runStart);
+                writeVarLong(runTable, timeColumn.size() - timeStart);
+                previousSensor = sensor;
+                runs++;
+            }
+
+            Integer[] alarmOrder = new Integer[blockAlarmRows];
+            Arrays.setAll(alarmOrder, j -> fromAlarmRow + j);
+            //stable, so transitions recorded in the same millisecond keep their order
+            Arrays.sort(alarmOrder, Comparator.comparingLong(row -> alarmTimes[row]));
+            ByteArrayOutputStream alarmTimeColumn = new ByteArrayOutputStream();
+            ByteArrayOutputStream alarmStatusColumn = new ByteArrayOutputStream();
+            long previous = base;
+            int runLength = 0;
+            for (int j = 0; j < blockAlarmRows; j++) {
+                int row = alarmOrder[j];
+                writeVarLong(alarmTimeColumn, zigzag(alarmTimes[row] - previous));
+                previous = alarmTimes[row];
+                if (runLength > 0 && alarmStatuses[row] != alarmStatuses[alarmOrder[j - 1]]) {
+                    writeVarLong(alarmStatusColumn, alarmStatuses[alarmOrder[j - 1]]);
+                    writeVarLong(alarmStatusColumn, runLength);
+                    runLength = 0;
+                }
+                runLength++;
+            }
+            if (runLength > 0) {
+                writeVarLong(alarmStatusColumn, alarmStatuses[alarmOrder[blockAlarmRows - 1]]);
+                writeVarLong(alarmStatusColumn, runLength);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER + runTable.size() + timeColumn.size() + activeColumn.length
+                    + alarmTimeColumn.size() + alarmStatusColumn.size());
+            //the checksum is filled in once the rest is written
+            buffer.putInt(MAGIC).putShort(VERSION).putInt(0)
+                    .putLong(base).putLong(minTime).putLong(maxTime)
+                    .putInt(runs).putInt(blockRows).putInt(blockAlarmRows)
+                    .putInt(runTable.size()).putInt(timeColumn.size())
+                    .putInt(alarmTimeColumn.size()).putInt(alarmStatusColumn.size())
+                    .put(runTable.toByteArray()).put(timeColumn.toByteArray()).put(activeColumn)
+                    .put(alarmTimeColumn.toByteArray()).put(alarmStatusColumn.toByteArray());
+            buffer.flip();
+            buffer.putInt(CRC_OFFSET, checksum(buffer));
+            return buffer;
+        }
+    }
+
+    private interface RowVisitor {
+        void visit(long timeMillis, int sensor, boolean active);
+    }
+
+    /**
+     * @return CRC32 of a block's bytes after its checksum
+     */
+    private static int checksum(ByteBuffer block) {
+        CRC32 crc = new CRC32();
+        crc.update(block.duplicate().position(CRC_OFFSET + Integer.BYTES));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * An encoded block, either mapped from disk or encoded from the partition being filled.
+     */
+    private static class Segment {
+        private final ByteBuffer data;
+        private final long base;
+        private final long minTime;
+        private final long maxTime;
+        private final int runs;
+        private final int alarmRows;
+        private final int runTableStart;
+        private final int timeStart;
+        private final int activeStart;
+        private final int alarmTimeStart;
+        private final int alarmStatusStart;
+        private final int length;
+
+        Segment(ByteBuffer data) {
+            this.data = data;
+            ByteBuffer header = data.duplicate();
+            if (header.getInt() != MAGIC || header.getShort() != VERSION) {
+                throw new IllegalArgumentException("Not a version " + VERSION + " history partition");
+            }
+            header.getInt();
+            base = header.getLong();
+            minTime = header.getLong();
+            maxTime = header.getLong();
+            runs = header.getInt();
+            int rows = header.getInt();
+            alarmRows = header.getInt();
+            runTableStart = HEADER;
+            timeStart = runTableStart + header.getInt();
+            activeStart = timeStart + header.getInt();
+            alarmTimeStart = activeStart + (rows + 7) / 8;
+            alarmStatusStart = alarmTimeStart + header.getInt();
+            length = alarmStatusStart + header.getInt();
+        }
+
+        /**
+         * Maps a partition file and splits it into its blocks. A block that does not fit in the
+         * file or fails its checksum was torn by a crash; it and anything after it are ignored.
+         */
+        static List<Segment> map(Path path) throws IOException {
+            ByteBuffer file;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            List<Segment> blocks = new ArrayList<>();
+            try {
+                while (file.remaining() >= HEADER) {
+                    Segment block = new Segment(file.slice());
+                    if (block.length > file.remaining()
+                            || checksum(file.slice().limit(block.length)) != file.getInt(file.position() + CRC_OFFSET)) {
+                        break;
+                    }
+                    blocks.add(new Segment(file.slice().limit(block.length)));
+                    file.position(file.position() + block.length);
+                }
+            } catch (IllegalArgumentException | BufferUnderflowException e) {
+                if (blocks.isEmpty()) {
+                    throw new IOException("Corrupt history partition: " + path, e);
+                }
+                //anything but the first block failing to parse was torn as well
+            }
+            return blocks;
+        }
+
+        boolean overlaps(long fromMillis, long toMillis) {
+            return minTime < toMillis && maxTime >= fromMillis;
+        }
+
+        void scanSensors(int filter, long fromMillis, long toMillis, RowVisitor visitor) {
+            ByteBuffer runTable = data.duplicate().position(runTableStart);
+            ByteBuffer timeColumn = data.duplicate();
+            int sensor = 0;
+            int row = 0;
+            int timePosition = timeStart;
+            for (int run = 0; run < runs; run++) {
+                sensor += (int) readVarLong(runTable);
+                int count = (int) readVarLong(runTable);
+                int timeBytes = (int) readVarLong(runTable);
+                if (filter < 0 || filter == sensor) {
+                    timeColumn.position(timePosition);
+                    long time = base;
+                    for (int i = 0; i < count; i++) {
+                        time += unzigzag(readVarLong(timeColumn));
+                        if (time >= fromMillis && time < toMillis) {
+                            int bit = row + i;
+                            visitor.visit(time, sensor, (data.get(activeStart + (bit >> 3)) & (1 << (bit & 7))) != 0);
+                        }
+                    }
+                    if (filter >= 0) {
+                        return;
+                    }
+                }
+                row += count;
+                timePosition += timeBytes;
+            }
+        }
+
+        void scanAlarm(long fromMillis, long toMillis, AlarmVisitor visitor) {
+            ByteBuffer times = data.duplicate().position(alarmTimeStart);
+            ByteBuffer statuses = data.duplicate().position(alarmStatusStart);
+            long time = base;
+            AlarmStatus status = null;
+            long remaining = 0;
+            for (int i = 0; i < alarmRows; i++) {
+                if (remaining == 0) {
+                    status = ALARM_STATUSES[(int) readVarLong(statuses)];
+                    remaining = readVarLong(statuses);
+                }
+                remaining--;
+                time += unzigzag(readVarLong(times));
+                if (time >= fromMillis && time < toMillis) {
+                    visitor.visit(time, status);
+                }
+            }
+        }
+    }
+}
@@ -2,10 +2,17 @@ package com.udacity.udasecurity.security.data;
 
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
+import com.udacity.udasecurity.metrics.MetricsRegistry;
+import com.udacity.udasecurity.metrics.Timer;
 
+import java.io.ByteArrayOutputStream;
 import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.prefs.Preferences;
 
 /**
@@ -15,74 +22,132 @@ import java.util.prefs.Preferences;
  */
 public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository{
 
-    private Set<Sensor> sensors;
+    private final Preferences prefs;
+    private SensorStore sensors = new SensorStore();
     private AlarmStatus alarmStatus;
     private ArmingStatus armingStatus;
 
     //preference keys
+    //sensors encoded with SensorCodec, split into SENSOR_DATA_CHUNKS values under SENSOR_DATA.0,
+    // SENSOR_DATA.1 and so on since one preference value holds only a few kilobytes
+    private static final String SENSOR_DATA = "SENSOR_DATA";
+    private static final String SENSOR_DATA_CHUNKS = "SENSOR_DATA_CHUNKS";
+    //written by earlier versions: sensors as JSON, and the sensor count followed by the active
+    // count of each sensor type, comma separated
     private static final String SENSORS = "SENSORS";
+    private static final String SENSOR_SUMMARY = "SENSOR_SUMMARY";
     private static final String ALARM_STATUS = "ALARM_STATUS";
     private static final String ARMING_STATUS = "ARMING_STATUS";
 
-    private static final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
-    private static final Gson gson = new Gson(); //used to serialize objects into JSON
+    //bytes per chunk; putByteArray stores them Base64 encoded, four characters for every three bytes
+    private static final int CHUNK_SIZE = Preferences.MAX_VALUE_LENGTH / 4 * 3;
+
+    private static final Gson gson = new Gson(); //used to read sensors stored as JSON
+    private static final Timer writeTimer = MetricsRegistry.global().timer("repository.pretend.write");
 
     public PretendDatabaseSecurityRepositoryImpl() {
+        this(Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class));
+    }
+
+    /**
+     * @param prefs Preferences node the state is kept in. Repositories given different nodes,
+     *              e.g. one child node per home, do not see each other's state.
+     */
+    public PretendDatabaseSecurityRepositoryImpl(Preferences prefs) {
+        this.prefs = prefs;
         //load system state from prefs, or else default
         alarmStatus = AlarmStatus.valueOf(prefs.get(ALARM_STATUS, AlarmStatus.NO_ALARM.toString()));
         armingStatus = ArmingStatus.valueOf(prefs.get(ARMING_STATUS, ArmingStatus.DISARMED.toString()));
 
         //we've serialized our sensor objects for storage, which should be a good warning sign that
-        // this is likely an impractical solution for a real system
+        // this is likely an impractical solution for a real system. The sensors are only decoded
+        // once they are needed; until then the header answers how many are active.
+        byte[] sensorData = readChunks();
         String sensorString = prefs.get(SENSORS, null);
-        if(sensorString == null) {
-            sensors = new TreeSet<>();
-        } else {
-            Type type = new TypeToken<Set<Sensor>>() {
-            }.getType();
-            sensors = gson.fromJson(sensorString, type);
+        String summary = prefs.get(SENSOR_SUMMARY, null);
+        if(sensorData != null) {
+            sensors = new SensorStore(SensorCodec.decodeSensors(sensorData));
+        } else if(sensorString != null && summary != null) {
+            sensors = new SensorStore(new JsonSensors(sensorString, summary));
+        } else if(sensorString != null) {
+            new JsonSensors(sensorString, null).forEach(sensors::update);
         }
     }
 
     @Override
     public boolean isAnySensorActive() {
-        return sensors.stream().anyMatch(Sensor::getActive);
+        return sensors.isAnyActive();
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        return sensors.activeCount();
+    }
+
+    @Override
+    public int getActiveSensorCount(SensorType sensorType) {
+        return sensors.activeCount(sensorType);
     }
 
     @Override
     public void addSensor(Sensor sensor) {
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        sensors.update(sensor);
+        saveSensors();
     }
 
     @Override
     public void removeSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        sensors.remove(sensor.getSensorId());
+        saveSensors();
     }
 
     @Override
     public void updateSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        sensors.update(sensor);
+        saveSensors();
+    }
+
+    @Override
+    public void updateSensors(Collection<Sensor> changed) {
+        changed.forEach(sensors::update);
+        saveSensors();
+    }
+
+    @Override
+    public List<Sensor> resetAll() {
+        List<Sensor> deactivated = sensors.deactivateAll();
+        if (!deactivated.isEmpty()) {
+            saveSensors();
+        }
+        return deactivated;
     }
 
     @Override
     public void setAlarmStatus(AlarmStatus alarmStatus) {
         this.alarmStatus = alarmStatus;
-        prefs.put(ALARM_STATUS, this.alarmStatus.toString());
+        save(ALARM_STATUS, this.alarmStatus.toString());
     }
 
     @Override
     public void setArmingStatus(ArmingStatus armingStatus) {
         this.armingStatus = armingStatus;
-        prefs.put(ARMING_STATUS, this.armingStatus.toString());
+        save(ARMING_STATUS, this.armingStatus.toString());
     }
 
     @Override
     public Set<Sensor> getSensors() {
-        return sensors;
+        return sensors.sorted();
+    }
+
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        return sensors.get(sensorId);
+    }
+
+    @Override
+    public SensorSnapshot getSensorSnapshot() {
+        SensorSnapshot snapshot = sensors.publishedSnapshot();
+        return snapshot != null ? snapshot : sensors.snapshot();
     }
 
     @Override
@@ -94,4 +159,81 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
     public ArmingStatus getArmingStatus() {
         return armingStatus;
     }
+
+    private void saveSensors() {
+        long start = writeTimer.start();
+        byte[] encoded = SensorCodec.encodeSensors(sensors.sorted());
+        int chunks = (encoded.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int previousChunks = prefs.getInt(SENSOR_DATA_CHUNKS, 0);
+        for (int i = 0; i < chunks; i++) {
+            int from = i * CHUNK_SIZE;
+            prefs.putByteArray(SENSOR_DATA + "." + i,
+                    Arrays.copyOfRange(encoded, from, Math.min(from + CHUNK_SIZE, encoded.length)));
+        }
+        prefs.putInt(SENSOR_DATA_CHUNKS, chunks);
+        for (int i = chunks; i < previousChunks; i++) {
+            prefs.remove(SENSOR_DATA + "." + i);
+        }
+        prefs.remove(SENSOR_DATA);
+        prefs.remove(SENSORS);
+        prefs.remove(SENSOR_SUMMARY);
+        writeTimer.stop(start);
+    }
+
+    /**
+     * @return The encoded sensors, joined back together from their chunks, or null if none were saved
+     */
+    private byte[] readChunks() {
+        int chunks = prefs.getInt(SENSOR_DATA_CHUNKS, -1);
+        if (chunks < 0) {
+            //saved in a single value by earlier versions
+            return prefs.getByteArray(SENSOR_DATA, null);
+        }
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(chunks * CHUNK_SIZE);
+        for (int i = 0; i < chunks; i++) {
+            byte[] chunk = prefs.getByteArray(SENSOR_DATA + "." + i, null);
+            if (chunk == null) {
+                throw new IllegalStateException("Sensor data chunk " + i + " of " + chunks + " is missing");
+            }
+            encoded.writeBytes(chunk);
+        }
+        return encoded.toByteArray();
+    }
+
+    private void save(String key, String value) {
+        long start = writeTimer.start();
+        prefs.put(key, value);
+        writeTimer.stop(start);
+    }
+
+    /**
+     * Sensors stored as JSON, parsed on first use.
+     */
+    private static class JsonSensors implements SensorStore.Source {
+        private final String json;
+        private final int[] summary;
+
+        JsonSensors(String json, String summary) {
+            this.json = json;
+            this.summary = summary == null ? null : Arrays.stream(summary.split(",")).mapToInt(Integer::parseInt).toArray();
+        }
+
+        @Override
+        public int size() {
+            return summary[0];
+        }
+
+        @Override
+        public int activeCount(SensorType sensorType) {
+            return summary[1 + sensorType.ordinal()];
+        }
+
+        @Override
+        public void forEach(Consumer<Sensor> action) {
+            Type type = new TypeToken<Set<Sensor>>() {
+            }.getType();
+            Set<Sensor> stored = gson.fromJson(json, type);
+            stored.forEach(action);
+        }
+    }
 }
@@ -4,19 +4,60 @@ import com.udacity.udasecurity.security.data.AlarmStatus;
 import com.udacity.udasecurity.security.data.ArmingStatus;
 import com.udacity.udasecurity.security.data.Sensor;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 /**
  * Interface showing the methods our security repository will need to support
  */
 public interface SecurityRepository {
     boolean isAnySensorActive();
+    int getActiveSensorCount();
+    int getActiveSensorCount(SensorType sensorType);
     void addSensor(Sensor sensor);
     void removeSensor(Sensor sensor);
     void updateSensor(Sensor sensor);
+
+    /**
+     * Stores several changed sensors at once. Implementations should persist them in a single write.
+     */
+    default void updateSensors(Collection<Sensor> sensors) {
+        sensors.forEach(this::updateSensor);
+    }
+
+    /**
+     * Marks every active sensor inactive. Implementations should persist the change in a single write.
+     * @return The sensors that were active
+     */
+    default List<Sensor> resetAll() {
+        List<Sensor> active = getSensors().stream().filter(Sensor::getActive).collect(Collectors.toList());
+        active.forEach(sensor -> sensor.setActive(false));
+        updateSensors(active);
+        return active;
+    }
+
     void setAlarmStatus(AlarmStatus alarmStatus);
     void setArmingStatus(ArmingStatus armingStatus);
     Set<Sensor> getSensors();
+
+    /**
+     * @return The repository's own instance of the sensor with the given ID, or null if it holds none
+     */
+    default Sensor getSensor(UUID sensorId) {
+        return getSensors().stream().filter(sensor -> sensor.getSensorId().equals(sensorId)).findFirst().orElse(null);
+    }
+
+    /**
+     * Returns an immutable view of the sensors that can be read without holding any lock.
+     * Implementations should reuse the snapshot while the sensors are unchanged and version it so
+     * readers can skip work; this default copies the sensors on every call and is unversioned.
+     */
+    default SensorSnapshot getSensorSnapshot() {
+        return SensorSnapshot.of(SensorSnapshot.UNVERSIONED, getSensors());
+    }
     AlarmStatus getAlarmStatus();
     ArmingStatus getArmingStatus();
 
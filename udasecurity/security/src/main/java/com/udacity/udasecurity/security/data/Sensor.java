@@ -1,8 +1,5 @@
 package com.udacity.udasecurity.security.data;
 
-
-import com.google.common.collect.ComparisonChain;
-
 import java.util.Objects;
 import java.util.UUID;
 
@@ -12,7 +9,7 @@ import java.util.UUID;
 public class Sensor implements Comparable<Sensor> {
     private UUID sensorId;
     private String name;
-    private Boolean active;
+    private boolean active;
     private SensorType sensorType;
 
     public Sensor() {
@@ -22,7 +19,6 @@ public class Sensor implements Comparable<Sensor> {
         this.name = name;
         this.sensorType = sensorType;
         this.sensorId = UUID.randomUUID();
-        this.active = Boolean.FALSE;
     }
 
     @Override
@@ -46,11 +42,11 @@ public class Sensor implements Comparable<Sensor> {
         this.name = name;
     }
 
-    public Boolean getActive() {
+    public boolean getActive() {
         return active;
     }
 
-    public void setActive(Boolean active) {
+    public void setActive(boolean active) {
         this.active = active;
     }
 
@@ -72,10 +68,10 @@ public class Sensor implements Comparable<Sensor> {
 
     @Override
     public int compareTo(Sensor o) {
-        return ComparisonChain.start()
-                .compare(this.name, o.name)
-                .compare(this.sensorType.toString(), o.sensorType.toString())
-                .compare(this.sensorId, o.sensorId)
-                .result();
+        int result = name.compareTo(o.name);
+        if (result == 0) {
+            result = sensorType.name().compareTo(o.sensorType.name());
+        }
+        return result != 0 ? result : sensorId.compareTo(o.sensorId);
     }
 }
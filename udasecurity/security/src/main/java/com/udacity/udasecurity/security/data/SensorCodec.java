@@ -0,0 +1,244 @@
+package com.udacity.udasecurity.security.data;
+
+import com.google.gson.Gson;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Binary encoding of sensors and system status used by the repositories for snapshots and for
+ * individual changes.
+ *
+ * A sensor is written as [long id msb][long id lsb][byte type][byte flags][unsigned short name
+ * length][name, UTF-8], where bit 0 of the flags is the active flag and a name length of 0xFFFF
+ * stands for no name. Statuses are written as their ordinal in a single byte. Standalone
+ * encodings start with a version byte. Data written as JSON by earlier versions can still be
+ * decoded: JSON always starts with '{' or '[', which is never a valid version.
+ */
+final class SensorCodec {
+
+    static final byte VERSION = 1;
+
+    private static final byte ACTIVE_FLAG = 1;
+    private static final int NULL_NAME = 0xFFFF;
+    private static final int RECORD_HEADER = 2 * Long.BYTES + 2 * Byte.BYTES + Short.BYTES;
+    private static final int SENSORS_HEADER = Integer.BYTES * (1 + SensorType.values().length);
+    private static final SensorType[] TYPES = SensorType.values();
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+
+    private static final Gson gson = new Gson();
+
+    private SensorCodec() {
+    }
+
+    /**
+     * @return Number of bytes {@link #writeSensor} writes for the sensor
+     */
+    static int sizeOf(Sensor sensor) {
+        return RECORD_HEADER + (sensor.getName() == null ? 0 : nameBytes(sensor).length);
+    }
+
+    static void writeSensor(ByteBuffer buffer, Sensor sensor) {
+        writeSensor(buffer, sensor, sensor.getName() == null ? null : nameBytes(sensor));
+    }
+
+    private static void writeSensor(ByteBuffer buffer, Sensor sensor, byte[] name) {
+        buffer.putLong(sensor.getSensorId().getMostSignificantBits())
+                .putLong(sensor.getSensorId().getLeastSignificantBits())
+                .put((byte) sensor.getSensorType().ordinal())
+                .put(sensor.getActive() ? ACTIVE_FLAG : 0)
+                .putShort((short) (name == null ? NULL_NAME : name.length));
+        if (name != null) {
+            buffer.put(name);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException If the record is truncated or holds an unknown sensor type
+     */
+    static Sensor readSensor(ByteBuffer buffer) {
+        try {
+            Sensor sensor = new Sensor();
+            sensor.setSensorId(new UUID(buffer.getLong(), buffer.getLong()));
+            sensor.setSensorType(TYPES[buffer.get()]);
+            sensor.setActive((buffer.get() & ACTIVE_FLAG) != 0);
+            int nameLength = Short.toUnsignedInt(buffer.getShort());
+            if (nameLength != NULL_NAME) {
+                byte[] name = new byte[nameLength];
+                buffer.get(name);
+                sensor.setName(new String(name, StandardCharsets.UTF_8));
+            }
+            return sensor;
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Corrupt sensor record", e);
+        }
+    }
+
+    /**
+     * Encodes one sensor with a version byte, e.g. as the payload of a log record.
+     */
+    static byte[] encodeSensor(Sensor sensor) {
+        byte[] name = sensor.getName() == null ? null : nameBytes(sensor);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + RECORD_HEADER + (name == null ? 0 : name.length));
+        buffer.put(VERSION);
+        writeSensor(buffer, sensor, name);
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a sensor written by {@link #encodeSensor}, or by Gson in earlier versions.
+     */
+    static Sensor decodeSensor(ByteBuffer payload) {
+        byte version = payload.get(payload.position());
+        if (version == '{') {
+            return gson.fromJson(StandardCharsets.UTF_8.decode(payload.duplicate()).toString(), Sensor.class);
+        }
+        ByteBuffer buffer = payload.duplicate();
+        checkVersion(buffer.get());
+        return readSensor(buffer);
+    }
+
+    /**
+     * @return Number of bytes {@link #writeSensors} writes for the sensors
+     */
+    static int sizeOf(Collection<Sensor> sensors) {
+        int size = SENSORS_HEADER;
+        for (Sensor sensor : sensors) {
+            size += sizeOf(sensor);
+        }
+        return size;
+    }
+
+    /**
+     * Writes a set of sensors as [int count][int active count per sensor type][sensor records], so
+     * that a reader can tell how many sensors are active without decoding the records.
+     */
+    static void writeSensors(ByteBuffer buffer, Collection<Sensor> sensors) {
+        int[] activeByType = new int[TYPES.length];
+        for (Sensor sensor : sensors) {
+            if (sensor.getActive()) {
+                activeByType[sensor.getSensorType().ordinal()]++;
+            }
+        }
+        buffer.putInt(sensors.size());
+        for (int count : activeByType) {
+            buffer.putInt(count);
+        }
+        sensors.forEach(sensor -> writeSensor(buffer, sensor));
+    }
+
+    /**
+     * Encodes a set of sensors with a version byte.
+     */
+    static byte[] encodeSensors(Collection<Sensor> sensors) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + sizeOf(sensors));
+        buffer.put(VERSION);
+        writeSensors(buffer, sensors);
+        return buffer.array();
+    }
+
+    /**
+     * Reads the header of sensors written by {@link #encodeSensors}. The records are decoded when
+     * the returned source's forEach is called.
+     */
+    static SensorStore.Source decodeSensors(byte[] encoded) {
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        checkVersion(buffer.get());
+        return readSensors(buffer);
+    }
+
+    /**
+     * Reads the header of sensors written by {@link #writeSensors}, from the buffer's position.
+     */
+    static SensorStore.Source readSensors(ByteBuffer buffer) {
+        try {
+            int size = buffer.getInt();
+            int[] activeByType = new int[TYPES.length];
+            for (int i = 0; i < activeByType.length; i++) {
+                activeByType[i] = buffer.getInt();
+            }
+            return new EncodedSensors(size, activeByType, buffer.slice());
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Corrupt sensor set header", e);
+        }
+    }
+
+    static byte encode(AlarmStatus alarmStatus) {
+        return (byte) alarmStatus.ordinal();
+    }
+
+    static byte encode(ArmingStatus armingStatus) {
+        return (byte) armingStatus.ordinal();
+    }
+
+    static AlarmStatus decodeAlarmStatus(byte encoded) {
+        if (encoded < 0 || encoded >= ALARM_STATUSES.length) {
+            throw new IllegalArgumentException("Unknown alarm status " + encoded);
+        }
+        return ALARM_STATUSES[encoded];
+    }
+
+    static ArmingStatus decodeArmingStatus(byte encoded) {
+        if (encoded < 0 || encoded >= ARMING_STATUSES.length) {
+            throw new IllegalArgumentException("Unknown arming status " + encoded);
+        }
+        return ARMING_STATUSES[encoded];
+    }
+
+    private static void checkVersion(byte version) {
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported encoding version " + version);
+        }
+    }
+
+    private static byte[] nameBytes(Sensor sensor) {
+        byte[] name = sensor.getName().getBytes(StandardCharsets.UTF_8);
+        if (name.length >= NULL_NAME) {
+            throw new IllegalArgumentException("Sensor name too long: " + sensor.getName());
+        }
+        return name;
+    }
+
+    /**
+     * Encoded sensor records along with the summary written in front of them.
+     */
+    private static class EncodedSensors implements SensorStore.Source {
+        private final int size;
+        private final int[] activeByType;
+        private ByteBuffer records;
+
+        EncodedSensors(int size, int[] activeByType, ByteBuffer records) {
+            this.size = size;
+            this.activeByType = activeByType;
+            this.records = records;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int activeCount(SensorType sensorType) {
+            return activeByType[sensorType.ordinal()];
+        }
+
+        /**
+         * Decodes the records and then drops the reference to them, releasing a mapped buffer.
+         * Corrupt records fail every call, not just the first.
+         */
+        @Override
+        public void forEach(Consumer<Sensor> action) {
+            ByteBuffer buffer = records.duplicate();
+            for (int i = 0; i < size; i++) {
+                action.accept(readSensor(buffer));
+            }
+            records = null;
+        }
+    }
+}
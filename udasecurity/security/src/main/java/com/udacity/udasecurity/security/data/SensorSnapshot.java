@@ -0,0 +1,82 @@
+package com.udacity.udasecurity.security.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Point-in-time view of all sensors in a repository. The sensors are copies taken when the
+ * snapshot was built, so later changes to the repository never show through and the snapshot can
+ * be read from any thread without locking. The copies are shared by every reader of the snapshot,
+ * so they must not be changed: pass one to the service, which looks up the repository's sensor
+ * with the same ID and changes that one instead.
+ *
+ * Each snapshot carries the version of the sensors it was built from. A repository's version goes
+ * up with every change to its sensors, so a reader holding the version it last saw can tell with
+ * {@link #changedSince(long)} whether there is anything new to do.
+ */
+public final class SensorSnapshot {
+
+    /**
+     * Version of snapshots from repositories that do not track versions. Such a snapshot always
+     * counts as changed.
+     */
+    public static final long UNVERSIONED = -1;
+
+    private final long version;
+    private final Set<Sensor> sensors;
+    private final int activeCount;
+
+    private SensorSnapshot(long version, Set<Sensor> sensors, int activeCount) {
+        this.version = version;
+        this.sensors = sensors;
+        this.activeCount = activeCount;
+    }
+
+    /**
+     * Copies the sensors into a new snapshot.
+     * @param sensors Sensors in display order
+     */
+    public static SensorSnapshot of(long version, Collection<Sensor> sensors) {
+        List<Sensor> copies = new ArrayList<>(sensors.size());
+        int activeCount = 0;
+        for (Sensor sensor : sensors) {
+            Sensor copy = new Sensor();
+            copy.setSensorId(sensor.getSensorId());
+            copy.setName(sensor.getName());
+            copy.setSensorType(sensor.getSensorType());
+            copy.setActive(sensor.getActive());
+            copies.add(copy);
+            if (copy.getActive()) {
+                activeCount++;
+            }
+        }
+        return new SensorSnapshot(version, Collections.unmodifiableSet(new LinkedHashSet<>(copies)), activeCount);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Unmodifiable set of the sensors, iterating in {@link Sensor#compareTo} order
+     */
+    public Set<Sensor> getSensors() {
+        return sensors;
+    }
+
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * @param version Version of a snapshot read earlier
+     * @return Whether the sensors may differ from those in the earlier snapshot
+     */
+    public boolean changedSince(long version) {
+        return this.version == UNVERSIONED || this.version != version;
+    }
+}
@@ -0,0 +1,282 @@
+package com.udacity.udasecurity.security.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * In-memory sensor storage shared by the repository implementations.
+ *
+ * Sensors are looked up by ID and each is given a slot the first time it is seen. Per-slot state
+ * is kept in parallel arrays: the active flags in a bitmap, the type as an ordinal and the name
+ * the store last saw. Updating a sensor only touches its slot and the active counters, so it costs
+ * a hash lookup instead of re-sorting. Because the store compares against what it last recorded,
+ * sensors changed in place before being handed over are still accounted for correctly. A different
+ * instance with a known ID, such as a copy from a {@link SensorSnapshot}, has its fields copied onto
+ * the stored sensor instead of replacing it, so the instances already handed out stay live.
+ *
+ * The sorted view returned by {@link #sorted()} is rebuilt only after a sensor was added or removed,
+ * or its name or type changed. Slots of removed sensors are reused. Not thread-safe; repositories
+ * call it while holding their own lock.
+ *
+ * A store can start out backed by a {@link Source} such as a snapshot file. Active counts and the
+ * size are answered from the source's summary, and its sensors are only decoded the first time
+ * anything else is asked of the store.
+ *
+ * Every change that can be seen through a sensor's ID, name, type or active flag bumps the store's
+ * version. {@link #snapshot()} builds an immutable {@link SensorSnapshot} at most once per version
+ * and publishes it through a volatile field, so {@link #publishedSnapshot()} may be called without
+ * the repository's lock.
+ */
+class SensorStore {
+
+    /**
+     * Stored sensors that have not been decoded yet, along with a summary of them.
+     */
+    interface Source {
+        int size();
+
+        int activeCount(SensorType sensorType);
+
+        /**
+         * Decodes every sensor. Called at most once, unless it throws because the data is corrupt.
+         */
+        void forEach(Consumer<Sensor> action);
+    }
+
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private final List<Integer> freeSlots = new ArrayList<>();
+    private Sensor[] sensors = new Sensor[16];
+    private String[] names = new String[16];
+    private byte[] types = new byte[16];
+    private final BitSet activeSlots = new BitSet();
+    private final int[] activeByType = new int[SensorType.values().length];
+    private int activeCount;
+
+    private Set<Sensor> sortedView = Collections.emptySet();
+    private boolean sortedViewStale;
+
+    private Source pending;
+
+    private volatile long version;
+    private volatile SensorSnapshot published;
+
+    SensorStore() {
+    }
+
+    /**
+     * Creates a store whose sensors are decoded from the source when first needed.
+     */
+    SensorStore(Source source) {
+        this.pending = source;
+    }
+
+    /**
+     * @return Whether the sensors have been decoded, or the store was not backed by a source
+     */
+    boolean isLoaded() {
+        return pending == null;
+    }
+
+    /**
+     * Stores the current state of a sensor, adding it if it is new.
+     */
+    void update(Sensor sensor) {
+        load();
+        Integer slot = slots.get(sensor.getSensorId());
+        boolean changed;
+        if (slot == null) {
+            slot = allocate(sensor.getSensorId());
+            sortedViewStale = true;
+            changed = true;
+        } else {
+            changed = clearActive(slot) != sensor.getActive();
+            if (!Objects.equals(sensor.getName(), names[slot]) || sensor.getSensorType().ordinal() != types[slot]) {
+                sortedViewStale = true;
+                changed = true;
+            }
+            Sensor stored = sensors[slot];
+            if (stored != sensor) {
+                stored.setName(sensor.getName());
+                stored.setSensorType(sensor.getSensorType());
+                stored.setActive(sensor.getActive());
+                sensor = stored;
+            }
+        }
+        sensors[slot] = sensor;
+        names[slot] = sensor.getName();
+        types[slot] = (byte) sensor.getSensorType().ordinal();
+        if (sensor.getActive()) {
+            activeSlots.set(slot);
+            activeCount++;
+            activeByType[types[slot]]++;
+        }
+        if (changed) {
+            version++;
+        }
+    }
+
+    void remove(UUID sensorId) {
+        load();
+        Integer slot = slots.remove(sensorId);
+        if (slot != null) {
+            clearActive(slot);
+            sensors[slot] = null;
+            names[slot] = null;
+            freeSlots.add(slot);
+            sortedViewStale = true;
+            version++;
+        }
+    }
+
+    /**
+     * @return The stored instance of the sensor, or null if there is none
+     */
+    Sensor get(UUID sensorId) {
+        load();
+        Integer slot = slots.get(sensorId);
+        return slot == null ? null : sensors[slot];
+    }
+
+    boolean contains(UUID sensorId) {
+        load();
+        return slots.containsKey(sensorId);
+    }
+
+    int size() {
+        return pending != null ? pending.size() : slots.size();
+    }
+
+    boolean isAnyActive() {
+        return activeCount() > 0;
+    }
+
+    int activeCount() {
+        if (pending != null) {
+            int count = 0;
+            for (SensorType sensorType : SensorType.values()) {
+                count += pending.activeCount(sensorType);
+            }
+            return count;
+        }
+        return activeCount;
+    }
+
+    int activeCount(SensorType sensorType) {
+        return pending != null ? pending.activeCount(sensorType) : activeByType[sensorType.ordinal()];
+    }
+
+    /**
+     * Marks every active sensor inactive, visiting only the slots with their active bit set.
+     * @return The sensors that were active
+     */
+    List<Sensor> deactivateAll() {
+        if (activeCount() == 0) {
+            return Collections.emptyList();
+        }
+        load();
+        List<Sensor> changed = new ArrayList<>(activeCount);
+        for (int slot = activeSlots.nextSetBit(0); slot >= 0; slot = activeSlots.nextSetBit(slot + 1)) {
+            sensors[slot].setActive(false);
+            changed.add(sensors[slot]);
+        }
+        activeSlots.clear();
+        Arrays.fill(activeByType, 0);
+        activeCount = 0;
+        version++;
+        return changed;
+    }
+
+    /**
+     * @return Unmodifiable set of all sensors, iterating in {@link Sensor#compareTo} order
+     */
+    Set<Sensor> sorted() {
+        load();
+        if (sortedViewStale) {
+            List<Sensor> all = new ArrayList<>(slots.size());
+            for (int slot : slots.values()) {
+                all.add(sensors[slot]);
+            }
+            Collections.sort(all);
+            sortedView = Collections.unmodifiableSet(new LinkedHashSet<>(all));
+            sortedViewStale = false;
+        }
+        return sortedView;
+    }
+
+    /**
+     * @return Current snapshot of the sensors, built if they changed since the last call
+     */
+    SensorSnapshot snapshot() {
+        SensorSnapshot snapshot = publishedSnapshot();
+        if (snapshot == null) {
+            //sorted() may decode a pending source, which moves the version on
+            Set<Sensor> current = sorted();
+            snapshot = SensorSnapshot.of(version, current);
+            published = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Safe to call without holding the repository's lock.
+     * @return The last snapshot built, or null if the sensors changed since
+     */
+    SensorSnapshot publishedSnapshot() {
+        SensorSnapshot snapshot = published;
+        return snapshot != null && snapshot.getVersion() == version ? snapshot : null;
+    }
+
+    /**
+     * Decodes the pending source, if any. Every sensor is decoded before the first is stored, so
+     * corrupt data leaves the store unloaded, and failing the same way on the next call, rather
+     * than holding a partial set that would be saved over the intact one.
+     */
+    private void load() {
+        if (pending != null) {
+            List<Sensor> decoded = new ArrayList<>();
+            pending.forEach(decoded::add);
+            pending = null;
+            decoded.forEach(this::update);
+        }
+    }
+
+    private int allocate(UUID sensorId) {
+        int slot;
+        if (freeSlots.isEmpty()) {
+            slot = slots.size();
+            if (slot == sensors.length) {
+                int capacity = sensors.length * 2;
+                sensors = Arrays.copyOf(sensors, capacity);
+                names = Arrays.copyOf(names, capacity);
+                types = Arrays.copyOf(types, capacity);
+            }
+        } else {
+            slot = freeSlots.remove(freeSlots.size() - 1);
+        }
+        slots.put(sensorId, slot);
+        return slot;
+    }
+
+    /**
+     * @return Whether the slot was active
+     */
+    private boolean clearActive(int slot) {
+        if (activeSlots.get(slot)) {
+            activeSlots.clear(slot);
+            activeCount--;
+            activeByType[types[slot]]--;
+            return true;
+        }
+        return false;
+    }
+}
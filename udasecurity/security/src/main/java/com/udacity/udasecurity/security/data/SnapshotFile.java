@@ -0,0 +1,172 @@
+package com.udacity.udasecurity.security.data;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of a repository's full state, read through a memory mapping. The header holds
+ * the alarm and arming status and a summary of the sensors, so opening a snapshot takes the same
+ * time however many sensors it holds. The sensor records after the header are only decoded when
+ * the sensors are first needed.
+ *
+ * <pre>
+ * [int magic][short version][int header crc][int records crc][byte alarm status][byte arming status]
+ * [long segment][sensor summary][sensor records]
+ * </pre>
+ *
+ * Statuses and sensors are encoded with {@link SensorCodec}. The header CRC32 covers everything
+ * from the alarm status to the end of the sensor summary and is checked on open; the records CRC32
+ * is checked before the first record is decoded. Version 1 snapshots, written without checksums,
+ * can still be read. Snapshots are written to a temporary file, forced to disk and then renamed
+ * over the old one, so a crash leaves either the old or the new snapshot in place, never a partial
+ * one.
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x43505353; //"CPSS"
+    private static final short VERSION = 2;
+    private static final short UNCHECKED_VERSION = 1;
+    private static final int CHECKSUMS = Integer.BYTES + Short.BYTES;
+    private static final int BODY = CHECKSUMS + 2 * Integer.BYTES;
+    private static final int HEADER = BODY + 2 * Byte.BYTES + Long.BYTES;
+
+    private final AlarmStatus alarmStatus;
+    private final ArmingStatus armingStatus;
+    private final long segment;
+    private final SensorStore.Source sensors;
+
+    private SnapshotFile(Path path, ByteBuffer buffer) throws IOException {
+        try {
+            short version = buffer.getInt() == MAGIC ? buffer.getShort() : -1;
+            if (version != VERSION && version != UNCHECKED_VERSION) {
+                throw new IOException("Not a version " + VERSION + " snapshot: " + path);
+            }
+            boolean checked = version == VERSION;
+            int headerChecksum = checked ? buffer.getInt() : 0;
+            int recordsChecksum = checked ? buffer.getInt() : 0;
+            int start = buffer.position();
+            alarmStatus = SensorCodec.decodeAlarmStatus(buffer.get());
+            armingStatus = SensorCodec.decodeArmingStatus(buffer.get());
+            segment = buffer.getLong();
+            SensorStore.Source source = SensorCodec.readSensors(buffer);
+            if (checked && checksum(buffer, start, buffer.position()) != headerChecksum) {
+                throw new IOException("Corrupt snapshot header: " + path);
+            }
+            sensors = checked ? new CheckedSensors(path, source, buffer.slice(), recordsChecksum) : source;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Corrupt snapshot header: " + path, e);
+        }
+    }
+
+    /**
+     * Maps a snapshot and reads its header.
+     */
+    static SnapshotFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            //the mapping stays valid after the channel is closed
+            return new SnapshotFile(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Atomically replaces the snapshot at the path.
+     * @param segment First log segment not covered by the snapshot
+     */
+    static void write(Path path, AlarmStatus alarmStatus, ArmingStatus armingStatus, long segment,
+                      Collection<Sensor> sensors) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + SensorCodec.sizeOf(sensors));
+        //the checksums are filled in once the rest is written
+        buffer.putInt(MAGIC).putShort(VERSION).putInt(0).putInt(0)
+                .put(SensorCodec.encode(alarmStatus)).put(SensorCodec.encode(armingStatus))
+                .putLong(segment);
+        SensorCodec.writeSensors(buffer, sensors);
+        buffer.flip();
+        ByteBuffer summary = buffer.duplicate().position(HEADER);
+        SensorCodec.readSensors(summary);
+        buffer.putInt(CHECKSUMS, checksum(buffer, BODY, summary.position()));
+        buffer.putInt(CHECKSUMS + Integer.BYTES, checksum(buffer, summary.position(), buffer.limit()));
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    long getSegment() {
+        return segment;
+    }
+
+    /**
+     * @return The snapshot's sensors, decoded on first use
+     */
+    SensorStore.Source getSensors() {
+        return sensors;
+    }
+
+    private static int checksum(ByteBuffer buffer, int from, int to) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().limit(to).position(from));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Checks the sensor records against their checksum before the first one is decoded, so a
+     * corrupt snapshot fails as a whole instead of yielding whatever records still parse.
+     */
+    private static final class CheckedSensors implements SensorStore.Source {
+        private final Path path;
+        private final SensorStore.Source sensors;
+        private final int checksum;
+        private ByteBuffer records;
+
+        CheckedSensors(Path path, SensorStore.Source sensors, ByteBuffer records, int checksum) {
+            this.path = path;
+            this.sensors = sensors;
+            this.records = records;
+            this.checksum = checksum;
+        }
+
+        @Override
+        public int size() {
+            return sensors.size();
+        }
+
+        @Override
+        public int activeCount(SensorType sensorType) {
+            return sensors.activeCount(sensorType);
+        }
+
+        @Override
+        public void forEach(Consumer<Sensor> action) {
+            if (records != null) {
+                if (checksum(records, 0, records.limit()) != checksum) {
+                    throw new IllegalArgumentException("Corrupt sensor records in snapshot " + path);
+                }
+                records = null;
+            }
+            sensors.forEach(action);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.udacity.udasecurity.security.service;
+
+import com.udacity.udasecurity.security.data.AlarmStatus;
+import com.udacity.udasecurity.security.data.ArmingStatus;
+import com.udacity.udasecurity.security.data.SensorType;
+
+import java.util.UUID;
+
+/**
+ * One entry in a {@link ChangeFeed}: a sensor became active or inactive, the alarm status changed
+ * or the arming status changed.
+ */
+public final class ChangeEvent {
+
+    public enum Type {
+        SENSOR, ALARM, ARMING
+    }
+
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+
+    private final long sequence;
+    private final long timeMillis;
+    private final Type type;
+    private final UUID sensorId;
+    //sensor type ordinal shifted left once plus the active flag for sensor events, the status ordinal otherwise
+    private final int value;
+
+    ChangeEvent(long sequence, long timeMillis, Type type, UUID sensorId, int value) {
+        this.sequence = sequence;
+        this.timeMillis = timeMillis;
+        this.type = type;
+        this.sensorId = sensorId;
+        this.value = value;
+    }
+
+    /**
+     * @return Position in the feed, starting at 1 and without gaps
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The sensor that changed, or null if this is not a sensor event
+     */
+    public UUID getSensorId() {
+        return sensorId;
+    }
+
+    /**
+     * @return Whether the sensor became active; false if this is not a sensor event
+     */
+    public boolean isActive() {
+        return type == Type.SENSOR && (value & 1) == 1;
+    }
+
+    /**
+     * @return Type of the sensor that changed, or null if this is not a sensor event
+     */
+    public SensorType getSensorType() {
+        return type == Type.SENSOR ? SENSOR_TYPES[value >> 1] : null;
+    }
+
+    /**
+     * @return The new alarm status, or null if this is not an alarm event
+     */
+    public AlarmStatus getAlarmStatus() {
+        return type == Type.ALARM ? ALARM_STATUSES[value] : null;
+    }
+
+    /**
+     * @return The new arming status, or null if this is not an arming event
+     */
+    public ArmingStatus getArmingStatus() {
+        return type == Type.ARMING ? ARMING_STATUSES[value] : null;
+    }
+
+    int getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return switch (type) {
+            case SENSOR -> sequence + " sensor " + sensorId + (isActive() ? " active" : " inactive");
+            case ALARM -> sequence + " alarm " + getAlarmStatus();
+            case ARMING -> sequence + " arming " + getArmingStatus();
+        };
+    }
+}
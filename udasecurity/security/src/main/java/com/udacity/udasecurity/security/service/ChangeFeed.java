@@ -0,0 +1,288 @@
+package com.udacity.udasecurity.security.service;
+
+import com.udacity.udasecurity.security.data.AlarmStatus;
+import com.udacity.udasecurity.security.data.ArmingStatus;
+import com.udacity.udasecurity.security.data.Sensor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ordered record of every sensor activation, alarm transition and arming change, numbered from 1
+ * without gaps. Dashboards and loggers read it through a {@link Cursor}, which remembers the next
+ * sequence number to read, so a consumer can stop and later resume from where it left off.
+ *
+ * The latest events are kept in a ring buffer. Appending takes a short lock shared only with other
+ * producers; reading from the ring takes no lock at all, so consumers never hold up the service.
+ * Once the ring is full the oldest event is overwritten. If the feed was given a spill file, the
+ * overwritten event is first written there as a fixed-size record, and cursors that fell behind
+ * the ring read it back from disk; otherwise it is lost and cursors skip it, counting it as
+ * missed. The spill file grows for as long as the feed is open and is overwritten when a new feed
+ * is opened on it.
+ */
+public class ChangeFeed implements Closeable {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    //[long sequence][long time][byte type][long sensor id msb][long sensor id lsb][byte value]
+    private static final int RECORD_SIZE = 4 * Long.BYTES + 2 * Byte.BYTES;
+    private static final ChangeEvent.Type[] TYPES = ChangeEvent.Type.values();
+
+    private final AtomicReferenceArray<ChangeEvent> ring;
+    private final int mask;
+    //events below this sequence are readable
+    private volatile long nextSequence = 1;
+
+    //spill state, guarded by this
+    private final FileChannel spill;
+    private final ByteBuffer spillBuffer;
+    private long spilledThrough;
+    private boolean spillFailed;
+    //last sequence written to the spill file, read without the lock
+    private volatile long flushedThrough;
+
+    /**
+     * Creates a feed that only keeps the latest events in memory.
+     * @param capacity Number of events kept, rounded up to a power of two
+     */
+    public ChangeFeed(int capacity) {
+        this(capacity, (FileChannel) null);
+    }
+
+    /**
+     * Creates a feed that writes events overwritten in memory to a spill file.
+     * @param capacity Number of events kept in memory, rounded up to a power of two
+     * @param spillFile File events that no longer fit in memory are written to
+     */
+    public ChangeFeed(int capacity, Path spillFile) {
+        this(capacity, openSpill(spillFile));
+    }
+
+    private ChangeFeed(int capacity, FileChannel spill) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.spill = spill;
+        this.spillBuffer = spill == null ? null : ByteBuffer.allocateDirect(RECORD_SIZE * 256);
+    }
+
+    private static FileChannel openSpill(Path spillFile) {
+        try {
+            return FileChannel.open(spillFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to open change feed spill file " + spillFile, ioe);
+        }
+    }
+
+    public void sensorChanged(Sensor sensor) {
+        append(ChangeEvent.Type.SENSOR, sensor.getSensorId(), sensor.getSensorType().ordinal() << 1 | (sensor.getActive() ? 1 : 0));
+    }
+
+    public void alarmChanged(AlarmStatus alarmStatus) {
+        append(ChangeEvent.Type.ALARM, null, alarmStatus.ordinal());
+    }
+
+    public void armingChanged(ArmingStatus armingStatus) {
+        append(ChangeEvent.Type.ARMING, null, armingStatus.ordinal());
+    }
+
+    /**
+     * @return Sequence number the next event will get
+     */
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * @param sequence First sequence number to read. Numbers below 1 start at the oldest event.
+     * @return Cursor reading events from the sequence number on
+     */
+    public Cursor cursor(long sequence) {
+        return new Cursor(Math.max(1, sequence));
+    }
+
+    /**
+     * @return Cursor reading only events appended from now on
+     */
+    public Cursor tail() {
+        return new Cursor(nextSequence);
+    }
+
+    /**
+     * Writes events waiting for the spill file and closes it. Events still in memory can be read
+     * afterwards, events on disk cannot.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (spill != null && spill.isOpen()) {
+            try {
+                flushSpill();
+            } finally {
+                spill.close();
+            }
+        }
+    }
+
+    private synchronized void append(ChangeEvent.Type type, UUID sensorId, int value) {
+        long sequence = nextSequence;
+        int slot = (int) (sequence & mask);
+        ChangeEvent evicted = ring.get(slot);
+        if (evicted != null && spill != null && !spillFailed) {
+            stage(evicted);
+        }
+        ring.set(slot, new ChangeEvent(sequence, System.currentTimeMillis(), type, sensorId, value));
+        nextSequence = sequence + 1;
+    }
+
+    /**
+     * Queues an event for the spill file. A failure to write stops spilling rather than failing
+     * the change being recorded; later evicted events are then lost like in a memory-only feed.
+     */
+    private void stage(ChangeEvent event) {
+        try {
+            if (spillBuffer.remaining() < RECORD_SIZE) {
+                flushSpill();
+            }
+            UUID sensorId = event.getSensorId();
+            spillBuffer.putLong(event.getSequence())
+                    .putLong(event.getTimeMillis())
+                    .put((byte) event.getType().ordinal())
+                    .putLong(sensorId == null ? 0 : sensorId.getMostSignificantBits())
+                    .putLong(sensorId == null ? 0 : sensorId.getLeastSignificantBits())
+                    .put((byte) event.getValue());
+            spilledThrough = event.getSequence();
+        } catch (IOException ioe) {
+            spillFailed = true;
+        }
+    }
+
+    private void flushSpill() throws IOException {
+        spillBuffer.flip();
+        while (spillBuffer.hasRemaining()) {
+            spill.write(spillBuffer);
+        }
+        spillBuffer.clear();
+        flushedThrough = spilledThrough;
+    }
+
+    /**
+     * Reads events that were overwritten in memory back from the spill file. Only writing out
+     * staged events holds the producers' lock; the read itself does not.
+     * @return Up to max events starting at the sequence, or none if they were not spilled
+     */
+    private List<ChangeEvent> readSpilled(long sequence, int max) {
+        if (spill == null) {
+            return Collections.emptyList();
+        }
+        if (sequence > flushedThrough) {
+            synchronized (this) {
+                if (sequence <= spilledThrough && spill.isOpen()) {
+                    try {
+                        flushSpill();
+                    } catch (IOException ioe) {
+                        spillFailed = true;
+                    }
+                }
+            }
+        }
+        long available = flushedThrough - sequence + 1;
+        if (available <= 0) {
+            return Collections.emptyList();
+        }
+        int count = (int) Math.min(max, available);
+        ByteBuffer buffer = ByteBuffer.allocate(count * RECORD_SIZE);
+        try {
+            long position = (sequence - 1) * RECORD_SIZE;
+            while (buffer.hasRemaining()) {
+                if (spill.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException ioe) {
+            return Collections.emptyList();
+        }
+        buffer.flip();
+        List<ChangeEvent> events = new ArrayList<>(count);
+        while (buffer.remaining() >= RECORD_SIZE) {
+            long eventSequence = buffer.getLong();
+            long timeMillis = buffer.getLong();
+            ChangeEvent.Type type = TYPES[buffer.get()];
+            long msb = buffer.getLong();
+            long lsb = buffer.getLong();
+            int value = buffer.get();
+            events.add(new ChangeEvent(eventSequence, timeMillis, type,
+                    type == ChangeEvent.Type.SENSOR ? new UUID(msb, lsb) : null, value));
+        }
+        return events;
+    }
+
+    /**
+     * Reading position in the feed. A cursor is meant for one consumer thread.
+     */
+    public class Cursor {
+        private long position;
+        private long missed;
+
+        private Cursor(long position) {
+            this.position = position;
+        }
+
+        /**
+         * Returns the next events without waiting for new ones.
+         * @param max Maximum number of events returned
+         * @return Events in sequence order, empty if there is nothing new
+         */
+        public List<ChangeEvent> poll(int max) {
+            long end = nextSequence;
+            List<ChangeEvent> events = new ArrayList<>();
+            while (position < end && events.size() < max) {
+                ChangeEvent event = ring.get((int) (position & mask));
+                if (event.getSequence() == position) {
+                    events.add(event);
+                    position++;
+                    continue;
+                }
+                //overwritten by a newer event
+                List<ChangeEvent> spilled = readSpilled(position, max - events.size());
+                if (spilled.isEmpty()) {
+                    long oldest = nextSequence - ring.length();
+                    missed += oldest - position;
+                    position = oldest;
+                } else {
+                    events.addAll(spilled);
+                    position += spilled.size();
+                }
+            }
+            return events;
+        }
+
+        /**
+         * @return Sequence number of the next event this cursor reads. Pass it to
+         * {@link ChangeFeed#cursor(long)} to resume later.
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        /**
+         * @return Number of events skipped because they were overwritten and not spilled
+         */
+        public long getMissed() {
+            return missed;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.udacity.udasecurity.security.service;
+
+import com.udacity.udasecurity.metrics.Counter;
+import com.udacity.udasecurity.metrics.MetricsRegistry;
+import com.udacity.udasecurity.security.data.HistoryStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies sensor and alarm changes from a {@link ChangeFeed} into a {@link HistoryStore}. The feed
+ * is polled on a daemon thread of the recorder's own, so recording history never slows down the
+ * service, and the store is flushed every {@link #FLUSH_MILLIS}. Arming changes are not recorded.
+ * A poll or flush that fails is logged and counted as history.recorderFailures; polling carries
+ * on. An event the store failed to record is tried again, ahead of the events after it, by the
+ * next poll, and unflushed records are written by the next flush.
+ */
+public class HistoryRecorder implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoryRecorder.class);
+    private static final Counter failures = MetricsRegistry.global().counter("history.recorderFailures");
+
+    public static final long DEFAULT_POLL_MILLIS = 1000;
+    public static final long FLUSH_MILLIS = 30_000;
+    private static final int BATCH_SIZE = 1024;
+
+    private final ChangeFeed.Cursor cursor;
+    private final HistoryStore historyStore;
+    private final ScheduledExecutorService poller;
+    private long lastFlushNanos = System.nanoTime();
+    //taken from the cursor, which cannot go back, but not all recorded yet; the next is at pendingIndex
+    private List<ChangeEvent> pending = List.of();
+    private int pendingIndex;
+
+    /**
+     * Starts recording from the oldest event still in the feed.
+     * @param historyStore Store the changes are written to. Remains owned by the caller.
+     * @param pollMillis How often the feed is checked for new events
+     */
+    public HistoryRecorder(ChangeFeed changeFeed, HistoryStore historyStore, long pollMillis) {
+        this.cursor = changeFeed.cursor(1);
+        this.historyStore = historyStore;
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "history-recorder");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Copies every event appended to the feed so far into the store. If the store throws, the
+     * event that failed and those after it are kept and recorded first by the next call.
+     */
+    public synchronized void drain() {
+        while (true) {
+            while (pendingIndex < pending.size()) {
+                record(pending.get(pendingIndex));
+                pendingIndex++;
+            }
+            pending = cursor.poll(BATCH_SIZE);
+            pendingIndex = 0;
+            if (pending.isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    private void record(ChangeEvent event) {
+        switch (event.getType()) {
+            case SENSOR -> historyStore.recordSensor(event.getTimeMillis(), event.getSensorId(),
+                    event.getSensorType(), event.isActive());
+            case ALARM -> historyStore.recordAlarm(event.getTimeMillis(), event.getAlarmStatus());
+            default -> {
+                //only sensor and alarm history is kept
+            }
+        }
+    }
+
+    /**
+     * @return Number of events that were overwritten in the feed before they could be recorded
+     */
+    public synchronized long getMissed() {
+        return cursor.getMissed();
+    }
+
+    /**
+     * Stops polling, then records the remaining events and flushes the store.
+     */
+    @Override
+    public void close() throws IOException {
+        poller.shutdown();
+        try {
+            poller.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+        historyStore.flush();
+    }
+
+    private void poll() {
+        try {
+            drain();
+            if (System.nanoTime() - lastFlushNanos >= TimeUnit.MILLISECONDS.toNanos(FLUSH_MILLIS)) {
+                historyStore.flush();
+                lastFlushNanos = System.nanoTime();
+            }
+        } catch (IOException | RuntimeException e) {
+            //events not recorded yet are kept for the next poll, and records not flushed for the next flush
+            failures.increment();
+            log.error("Recording history failed", e);
+        }
+    }
+}
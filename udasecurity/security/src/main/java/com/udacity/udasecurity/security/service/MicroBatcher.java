@@ -0,0 +1,121 @@
+package com.udacity.udasecurity.security.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collects items submitted within a short window and hands them to a handler as a single batch.
+ * A batch is flushed when the window closes or as soon as it reaches its maximum size. Batches
+ * are processed one at a time, in the order they were collected, either on the batcher's own
+ * thread or on a scheduler shared with other batchers.
+ *
+ * @param <T> Type of the submitted items
+ * @param <R> Type of the result produced for each item
+ */
+public class MicroBatcher<T, R> implements AutoCloseable {
+
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final Function<List<T>, List<R>> handler;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    //held while a batch is taken and handled, so batches stay in order on a multi-threaded scheduler
+    private final Object flushLock = new Object();
+
+    private List<T> items = new ArrayList<>();
+    private List<CompletableFuture<R>> futures = new ArrayList<>();
+
+    /**
+     * @param name Name of the batcher's thread
+     * @param windowMillis How long to wait for more items after the first item of a batch arrives
+     * @param maxBatchSize Number of items that flushes a batch immediately
+     * @param handler Processes a batch, returning one result per item in the same order
+     */
+    public MicroBatcher(String name, long windowMillis, int maxBatchSize, Function<List<T>, List<R>> handler) {
+        this(Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        }), true, windowMillis, maxBatchSize, handler);
+    }
+
+    /**
+     * @param scheduler Scheduler the batches are handled on. Remains owned by the caller.
+     * @param windowMillis How long to wait for more items after the first item of a batch arrives
+     * @param maxBatchSize Number of items that flushes a batch immediately
+     * @param handler Processes a batch, returning one result per item in the same order
+     */
+    public MicroBatcher(ScheduledExecutorService scheduler, long windowMillis, int maxBatchSize, Function<List<T>, List<R>> handler) {
+        this(scheduler, false, windowMillis, maxBatchSize, handler);
+    }
+
+    private MicroBatcher(ScheduledExecutorService scheduler, boolean ownsScheduler, long windowMillis, int maxBatchSize,
+                         Function<List<T>, List<R>> handler) {
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.handler = handler;
+    }
+
+    /**
+     * Adds an item to the current batch.
+     * @return Future completed with the item's result once its batch has been handled
+     */
+    public CompletableFuture<R> submit(T item) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        synchronized (this) {
+            items.add(item);
+            futures.add(future);
+            if (items.size() == 1) {
+                scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+            if (items.size() >= maxBatchSize) {
+                scheduler.execute(this::flush);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * Stops the batcher's own thread, if it has one, and handles the current batch right away on
+     * the calling thread. A batch already being handled finishes first, so nothing is written after
+     * this returns.
+     */
+    @Override
+    public void close() {
+        if (ownsScheduler) {
+            scheduler.shutdown();
+        }
+        flush();
+    }
+
+    private void flush() {
+        synchronized (flushLock) {
+            List<T> batch;
+            List<CompletableFuture<R>> batchFutures;
+            synchronized (this) {
+                if (items.isEmpty()) {
+                    return;
+                }
+                batch = items;
+                batchFutures = futures;
+                items = new ArrayList<>();
+                futures = new ArrayList<>();
+            }
+            try {
+                List<R> results = handler.apply(batch);
+                for (int i = 0; i < batchFutures.size(); i++) {
+                    batchFutures.get(i).complete(results.get(i));
+                }
+            } catch (RuntimeException e) {
+                batchFutures.forEach(f -> f.completeExceptionally(e));
+            }
+        }
+    }
+}
@@ -1,16 +1,40 @@
 package com.udacity.udasecurity.security.service;
 
+import com.udacity.udasecurity.image.service.ImageAnalysisPipeline;
 import com.udacity.udasecurity.image.service.ImageService;
+import com.udacity.udasecurity.metrics.Counter;
+import com.udacity.udasecurity.metrics.MetricsRegistry;
+import com.udacity.udasecurity.metrics.Timer;
 import com.udacity.udasecurity.security.application.StatusListener;
 import com.udacity.udasecurity.security.data.AlarmStatus;
 import com.udacity.udasecurity.security.data.ArmingStatus;
+import com.udacity.udasecurity.security.data.Camera;
 import com.udacity.udasecurity.security.data.SecurityRepository;
 import com.udacity.udasecurity.security.data.Sensor;
+import com.udacity.udasecurity.security.data.SensorSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.util.HashSet;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -20,79 +44,152 @@ import java.util.stream.Collectors;
  * This is the class that should contain most of the business logic for our system, and it is the
  * class you will be writing unit tests for.
  */
-public class SecurityService {
+public class SecurityService implements AutoCloseable {
 
-    public static final Font HEADING_FONT = new Font("Sans Serif", Font.BOLD, 24);
+    private static final Logger log = LoggerFactory.getLogger(SecurityService.class);
+    private static final float CAT_CONFIDENCE_THRESHOLD = 50.0f;
+    private static final long FRAME_BATCH_WINDOW_MILLIS = 20;
+    private static final int MAX_FRAME_BATCH_SIZE = 16;
+    private static final long SENSOR_BATCH_WINDOW_MILLIS = 20;
+    private static final int MAX_SENSOR_BATCH_SIZE = 256;
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private static final Timer processImageTimer = MetricsRegistry.global().timer("security.processImage");
+    private static final Timer classifyTimer = MetricsRegistry.global().timer("image.imageContainsCat");
+    //alarm transition counters, indexed by from and to status ordinal
+    private static final Counter[][] alarmTransitions = new Counter[AlarmStatus.values().length][AlarmStatus.values().length];
+    static {
+        for (AlarmStatus from : AlarmStatus.values()) {
+            for (AlarmStatus to : AlarmStatus.values()) {
+                alarmTransitions[from.ordinal()][to.ordinal()] = MetricsRegistry.global().counter("alarm.transition." + from + "." + to);
+            }
+        }
+    }
 
     private ImageService imageService;
     private SecurityRepository securityRepository;
-    private Set<StatusListener> statusListeners = new HashSet<>();
-    private BufferedImage currentImage;
-    private boolean isCatDetected;
+    private final StatusEventBus statusEventBus;
+    private volatile ChangeFeed changeFeed = new ChangeFeed(ChangeFeed.DEFAULT_CAPACITY);
+    private final AtomicReference<SystemState> state = new AtomicReference<>();
+    private Map<UUID, Camera> cameras = new ConcurrentHashMap<>();
+    private Camera defaultCamera = new Camera("Camera");
+
+    private ExecutorService imageWorkers;
+    private boolean ownsImageWorkers;
+    private int imageQueueCapacity;
+    private Executor imageResultExecutor;
+    private Map<UUID, ImageAnalysisPipeline> imagePipelines = new HashMap<>();
+    private MicroBatcher<Map.Entry<Camera, BufferedImage>, Boolean> frameBatcher;
+    private MicroBatcher<SensorEvent, Void> sensorBatcher;
+    private ScheduledExecutorService batchScheduler;
+    private TimerWheel timerWheel;
+    private boolean ownsTimerWheel;
+    private Executor timerExecutor = Runnable::run;
+    //entry and exit delays in milliseconds, indexed by arming status ordinal
+    private final AtomicLongArray entryDelays = new AtomicLongArray(ArmingStatus.values().length);
+    private final AtomicLongArray exitDelays = new AtomicLongArray(ArmingStatus.values().length);
+    private final AtomicReference<TimerWheel.Timeout> escalation = new AtomicReference<>();
+    private final AtomicReference<TimerWheel.Timeout> exitDelay = new AtomicReference<>();
+    //image analyses and expired delays that may still write to the repository; close waits for them
+    private final Object asyncLock = new Object();
+    private int asyncTasks;
 
     public SecurityService(SecurityRepository securityRepository, ImageService imageService) {
+        this(securityRepository, imageService, new StatusEventBus());
+    }
+
+    /**
+     * @param statusEventBus Bus used to deliver status changes to listeners
+     */
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService, StatusEventBus statusEventBus) {
         this.securityRepository = securityRepository;
         this.imageService = imageService;
+        this.statusEventBus = statusEventBus;
+        addCamera(defaultCamera);
     }
 
     public Set<StatusListener> getStatusListeners() {
-        return statusListeners;
+        return statusEventBus.getListeners();
+    }
+
+    public StatusEventBus getStatusEventBus() {
+        return statusEventBus;
     }
 
     /**
      * Sets the current arming status for the system. Changing the arming status
-     * may update both the alarm status.
+     * may update both the alarm status. Arming starts the exit delay configured for the new
+     * status, and disarming cancels any running exit or entry delay.
      * @param armingStatus
      */
     public void setArmingStatus(ArmingStatus armingStatus) {
-        if (armingStatus == ArmingStatus.DISARMED) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
+        SystemState current;
+        SystemState next;
+        do {
+            current = getSystemState();
+            next = current.withArmingStatus(armingStatus);
+            if (armingStatus == ArmingStatus.DISARMED) {
+                next = next.withAlarmStatus(AlarmStatus.NO_ALARM);
+            }
+            else if (armingStatus == ArmingStatus.ARMED_HOME && isAnyCameraDetectingCat()) {
+                next = next.withAlarmStatus(AlarmStatus.ALARM);
+            }
+        } while (!state.compareAndSet(current, next));
+
+        if (next.getArmingStatus() != current.getArmingStatus()) {
+            changeFeed.armingChanged(armingStatus);
         }
-        else if (armingStatus == ArmingStatus.ARMED_HOME && isCatDetected) {
-            setAlarmStatus(AlarmStatus.ALARM);
+        startExitDelay(armingStatus);
+        if (next.getAlarmStatus() != current.getAlarmStatus() || armingStatus == ArmingStatus.DISARMED) {
+            recordTransition(current.getAlarmStatus(), next.getAlarmStatus());
+            alarmStatusChanged(next.getAlarmStatus());
         }
         if (armingStatus == ArmingStatus.ARMED_HOME || armingStatus == ArmingStatus.ARMED_AWAY) {
             resetAllSensors();
         }
-        securityRepository.setArmingStatus(armingStatus);
-        statusListeners.forEach(StatusListener::sensorStatusChanged);
+        persistArmingStatus();
+        statusEventBus.publishSensorStatusChanged();
     }
 
+    /**
+     * Deactivates every sensor in one repository write. Listeners hear about it through the single
+     * sensor status change published by {@link #setArmingStatus}.
+     */
     private void resetAllSensors() {
-        Set<Sensor> sensors = getSensors()
-                .stream()
-                .peek(sensor -> sensor.setActive(false))
-                .collect(Collectors.toSet());
-        sensors.forEach(sensor -> securityRepository.updateSensor(sensor));
+        //answered without touching the sensors, so arming right after startup does not load them
+        if (!securityRepository.isAnySensorActive()) {
+            return;
+        }
+        securityRepository.resetAll().forEach(changeFeed::sensorChanged);
     }
 
     /**
      * Internal method that handles alarm status changes based on whether
-     * the camera currently shows a cat.
-     * @param cat True if a cat is detected, otherwise false.
+     * any camera currently shows a cat.
+     * @param cat True if a cat is detected by any camera, otherwise false.
      */
     private void catDetected(Boolean cat) {
-        if(cat && getArmingStatus() == ArmingStatus.ARMED_HOME) {
-            setAlarmStatus(AlarmStatus.ALARM);
-        } else {
-            if (!securityRepository.isAnySensorActive()) {
-                setAlarmStatus(AlarmStatus.NO_ALARM);
+        transitionAlarmStatus(current -> {
+            if(cat && current.getArmingStatus() == ArmingStatus.ARMED_HOME) {
+                return AlarmStatus.ALARM;
             }
-        }
+            return securityRepository.isAnySensorActive() ? null : AlarmStatus.NO_ALARM;
+        });
 
-        statusListeners.forEach(sl -> sl.catDetected(cat));
+        statusEventBus.publishCatDetected(cat);
     }
 
     /**
      * Register the StatusListener for alarm system updates from within the SecurityService.
+     * Updates are delivered asynchronously through the {@link StatusEventBus}.
      * @param statusListener
      */
     public void addStatusListener(StatusListener statusListener) {
-        statusListeners.add(statusListener);
+        statusEventBus.subscribe(statusListener);
     }
 
     public void removeStatusListener(StatusListener statusListener) {
-        statusListeners.remove(statusListener);
+        statusEventBus.unsubscribe(statusListener);
     }
 
     /**
@@ -100,71 +197,594 @@ public class SecurityService {
      * @param status
      */
     public void setAlarmStatus(AlarmStatus status) {
-        securityRepository.setAlarmStatus(status);
-        statusListeners.forEach(sl -> sl.notify(status));
+        transitionAlarmStatus(current -> status);
     }
 
     /**
      * Internal method for updating the alarm status when a sensor has been activated.
      */
     private void handleSensorActivated() {
-        if(getArmingStatus() == ArmingStatus.DISARMED) {
-            return; //no problem if the system is disarmed
-        }
-        switch(getAlarmStatus()) {
-            case NO_ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
-            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.ALARM);
-        }
+        handleSensorTransitions(1, false);
     }
 
     /**
      * Internal method for updating the alarm status when a sensor has been deactivated
      */
     private void handleSensorDeactivated() {
-        if (securityRepository.getAlarmStatus() == AlarmStatus.PENDING_ALARM
-                && !securityRepository.isAnySensorActive()) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
+        handleSensorTransitions(0, true);
+    }
+
+    /**
+     * Updates the alarm status for a number of sensor activations followed by any deactivations,
+     * as a single transition. Each activation escalates the alarm one step unless the system is
+     * disarmed or still in its exit delay; a deactivation drops a pending alarm, whether pending
+     * here or in the repository, once no sensor is active any more.
+     */
+    private void handleSensorTransitions(int sensorActivations, boolean deactivated) {
+        int activations = exitDelay.get() == null ? sensorActivations : 0;
+        transitionAlarmStatus(current -> {
+            AlarmStatus status = current.getAlarmStatus();
+            if (current.getArmingStatus() != ArmingStatus.DISARMED) { //no problem if the system is disarmed
+                for (int i = 0; i < activations && status != AlarmStatus.ALARM; i++) {
+                    status = status == AlarmStatus.NO_ALARM ? AlarmStatus.PENDING_ALARM : AlarmStatus.ALARM;
+                }
+            }
+            //as before the state machine was lock-free, a pending alarm the repository reports is
+            // cleared as well, even if the repository did not keep a later status written to it
+            if (deactivated && (status == AlarmStatus.PENDING_ALARM || securityRepository.getAlarmStatus() == AlarmStatus.PENDING_ALARM)
+                    && !securityRepository.isAnySensorActive()) {
+                status = AlarmStatus.NO_ALARM;
+            }
+            return status == current.getAlarmStatus() ? null : status;
+        });
+    }
+
+    /**
+     * Applies an alarm status transition with compare-and-set, retrying against the latest state
+     * if another thread changed it in the meantime. Once the transition wins, the new status is
+     * persisted and listeners are notified.
+     * @param rule Returns the status to move to from the given state, or null to leave it unchanged
+     */
+    private void transitionAlarmStatus(Function<SystemState, AlarmStatus> rule) {
+        while (true) {
+            SystemState current = getSystemState();
+            AlarmStatus next = rule.apply(current);
+            if (next == null) {
+                return;
+            }
+            if (state.compareAndSet(current, current.withAlarmStatus(next))) {
+                recordTransition(current.getAlarmStatus(), next);
+                alarmStatusChanged(next);
+                return;
+            }
+        }
+    }
+
+    private void recordTransition(AlarmStatus from, AlarmStatus to) {
+        if (from == to) {
+            //disarming notifies listeners even when the status stays the same, but that is no transition
+            return;
+        }
+        //the status is unknown until a repository has stored one
+        if (from != null) {
+            alarmTransitions[from.ordinal()][to.ordinal()].increment();
+        }
+        changeFeed.alarmChanged(to);
+    }
+
+    private void alarmStatusChanged(AlarmStatus status) {
+        persistAlarmStatus();
+        scheduleEscalation(status);
+        statusEventBus.publishAlarmStatus(status);
+    }
+
+    /**
+     * Starts the entry delay when the alarm becomes pending and cancels it on any other status.
+     */
+    private void scheduleEscalation(AlarmStatus status) {
+        long delay = status == AlarmStatus.PENDING_ALARM ? entryDelays.get(getSystemState().getArmingStatus().ordinal()) : 0;
+        if (delay == 0 && escalation.get() == null) {
+            return;
+        }
+        TimerWheel.Timeout previous = escalation.getAndSet(delay > 0 ? startTimer(this::escalate, delay) : null);
+        if (previous != null) {
+            previous.cancel();
         }
     }
 
+    /**
+     * Restarts the entry delay of an alarm that was already pending when the state was loaded,
+     * e.g. after a restart. The delay starts over, since the repository does not store how long
+     * the alarm has been pending.
+     */
+    private void resumeEscalation() {
+        SystemState current = state.get();
+        if (current != null && current.getAlarmStatus() == AlarmStatus.PENDING_ALARM
+                && current.getArmingStatus() != null && current.getArmingStatus() != ArmingStatus.DISARMED
+                && escalation.get() == null) {
+            scheduleEscalation(AlarmStatus.PENDING_ALARM);
+        }
+    }
+
+    private void escalate(TimerWheel.Timeout timeout) {
+        //a timer replaced while it was expiring no longer counts
+        if (escalation.compareAndSet(timeout, null)) {
+            transitionAlarmStatus(current -> current.getAlarmStatus() == AlarmStatus.PENDING_ALARM
+                    && current.getArmingStatus() != ArmingStatus.DISARMED ? AlarmStatus.ALARM : null);
+        }
+    }
+
+    private void startExitDelay(ArmingStatus armingStatus) {
+        long delay = exitDelays.get(armingStatus.ordinal());
+        if (delay == 0 && exitDelay.get() == null) {
+            return;
+        }
+        TimerWheel.Timeout previous = exitDelay.getAndSet(delay > 0 ? startTimer(this::endExitDelay, delay) : null);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private void endExitDelay(TimerWheel.Timeout timeout) {
+        //a sensor left open while leaving counts as an activation once the delay is over
+        if (exitDelay.compareAndSet(timeout, null) && securityRepository.isAnySensorActive()) {
+            handleSensorActivated();
+        }
+    }
+
+    /**
+     * Writes the latest alarm status to the repository. Concurrent transitions may finish their
+     * writes out of order, so each writer checks afterwards whether the state moved on and, if
+     * so, writes again. The last write to finish therefore always carries the latest status.
+     */
+    private void persistAlarmStatus() {
+        AlarmStatus written;
+        do {
+            written = getSystemState().getAlarmStatus();
+            securityRepository.setAlarmStatus(written);
+        } while (getSystemState().getAlarmStatus() != written);
+    }
+
+    private void persistArmingStatus() {
+        ArmingStatus written;
+        do {
+            written = getSystemState().getArmingStatus();
+            securityRepository.setArmingStatus(written);
+        } while (getSystemState().getArmingStatus() != written);
+    }
+
+    /**
+     * Returns a consistent snapshot of the alarm and arming status. The snapshot is loaded from
+     * the repository the first time it is needed.
+     */
+    public SystemState getSystemState() {
+        SystemState current = state.get();
+        if (current == null) {
+            if (state.compareAndSet(null, new SystemState(securityRepository.getAlarmStatus(), securityRepository.getArmingStatus()))) {
+                resumeEscalation();
+            }
+            current = state.get();
+        }
+        return current;
+    }
+
     /**
      * Change the activation status for the specified sensor and update alarm status if necessary.
+     * The change is made on the repository's own instance of the sensor, so passing a copy, e.g.
+     * one from a {@link SensorSnapshot}, leaves the copy untouched.
      * @param sensor
      * @param active
      */
     public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
+        sensor = storedSensor(sensor);
         if(!sensor.getActive() && active) {
             sensor.setActive(true);
             securityRepository.updateSensor(sensor);
+            changeFeed.sensorChanged(sensor);
             handleSensorActivated();
         } else if (sensor.getActive() && !active) {
             sensor.setActive(false);
             securityRepository.updateSensor(sensor);
+            changeFeed.sensorChanged(sensor);
             handleSensorDeactivated();
         } else if (sensor.getActive() && active) {
             handleSensorActivated();
         }
     }
 
+    /**
+     * Applies a burst of sensor events as one batch. Events are coalesced per sensor, so only each
+     * sensor's last reported state counts: a sensor that reports active escalates the alarm once,
+     * just like a single call to {@link #changeSensorActivationStatus(Sensor, Boolean)}, however
+     * many times it fired. Changed sensors are stored in one repository call, the alarm status
+     * is updated in one transition and listeners are told about the sensor changes once.
+     * @param events Sensor events in the order they were reported
+     */
+    public void submitSensorEvents(Collection<SensorEvent> events) {
+        Map<Sensor, Boolean> latest = new LinkedHashMap<>();
+        events.forEach(event -> latest.put(storedSensor(event.getSensor()), event.isActive()));
+
+        List<Sensor> changed = new ArrayList<>();
+        int activations = 0;
+        boolean deactivated = false;
+        for (Map.Entry<Sensor, Boolean> entry : latest.entrySet()) {
+            Sensor sensor = entry.getKey();
+            if (entry.getValue()) {
+                activations++;
+                if (!sensor.getActive()) {
+                    sensor.setActive(true);
+                    changed.add(sensor);
+                }
+            } else if (sensor.getActive()) {
+                sensor.setActive(false);
+                changed.add(sensor);
+                deactivated = true;
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            securityRepository.updateSensors(changed);
+            changed.forEach(changeFeed::sensorChanged);
+        }
+        if (activations > 0 || deactivated) {
+            handleSensorTransitions(activations, deactivated);
+        }
+        if (!changed.isEmpty()) {
+            statusEventBus.publishSensorStatusChanged();
+        }
+    }
+
+    /**
+     * Submit a single sensor event. Events arriving within a short window of each other are
+     * collected and applied together through {@link #submitSensorEvents(Collection)}.
+     * @return Future completed once the event's batch has been applied
+     */
+    public CompletableFuture<Void> submitSensorEvent(SensorEvent event) {
+        return getSensorBatcher().submit(event);
+    }
+
     /**
      * Send an image to the SecurityService for processing. The securityService will use its provided
      * ImageService to analyze the image for cats and update the alarm status accordingly.
+     * The image is treated as coming from the default camera.
      * @param currentCameraImage
      */
     public void processImage(BufferedImage currentCameraImage) {
-        currentImage = currentCameraImage;
-        isCatDetected = imageService.imageContainsCat(currentCameraImage, 50.0f);
-        catDetected(isCatDetected);
+        processImage(defaultCamera.getCameraId(), currentCameraImage);
+    }
+
+    /**
+     * Send an image from a specific camera to the SecurityService for processing.
+     * @param cameraId Camera the image came from
+     * @param cameraImage
+     */
+    public void processImage(UUID cameraId, BufferedImage cameraImage) {
+        long start = processImageTimer.start();
+        Camera camera = getCamera(cameraId);
+        long classifyStart = classifyTimer.start();
+        boolean cat = imageService.imageContainsCat(cameraImage, CAT_CONFIDENCE_THRESHOLD);
+        classifyTimer.stop(classifyStart);
+        applyImageResult(camera, cameraImage, cat);
+        processImageTimer.stop(start);
+    }
+
+    /**
+     * Queue an image from the default camera for processing without blocking the caller.
+     * @see #processImageAsync(UUID, BufferedImage)
+     */
+    public CompletableFuture<Boolean> processImageAsync(BufferedImage currentCameraImage) {
+        return processImageAsync(defaultCamera.getCameraId(), currentCameraImage);
+    }
+
+    /**
+     * Queue an image for processing without blocking the caller. Each camera is its own shard:
+     * its images are analyzed one at a time and their results update the alarm status in the
+     * order they were submitted, while images from different cameras are analyzed in parallel on
+     * a shared worker pool. If a camera sends images faster than they can be analyzed, its oldest
+     * waiting image is dropped.
+     * @param cameraId Camera the image came from
+     * @param cameraImage
+     * @return Future completed with whether the image contains a cat, or cancelled if the image was dropped
+     * @throws IllegalStateException if {@code configureImageProcessing} has not been called
+     */
+    public CompletableFuture<Boolean> processImageAsync(UUID cameraId, BufferedImage cameraImage) {
+        ImageAnalysisPipeline pipeline = getImagePipeline(getCamera(cameraId));
+        asyncStarted();
+        CompletableFuture<Boolean> result;
+        try {
+            result = pipeline.submit(cameraImage);
+        } catch (RuntimeException e) {
+            asyncFinished();
+            throw e;
+        }
+        //the future completes once the result has been applied, or the image was dropped or failed
+        result.whenComplete((cat, error) -> asyncFinished());
+        return result;
+    }
+
+    /**
+     * Configure how {@link #processImageAsync(UUID, BufferedImage)} analyzes images, on a worker
+     * pool of this service's own that is shut down when it closes. Images already being analyzed
+     * with the previous settings still complete, while images still waiting fail.
+     * @param workers Maximum number of images analyzed at the same time across all cameras
+     * @param queueCapacity Maximum number of images per camera waiting for analysis before the oldest is dropped
+     * @param resultExecutor Executor that applies results to the system state, e.g. the Swing event thread
+     */
+    public synchronized void configureImageProcessing(int workers, int queueCapacity, Executor resultExecutor) {
+        configureImageProcessing(ImageAnalysisPipeline.newWorkerExecutor(workers), queueCapacity, resultExecutor);
+        ownsImageWorkers = true;
+    }
+
+    /**
+     * Configure how {@link #processImageAsync(UUID, BufferedImage)} analyzes images, on a worker
+     * pool shared with other services, e.g. every tenant of a {@link SecurityServiceHost}. The pool
+     * belongs to the caller and is left running when this service closes.
+     * @param workers Executor the classification calls run on
+     * @param queueCapacity Maximum number of images per camera waiting for analysis before the oldest is dropped
+     * @param resultExecutor Executor that applies results to the system state, e.g. the Swing event thread
+     */
+    public synchronized void configureImageProcessing(ExecutorService workers, int queueCapacity, Executor resultExecutor) {
+        if (imageWorkers != null && ownsImageWorkers) {
+            imageWorkers.shutdown();
+        }
+        imageWorkers = workers;
+        ownsImageWorkers = false;
+        imageQueueCapacity = queueCapacity;
+        imageResultExecutor = resultExecutor;
+        imagePipelines.clear();
+    }
+
+    /**
+     * Send several images from the default camera to the SecurityService for processing in one
+     * batch. The images are classified together and their results update the alarm status in list order.
+     * @param cameraImages
+     * @return Whether each image contains a cat, in the same order as the images
+     */
+    public List<Boolean> processImages(List<BufferedImage> cameraImages) {
+        return processFrames(cameraImages.stream()
+                .map(image -> new SimpleImmutableEntry<>(defaultCamera, image))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Submit a frame from the default camera to be classified in a batch.
+     * @see #submitFrame(UUID, BufferedImage)
+     */
+    public CompletableFuture<Boolean> submitFrame(BufferedImage cameraImage) {
+        return submitFrame(defaultCamera.getCameraId(), cameraImage);
+    }
+
+    /**
+     * Submit a frame from one of many cameras. Frames arriving within a short window of each
+     * other, from any camera, are coalesced and classified as one batch.
+     * @param cameraId Camera the frame came from
+     * @param cameraImage
+     * @return Future completed with whether the frame contains a cat
+     */
+    public CompletableFuture<Boolean> submitFrame(UUID cameraId, BufferedImage cameraImage) {
+        return getFrameBatcher().submit(new SimpleImmutableEntry<>(getCamera(cameraId), cameraImage));
+    }
+
+    private List<Boolean> processFrames(List<Map.Entry<Camera, BufferedImage>> frames) {
+        List<BufferedImage> images = frames.stream().map(Map.Entry::getValue).collect(Collectors.toList());
+        List<Boolean> results = imageService.classifyBatch(images, CAT_CONFIDENCE_THRESHOLD);
+        for (int i = 0; i < frames.size(); i++) {
+            applyImageResult(frames.get(i).getKey(), images.get(i), results.get(i));
+        }
+        return results;
+    }
+
+    /**
+     * Replaces the feed sensor, alarm and arming changes are recorded in, for example with one
+     * that spills to disk. The service starts out with an in-memory feed of
+     * {@link ChangeFeed#DEFAULT_CAPACITY} events. The feed remains owned by the caller.
+     */
+    public void configureChangeFeed(ChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    /**
+     * @return Feed of every sensor activation, alarm transition and arming change, in order
+     */
+    public ChangeFeed getChangeFeed() {
+        return changeFeed;
+    }
+
+    /**
+     * Sets how long the alarm may stay pending while armed with the given status before it
+     * escalates to {@link AlarmStatus#ALARM} by itself, giving the owner time to disarm after
+     * coming in. Another sensor activation still escalates it right away. Zero, the default,
+     * leaves a pending alarm pending until that activation. An alarm that was already pending
+     * when the state was loaded from the repository gets the full delay from then on.
+     */
+    public void setEntryDelay(ArmingStatus armingStatus, long delayMillis) {
+        entryDelays.set(armedOrdinal(armingStatus, delayMillis), delayMillis);
+        resumeEscalation();
+    }
+
+    /**
+     * Sets how long sensor activations are ignored after arming with the given status, giving the
+     * owner time to leave. If a sensor is still active when the delay ends, the alarm becomes
+     * pending. Zero, the default, turns the delay off.
+     */
+    public void setExitDelay(ArmingStatus armingStatus, long delayMillis) {
+        exitDelays.set(armedOrdinal(armingStatus, delayMillis), delayMillis);
+    }
+
+    private static int armedOrdinal(ArmingStatus armingStatus, long delayMillis) {
+        if (armingStatus == ArmingStatus.DISARMED || delayMillis < 0) {
+            throw new IllegalArgumentException("No delay of " + delayMillis + " ms applies to " + armingStatus);
+        }
+        return armingStatus.ordinal();
+    }
+
+    /**
+     * Run entry and exit delays on a timer wheel shared with other services, instead of one of
+     * their own. Must be called before the first delay starts.
+     * @param timerWheel Wheel the delays are timed on. Remains owned by the caller.
+     * @param timerExecutor Executor that applies a delay once it ends. The wheel's ticking thread
+     *                      only hands the delay over, so a slow repository or listener does not
+     *                      hold up the other services' timers.
+     */
+    public synchronized void configureTimers(TimerWheel timerWheel, Executor timerExecutor) {
+        if (this.timerWheel != null) {
+            throw new IllegalStateException("Timers have already started");
+        }
+        this.timerWheel = timerWheel;
+        this.timerExecutor = timerExecutor;
+    }
+
+    private synchronized TimerWheel.Timeout startTimer(TimerWheel.Task task, long delayMillis) {
+        Executor executor = timerExecutor;
+        return getTimerWheel().schedule(timeout -> {
+            asyncStarted();
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run(timeout);
+                    } finally {
+                        asyncFinished();
+                    }
+                });
+            } catch (RuntimeException e) {
+                asyncFinished();
+                throw e;
+            }
+        }, delayMillis);
+    }
+
+    private synchronized TimerWheel getTimerWheel() {
+        if (timerWheel == null) {
+            timerWheel = new TimerWheel("alarm-timers", TimerWheel.DEFAULT_TICK_MILLIS);
+            ownsTimerWheel = true;
+        }
+        return timerWheel;
+    }
+
+    /**
+     * Handle the batches collected by {@link #submitFrame(UUID, BufferedImage)} and
+     * {@link #submitSensorEvent(SensorEvent)} on a scheduler shared with other services, instead of
+     * a thread of their own. Must be called before the first frame or event is submitted.
+     * @param scheduler Scheduler the batches are handled on. Remains owned by the caller.
+     */
+    public synchronized void configureBatching(ScheduledExecutorService scheduler) {
+        if (frameBatcher != null || sensorBatcher != null) {
+            throw new IllegalStateException("Batching has already started");
+        }
+        batchScheduler = scheduler;
+    }
+
+    private synchronized MicroBatcher<Map.Entry<Camera, BufferedImage>, Boolean> getFrameBatcher() {
+        if (frameBatcher == null) {
+            frameBatcher = batchScheduler == null
+                    ? new MicroBatcher<>("frame-batcher", FRAME_BATCH_WINDOW_MILLIS, MAX_FRAME_BATCH_SIZE, this::processFrames)
+                    : new MicroBatcher<>(batchScheduler, FRAME_BATCH_WINDOW_MILLIS, MAX_FRAME_BATCH_SIZE, this::processFrames);
+        }
+        return frameBatcher;
+    }
+
+    private synchronized MicroBatcher<SensorEvent, Void> getSensorBatcher() {
+        if (sensorBatcher == null) {
+            Function<List<SensorEvent>, List<Void>> handler = events -> {
+                submitSensorEvents(events);
+                return Collections.nCopies(events.size(), null);
+            };
+            sensorBatcher = batchScheduler == null
+                    ? new MicroBatcher<>("sensor-batcher", SENSOR_BATCH_WINDOW_MILLIS, MAX_SENSOR_BATCH_SIZE, handler)
+                    : new MicroBatcher<>(batchScheduler, SENSOR_BATCH_WINDOW_MILLIS, MAX_SENSOR_BATCH_SIZE, handler);
+        }
+        return sensorBatcher;
+    }
+
+    private synchronized ImageAnalysisPipeline getImagePipeline(Camera camera) {
+        if (imageWorkers == null) {
+            throw new IllegalStateException("Image processing is not configured; call configureImageProcessing first");
+        }
+        //one image in flight per camera keeps each camera's frames in order
+        return imagePipelines.computeIfAbsent(camera.getCameraId(), id -> new ImageAnalysisPipeline(imageService,
+                CAT_CONFIDENCE_THRESHOLD, imageWorkers, 1, imageQueueCapacity, imageResultExecutor,
+                (image, cat) -> applyImageResult(camera, image, cat)));
+    }
+
+    /**
+     * Returns the repository's instance of a sensor, which is the only one that may be changed:
+     * other instances may be copies shared with other readers. Falls back to the given sensor if
+     * the repository does not hold it.
+     */
+    private Sensor storedSensor(Sensor sensor) {
+        Sensor stored = securityRepository.getSensor(sensor.getSensorId());
+        return stored != null ? stored : sensor;
+    }
+
+    private void applyImageResult(Camera camera, BufferedImage image, boolean cat) {
+        if (cameras.get(camera.getCameraId()) != camera) {
+            //the camera was removed while its frame was being classified
+            return;
+        }
+        camera.setLastFrame(image);
+        camera.setCatDetected(cat);
+        catDetected(isAnyCameraDetectingCat());
+    }
+
+    /**
+     * Returns true if the latest frame of any camera shows a cat.
+     */
+    public boolean isAnyCameraDetectingCat() {
+        return cameras.values().stream().anyMatch(Camera::isCatDetected);
+    }
+
+    public void addCamera(Camera camera) {
+        cameras.put(camera.getCameraId(), camera);
+    }
+
+    /**
+     * Removes a camera. Its detection state no longer counts towards the alarm, which is
+     * re-evaluated right away. Its frames still waiting for analysis are cancelled, and results
+     * for its frames that finish later are ignored.
+     */
+    public void removeCamera(Camera camera) {
+        ImageAnalysisPipeline pipeline;
+        synchronized (this) {
+            cameras.remove(camera.getCameraId());
+            pipeline = imagePipelines.remove(camera.getCameraId());
+        }
+        if (pipeline != null) {
+            pipeline.discard();
+        }
+        catDetected(isAnyCameraDetectingCat());
+    }
+
+    public Camera getCamera(UUID cameraId) {
+        Camera camera = cameras.get(cameraId);
+        if (camera == null) {
+            throw new IllegalArgumentException("Unknown camera " + cameraId);
+        }
+        return camera;
+    }
+
+    public Collection<Camera> getCameras() {
+        return Collections.unmodifiableCollection(cameras.values());
+    }
+
+    public Camera getDefaultCamera() {
+        return defaultCamera;
     }
 
     public AlarmStatus getAlarmStatus() {
-        return securityRepository.getAlarmStatus();
+        return getSystemState().getAlarmStatus();
     }
 
     public Set<Sensor> getSensors() {
         return securityRepository.getSensors();
     }
 
+    /**
+     * @return Immutable, versioned view of the sensors, safe to read on any thread
+     */
+    public SensorSnapshot getSensorSnapshot() {
+        return securityRepository.getSensorSnapshot();
+    }
+
     public void addSensor(Sensor sensor) {
         securityRepository.addSensor(sensor);
     }
@@ -174,14 +794,83 @@ public class SecurityService {
     }
 
     public ArmingStatus getArmingStatus() {
-        return securityRepository.getArmingStatus();
+        return getSystemState().getArmingStatus();
     }
 
     public void setImage(BufferedImage image) {
-        currentImage = image;
+        defaultCamera.setLastFrame(image);
     }
 
     public void setCatDetected(boolean cat) {
-        isCatDetected = cat;
+        defaultCamera.setCatDetected(cat);
+    }
+
+    /**
+     * Stops the batching and image analysis threads and cancels running entry and exit delays.
+     * Waiting batches are applied, and images already submitted and delays that already ended
+     * finish, before this returns, so the repository may be closed afterwards. Gives up waiting
+     * after {@value #CLOSE_TIMEOUT_SECONDS} seconds, e.g. when results are applied on the thread
+     * calling close. The repository and status event bus are left open.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            cancel(escalation);
+            cancel(exitDelay);
+            if (ownsTimerWheel) {
+                timerWheel.close();
+            }
+            if (frameBatcher != null) {
+                frameBatcher.close();
+            }
+            if (sensorBatcher != null) {
+                sensorBatcher.close();
+            }
+            if (imageWorkers != null && ownsImageWorkers) {
+                //images still waiting fail once their turn comes, which completes their futures
+                imageWorkers.shutdown();
+            }
+        }
+        //outside the lock, since applying a result may start a delay
+        awaitAsyncTasks();
+    }
+
+    private void asyncStarted() {
+        synchronized (asyncLock) {
+            asyncTasks++;
+        }
+    }
+
+    private void asyncFinished() {
+        synchronized (asyncLock) {
+            if (--asyncTasks == 0) {
+                asyncLock.notifyAll();
+            }
+        }
+    }
+
+    private void awaitAsyncTasks() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(CLOSE_TIMEOUT_SECONDS);
+        synchronized (asyncLock) {
+            try {
+                while (asyncTasks > 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        log.warn("{} image analyses or delays still running at close", asyncTasks);
+                        return;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(asyncLock, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void cancel(AtomicReference<TimerWheel.Timeout> timer) {
+        TimerWheel.Timeout timeout = timer.getAndSet(null);
+        if (timeout != null) {
+            timeout.cancel();
+        }
     }
 }
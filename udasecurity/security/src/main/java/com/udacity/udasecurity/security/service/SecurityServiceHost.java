@@ -0,0 +1,265 @@
+package com.udacity.udasecurity.security.service;
+
+import com.udacity.udasecurity.image.service.ImageAnalysisPipeline;
+import com.udacity.udasecurity.image.service.ImageService;
+import com.udacity.udasecurity.metrics.Counter;
+import com.udacity.udasecurity.metrics.MetricsRegistry;
+import com.udacity.udasecurity.security.data.SecurityRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Hosts the security systems of many homes, or tenants, in one JVM. Every tenant has its own
+ * {@link SecurityService}, repository and image service, created from the factories given to the
+ * host the first time the tenant is used. Threads are shared: all tenants' status listeners are
+ * called on one dispatch pool, all their event and frame batches and entry and exit delays are
+ * handled on one scheduler, and all their asynchronously submitted images are classified on one
+ * worker pool sized to the machine.
+ * Pair it with an {@link com.udacity.udasecurity.security.data.EventLogStorageEngine} and a
+ * {@link com.udacity.udasecurity.image.service.FairClassificationPool} to share storage and
+ * classification as well.
+ *
+ * A tenant that has not been used for the idle timeout is evicted: pending batches are applied,
+ * images already submitted and delays already ended finish, its service is closed and its
+ * repository is closed if it is {@link Closeable}. The next call for the tenant waits for that to
+ * finish and then loads it again from its repository. Loading and closing only hold up calls for
+ * the same tenant. Memory therefore grows with the number of
+ * active homes rather than all homes. Listeners added to an evicted tenant's service are dropped
+ * with it.
+ */
+public class SecurityServiceHost implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SecurityServiceHost.class);
+    private static final Counter evictionFailures = MetricsRegistry.global().counter("host.evictionFailures");
+
+    private final Function<String, SecurityRepository> repositoryFactory;
+    private final Function<String, ImageService> imageServiceFactory;
+    private final long idleTimeoutNanos;
+    private final ExecutorService dispatchExecutor;
+    private final ScheduledExecutorService batchScheduler;
+    private final ExecutorService imageWorkers;
+    private final TimerWheel timerWheel;
+    //completed with null once an evicted tenant has closed, telling waiting callers to load it again
+    private final Map<String, CompletableFuture<Tenant>> tenants = new ConcurrentHashMap<>();
+
+    /**
+     * @param repositoryFactory Opens the repository of a tenant
+     * @param imageServiceFactory Creates the image service of a tenant
+     * @param idleTimeoutMillis How long a tenant may go unused before it is evicted
+     */
+    public SecurityServiceHost(Function<String, SecurityRepository> repositoryFactory,
+                               Function<String, ImageService> imageServiceFactory, long idleTimeoutMillis) {
+        this.repositoryFactory = repositoryFactory;
+        this.imageServiceFactory = imageServiceFactory;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.dispatchExecutor = Executors.newCachedThreadPool(daemon("tenant-dispatch-"));
+        this.batchScheduler = Executors.newScheduledThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()),
+                daemon("tenant-batch-"));
+        this.imageWorkers = ImageAnalysisPipeline.newWorkerExecutor(Runtime.getRuntime().availableProcessors());
+        this.timerWheel = new TimerWheel(batchScheduler, TimerWheel.DEFAULT_TICK_MILLIS);
+        long sweepMillis = Math.max(1000, idleTimeoutMillis / 2);
+        batchScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                evictIdle();
+            } catch (RuntimeException e) {
+                //a sweep that throws would cancel every later one
+                log.error("Sweeping idle tenants failed", e);
+            }
+        }, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs an action against a tenant's service, loading the tenant if it is not in memory. The
+     * tenant is not evicted while the action runs.
+     * @return The action's result
+     */
+    public <T> T withTenant(String tenantId, Function<SecurityService, T> action) {
+        while (true) {
+            Tenant tenant = getOrLoad(tenantId);
+            if (tenant == null) {
+                //waited for an eviction to finish; load it again
+                continue;
+            }
+            synchronized (tenant) {
+                if (tenant.evicted) {
+                    //lost a race with eviction; wait for it to finish
+                    continue;
+                }
+                tenant.leases++;
+            }
+            try {
+                return action.apply(tenant.securityService);
+            } finally {
+                synchronized (tenant) {
+                    tenant.leases--;
+                    tenant.lastUsedNanos = System.nanoTime();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Live view of the IDs of the tenants currently in memory
+     */
+    public Set<String> getLoadedTenants() {
+        return tenants.keySet();
+    }
+
+    /**
+     * Evicts every tenant that has not been used for the idle timeout. Runs periodically on its
+     * own, but may be called to free memory sooner. A tenant that fails to close is logged,
+     * counted as host.evictionFailures and dropped all the same.
+     * @return Number of tenants evicted
+     */
+    public int evictIdle() {
+        int evicted = 0;
+        for (String tenantId : new ArrayList<>(tenants.keySet())) {
+            if (evictLogged(tenantId, false)) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Evicts every tenant not in use and stops the shared threads.
+     */
+    @Override
+    public void close() {
+        for (String tenantId : new ArrayList<>(tenants.keySet())) {
+            evictLogged(tenantId, true);
+        }
+        timerWheel.close();
+        imageWorkers.shutdown();
+        batchScheduler.shutdown();
+        dispatchExecutor.shutdown();
+    }
+
+    /**
+     * Returns a loaded tenant, or loads it on the calling thread. Only a placeholder is published
+     * in the map, so the load runs outside the map's locks and other tenants are not held up;
+     * concurrent callers for the same tenant wait for the placeholder.
+     * @return The tenant, or null if it was being evicted and has to be looked up again
+     */
+    private Tenant getOrLoad(String tenantId) {
+        CompletableFuture<Tenant> loading = new CompletableFuture<>();
+        CompletableFuture<Tenant> existing = tenants.putIfAbsent(tenantId, loading);
+        if (existing == null) {
+            try {
+                loading.complete(load(tenantId));
+            } catch (RuntimeException | Error e) {
+                tenants.remove(tenantId, loading);
+                loading.completeExceptionally(e);
+                throw e;
+            }
+            return loading.join();
+        }
+        try {
+            return existing.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Unable to load tenant " + tenantId, e.getCause());
+        }
+    }
+
+    private boolean evictLogged(String tenantId, boolean evenIfRecent) {
+        try {
+            return evict(tenantId, evenIfRecent);
+        } catch (RuntimeException e) {
+            evictionFailures.increment();
+            log.error("Closing tenant {} failed", tenantId, e);
+            return true;
+        }
+    }
+
+    /**
+     * Unloads a tenant if it is idle. While it closes, its map entry is a placeholder that
+     * concurrent {@link #withTenant} calls for the same tenant wait on before loading it again,
+     * so the repository is never open twice. Closing runs outside the map's locks.
+     * @param evenIfRecent Whether to evict the tenant even if the idle timeout has not passed
+     */
+    private boolean evict(String tenantId, boolean evenIfRecent) {
+        CompletableFuture<Tenant> loaded = tenants.get(tenantId);
+        //still loading, failed to load or already being evicted
+        if (loaded == null || !loaded.isDone() || loaded.isCompletedExceptionally() || loaded.join() == null) {
+            return false;
+        }
+        Tenant tenant = loaded.join();
+        CompletableFuture<Tenant> closing = new CompletableFuture<>();
+        synchronized (tenant) {
+            if (tenant.evicted || tenant.leases > 0
+                    || (!evenIfRecent && System.nanoTime() - tenant.lastUsedNanos < idleTimeoutNanos)) {
+                return false;
+            }
+            tenant.evicted = true;
+            //swapped under the tenant's lock, so a caller that sees it evicted finds the placeholder
+            tenants.replace(tenantId, loaded, closing);
+        }
+        try {
+            unload(tenant);
+        } finally {
+            tenants.remove(tenantId, closing);
+            closing.complete(null);
+        }
+        return true;
+    }
+
+    private Tenant load(String tenantId) {
+        SecurityRepository repository = repositoryFactory.apply(tenantId);
+        SecurityService securityService = new SecurityService(repository, imageServiceFactory.apply(tenantId),
+                new StatusEventBus(dispatchExecutor, dispatchExecutor));
+        securityService.configureBatching(batchScheduler);
+        securityService.configureTimers(timerWheel, batchScheduler);
+        securityService.configureImageProcessing(imageWorkers, ImageAnalysisPipeline.DEFAULT_QUEUE_CAPACITY, Runnable::run);
+        return new Tenant(repository, securityService);
+    }
+
+    private static void unload(Tenant tenant) {
+        tenant.securityService.close();
+        if (tenant.repository instanceof Closeable) {
+            try {
+                ((Closeable) tenant.repository).close();
+            } catch (IOException ioe) {
+                throw new UncheckedIOException("Unable to close tenant repository", ioe);
+            }
+        }
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private static class Tenant {
+        private final SecurityRepository repository;
+        private final SecurityService securityService;
+        private int leases;
+        private long lastUsedNanos = System.nanoTime();
+        private boolean evicted;
+
+        Tenant(SecurityRepository repository, SecurityService securityService) {
+            this.repository = repository;
+            this.securityService = securityService;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.udacity.udasecurity.security.service;
+
+import com.udacity.udasecurity.security.data.Sensor;
+
+/**
+ * A reading reported by a sensor: the sensor became, or is still, active or inactive.
+ */
+public final class SensorEvent {
+    private final Sensor sensor;
+    private final boolean active;
+
+    public SensorEvent(Sensor sensor, boolean active) {
+        this.sensor = sensor;
+        this.active = active;
+    }
+
+    public Sensor getSensor() {
+        return sensor;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public String toString() {
+        return "SensorEvent{" + sensor.getName() + ", " + (active ? "active" : "inactive") + "}";
+    }
+}
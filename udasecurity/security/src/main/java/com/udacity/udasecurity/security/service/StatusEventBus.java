@@ -0,0 +1,322 @@
+package com.udacity.udasecurity.security.service;
+
+import com.udacity.udasecurity.metrics.MetricsRegistry;
+import com.udacity.udasecurity.metrics.Timer;
+import com.udacity.udasecurity.security.application.StatusListener;
+import com.udacity.udasecurity.security.data.AlarmStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.EventQueue;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers status changes to listeners without making the publisher wait for them.
+ *
+ * Every listener has its own small queue with one slot per kind of event: the latest alarm
+ * status, the latest cat detection result and a "sensors changed" flag. A new event replaces
+ * one of the same kind that has not been delivered yet, so a slow listener only ever sees the
+ * most recent state and never falls further behind than one update of each kind. Replaced
+ * events are counted as dropped.
+ *
+ * Events for one listener are delivered one at a time, alarm status first, then cat detection,
+ * then sensor changes. Listeners that ask for it are called on the AWT event dispatch thread;
+ * all others are called on the bus's dispatch executor. Once a listener is unsubscribed it gets
+ * no further calls, even for events published before; only a call already under way finishes.
+ */
+public class StatusEventBus implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(StatusEventBus.class);
+    private static final Timer publishTimer = MetricsRegistry.global().timer("listeners.publish");
+    private static final Timer deliveryTimer = MetricsRegistry.global().timer("listeners.delivery");
+    private static final Timer lagTimer = MetricsRegistry.global().timer("listeners.lag");
+
+    private final Executor dispatchExecutor;
+    private final Executor uiExecutor;
+    private final ExecutorService ownedExecutor;
+    private final Map<StatusListener, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a bus with its own pool of daemon dispatch threads that marshals UI listeners to the
+     * AWT event dispatch thread.
+     */
+    public StatusEventBus() {
+        this(newDispatchExecutor(), EventQueue::invokeLater, true);
+    }
+
+    /**
+     * @param dispatchExecutor Executor regular listeners are called on. Remains owned by the caller.
+     * @param uiExecutor Executor listeners that run on the event dispatch thread are called on
+     */
+    public StatusEventBus(Executor dispatchExecutor, Executor uiExecutor) {
+        this(dispatchExecutor, uiExecutor, false);
+    }
+
+    private StatusEventBus(Executor dispatchExecutor, Executor uiExecutor, boolean owned) {
+        this.dispatchExecutor = dispatchExecutor;
+        this.uiExecutor = uiExecutor;
+        this.ownedExecutor = owned ? (ExecutorService) dispatchExecutor : null;
+    }
+
+    public void subscribe(StatusListener listener) {
+        subscriptions.computeIfAbsent(listener, Subscription::new);
+    }
+
+    public void unsubscribe(StatusListener listener) {
+        subscriptions.remove(listener);
+    }
+
+    /**
+     * @return Live view of the subscribed listeners. Removing from it unsubscribes.
+     */
+    public Set<StatusListener> getListeners() {
+        return subscriptions.keySet();
+    }
+
+    public void publishAlarmStatus(AlarmStatus status) {
+        long now = System.nanoTime();
+        subscriptions.values().forEach(s -> s.offerAlarmStatus(status, now));
+        publishTimer.record(System.nanoTime() - now);
+    }
+
+    public void publishCatDetected(boolean catDetected) {
+        long now = System.nanoTime();
+        subscriptions.values().forEach(s -> s.offerCatDetected(catDetected, now));
+        publishTimer.record(System.nanoTime() - now);
+    }
+
+    public void publishSensorStatusChanged() {
+        long now = System.nanoTime();
+        subscriptions.values().forEach(s -> s.offerSensorStatusChanged(now));
+        publishTimer.record(System.nanoTime() - now);
+    }
+
+    /**
+     * @return Delivery metrics for a listener, or null if it is not subscribed
+     */
+    public ListenerStats getStats(StatusListener listener) {
+        Subscription subscription = subscriptions.get(listener);
+        return subscription == null ? null : subscription.stats();
+    }
+
+    /**
+     * Stops the dispatch threads if the bus created them. Undelivered events are discarded.
+     */
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private static ExecutorService newDispatchExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "status-dispatch-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Point-in-time delivery metrics for one listener. Lag is the time between the oldest
+     * undelivered event being published and the listener being called with it.
+     */
+    public static final class ListenerStats {
+        private final long delivered;
+        private final long dropped;
+        private final long failed;
+        private final long lastLagNanos;
+        private final long maxLagNanos;
+
+        ListenerStats(long delivered, long dropped, long failed, long lastLagNanos, long maxLagNanos) {
+            this.delivered = delivered;
+            this.dropped = dropped;
+            this.failed = failed;
+            this.lastLagNanos = lastLagNanos;
+            this.maxLagNanos = maxLagNanos;
+        }
+
+        /**
+         * @return Number of listener calls made
+         */
+        public long getDelivered() {
+            return delivered;
+        }
+
+        /**
+         * @return Number of events replaced by a newer event of the same kind before delivery
+         */
+        public long getDropped() {
+            return dropped;
+        }
+
+        /**
+         * @return Number of listener calls that threw
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getLastLagNanos() {
+            return lastLagNanos;
+        }
+
+        public long getMaxLagNanos() {
+            return maxLagNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "ListenerStats{delivered=" + delivered + ", dropped=" + dropped + ", failed=" + failed
+                    + ", lastLagNanos=" + lastLagNanos + ", maxLagNanos=" + maxLagNanos + "}";
+        }
+    }
+
+    private class Subscription {
+        private final StatusListener listener;
+        private final Executor executor;
+
+        private AlarmStatus pendingAlarmStatus;
+        private Boolean pendingCatDetected;
+        private boolean pendingSensorChange;
+        private long oldestPendingNanos;
+        private boolean scheduled;
+
+        private long delivered;
+        private long dropped;
+        private long failed;
+        private long lastLagNanos;
+        private long maxLagNanos;
+
+        Subscription(StatusListener listener) {
+            this.listener = listener;
+            this.executor = listener.onEventDispatchThread() ? uiExecutor : dispatchExecutor;
+        }
+
+        synchronized void offerAlarmStatus(AlarmStatus status, long now) {
+            if (pendingAlarmStatus != null) {
+                dropped++;
+            }
+            pendingAlarmStatus = status;
+            pending(now);
+        }
+
+        synchronized void offerCatDetected(boolean catDetected, long now) {
+            if (pendingCatDetected != null) {
+                dropped++;
+            }
+            pendingCatDetected = catDetected;
+            pending(now);
+        }
+
+        synchronized void offerSensorStatusChanged(long now) {
+            if (pendingSensorChange) {
+                dropped++;
+            }
+            pendingSensorChange = true;
+            pending(now);
+        }
+
+        synchronized ListenerStats stats() {
+            return new ListenerStats(delivered, dropped, failed, lastLagNanos, maxLagNanos);
+        }
+
+        private void pending(long now) {
+            if (oldestPendingNanos == 0) {
+                oldestPendingNanos = now;
+            }
+            if (!scheduled) {
+                scheduled = true;
+                try {
+                    executor.execute(this::drain);
+                } catch (RuntimeException e) {
+                    //executor shut down; leave the events queued
+                    scheduled = false;
+                }
+            }
+        }
+
+        /**
+         * Whether the listener is still subscribed. Checked before every call, so unsubscribing
+         * also stops a drain that is already running. Removing the listener through
+         * {@link #getListeners()} counts as well.
+         */
+        private boolean isActive() {
+            return subscriptions.get(listener) == this;
+        }
+
+        /**
+         * Delivers whatever is pending, repeating until nothing new arrived while the listener ran.
+         */
+        private void drain() {
+            while (true) {
+                AlarmStatus alarmStatus;
+                Boolean catDetected;
+                boolean sensorChange;
+                synchronized (this) {
+                    if (!isActive()) {
+                        pendingAlarmStatus = null;
+                        pendingCatDetected = null;
+                        pendingSensorChange = false;
+                    }
+                    if (pendingAlarmStatus == null && pendingCatDetected == null && !pendingSensorChange) {
+                        scheduled = false;
+                        return;
+                    }
+                    alarmStatus = pendingAlarmStatus;
+                    catDetected = pendingCatDetected;
+                    sensorChange = pendingSensorChange;
+                    pendingAlarmStatus = null;
+                    pendingCatDetected = null;
+                    pendingSensorChange = false;
+                    lastLagNanos = Math.max(0, System.nanoTime() - oldestPendingNanos);
+                    maxLagNanos = Math.max(maxLagNanos, lastLagNanos);
+                    lagTimer.record(lastLagNanos);
+                    oldestPendingNanos = 0;
+                }
+                if (alarmStatus != null) {
+                    call("alarm status", alarmStatus, () -> listener.notify(alarmStatus));
+                }
+                if (catDetected != null) {
+                    call("cat detected", catDetected, () -> listener.catDetected(catDetected));
+                }
+                if (sensorChange) {
+                    call("sensor status changed", null, listener::sensorStatusChanged);
+                }
+            }
+        }
+
+        /**
+         * @param event Kind of event being delivered, logged if the listener fails
+         * @param value The event's value, or null if it has none
+         */
+        private void call(String event, Object value, Runnable delivery) {
+            if (!isActive()) {
+                return;
+            }
+            boolean ok = false;
+            long start = deliveryTimer.start();
+            try {
+                delivery.run();
+                ok = true;
+            } catch (RuntimeException e) {
+                //a failing listener must not stop delivery to itself or others
+                log.error("Status listener {} failed handling {} {}", listener, event, value == null ? "" : value, e);
+            }
+            deliveryTimer.stop(start);
+            synchronized (this) {
+                delivered++;
+                if (!ok) {
+                    failed++;
+                }
+            }
+        }
+    }
+}
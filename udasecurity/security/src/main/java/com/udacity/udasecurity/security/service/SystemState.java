@@ -0,0 +1,39 @@
+package com.udacity.udasecurity.security.service;
+
+import com.udacity.udasecurity.security.data.AlarmStatus;
+import com.udacity.udasecurity.security.data.ArmingStatus;
+
+/**
+ * Immutable snapshot of the alarm and arming status. The SecurityService swaps whole snapshots
+ * atomically, so the two statuses are always read and changed together.
+ */
+public final class SystemState {
+    private final AlarmStatus alarmStatus;
+    private final ArmingStatus armingStatus;
+
+    public SystemState(AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+        this.alarmStatus = alarmStatus;
+        this.armingStatus = armingStatus;
+    }
+
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    public SystemState withAlarmStatus(AlarmStatus alarmStatus) {
+        return new SystemState(alarmStatus, armingStatus);
+    }
+
+    public SystemState withArmingStatus(ArmingStatus armingStatus) {
+        return new SystemState(alarmStatus, armingStatus);
+    }
+
+    @Override
+    public String toString() {
+        return "SystemState{" + alarmStatus + ", " + armingStatus + "}";
+    }
+}
@@ -0,0 +1,306 @@
+package com.udacity.udasecurity.security.service;
+
+import com.udacity.udasecurity.metrics.Counter;
+import com.udacity.udasecurity.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs delayed tasks on a hierarchical timing wheel, so any number of timers share one ticking
+ * thread. Each of the four wheels has 64 slots; the first holds timers due within 64
+ * ticks, and each further wheel covers 64 times the span of the one below it. When a lower wheel
+ * wraps around, the next slot of the wheel above is emptied into it. Scheduling and cancelling
+ * take constant time, and a tick only touches the timers that are due or move down a wheel.
+ * Delays beyond the top wheel's span simply pass through it more than once.
+ *
+ * Tasks run on the ticking thread, one tick late at most, and should be short; anything slower
+ * belongs on an executor of its own. A task that throws is logged and counted, and the wheel
+ * keeps running the others.
+ */
+public class TimerWheel implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(TimerWheel.class);
+    private static final Counter taskFailures = MetricsRegistry.global().counter("timerWheel.taskFailures");
+
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    private static final int LEVELS = 4;
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final long WHEEL_MASK = WHEEL_SIZE - 1;
+    //largest distance in ticks the top wheel can hold in one pass
+    private static final long MAX_SPAN = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    /**
+     * Work run when a timer expires.
+     */
+    public interface Task {
+        /**
+         * @param timeout The timer that expired
+         */
+        void run(Timeout timeout);
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public static final class Timeout {
+
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final TimerWheel wheel;
+        private final Task task;
+        private final long deadline;
+        //the fields below are guarded by the wheel
+        private int state = WAITING;
+        private int level;
+        private int slot;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(TimerWheel wheel, Task task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Stops the task from running.
+         * @return False if the task already ran, is running or was cancelled before
+         */
+        public boolean cancel() {
+            synchronized (wheel) {
+                if (state != WAITING) {
+                    return false;
+                }
+                state = CANCELLED;
+                wheel.unlink(this);
+                wheel.pending--;
+                return true;
+            }
+        }
+
+        public boolean isCancelled() {
+            synchronized (wheel) {
+                return state == CANCELLED;
+            }
+        }
+    }
+
+    private final long tickNanos;
+    private final LongSupplier nanoTime;
+    private final long startNanos;
+    private final ScheduledExecutorService ownedScheduler;
+    private final ScheduledFuture<?> ticker;
+    //first timer in each slot of each wheel, linked through Timeout.next
+    private final Timeout[][] slots = new Timeout[LEVELS][WHEEL_SIZE];
+    private long currentTick;
+    private int pending;
+    private boolean closed;
+
+    /**
+     * @param name Name of the wheel's ticking thread
+     * @param tickMillis Resolution of the timers
+     */
+    public TimerWheel(String name, long tickMillis) {
+        this(Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        }), true, tickMillis);
+    }
+
+    /**
+     * @param scheduler Scheduler the wheel ticks and runs its tasks on. Remains owned by the caller.
+     * @param tickMillis Resolution of the timers
+     */
+    public TimerWheel(ScheduledExecutorService scheduler, long tickMillis) {
+        this(scheduler, false, tickMillis);
+    }
+
+    private TimerWheel(ScheduledExecutorService scheduler, boolean ownsScheduler, long tickMillis) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.nanoTime = System::nanoTime;
+        this.startNanos = nanoTime.getAsLong();
+        this.ownedScheduler = ownsScheduler ? scheduler : null;
+        this.ticker = scheduler.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a wheel that only moves when {@link #advance()} is called, reading time from the given clock.
+     */
+    TimerWheel(long tickMillis, LongSupplier nanoTime) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.nanoTime = nanoTime;
+        this.startNanos = nanoTime.getAsLong();
+        this.ownedScheduler = null;
+        this.ticker = null;
+    }
+
+    /**
+     * Runs a task once the delay has passed.
+     * @return Handle that cancels the task
+     */
+    public Timeout schedule(Task task, long delayMillis) {
+        long delayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Timer wheel is closed");
+            }
+            //counted from the clock rather than the last tick, so a late tick does not shorten the delay
+            long deadline = (nanoTime.getAsLong() - startNanos + delayNanos + tickNanos - 1) / tickNanos;
+            Timeout timeout = new Timeout(this, task, Math.max(deadline, currentTick + 1));
+            add(timeout);
+            pending++;
+            return timeout;
+        }
+    }
+
+    /**
+     * @return Number of timers that have neither run nor been cancelled
+     */
+    public synchronized int getPending() {
+        return pending;
+    }
+
+    /**
+     * Moves the wheel up to the current time and runs every task that became due.
+     */
+    void advance() {
+        List<Timeout> expired = new ArrayList<>();
+        synchronized (this) {
+            long target = elapsedTicks();
+            if (pending == 0) {
+                //slots are addressed by absolute tick, so an empty wheel can jump ahead
+                currentTick = Math.max(currentTick, target);
+            }
+            while (currentTick < target) {
+                tick(expired);
+            }
+        }
+        for (Timeout timeout : expired) {
+            try {
+                timeout.task.run(timeout);
+            } catch (RuntimeException e) {
+                //one failing task must not stop the wheel for every other timer
+                taskFailures.increment();
+                log.error("Timer task failed", e);
+            }
+        }
+    }
+
+    /**
+     * Stops ticking. Timers that have not expired yet never run.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            for (Timeout[] wheel : slots) {
+                for (int i = 0; i < WHEEL_SIZE; i++) {
+                    for (Timeout t = wheel[i]; t != null; t = t.next) {
+                        t.state = Timeout.CANCELLED;
+                    }
+                    wheel[i] = null;
+                }
+            }
+            pending = 0;
+        }
+        if (ticker != null) {
+            ticker.cancel(false);
+        }
+        if (ownedScheduler != null) {
+            ownedScheduler.shutdown();
+        }
+    }
+
+    private long elapsedTicks() {
+        return (nanoTime.getAsLong() - startNanos) / tickNanos;
+    }
+
+    private void tick(List<Timeout> expired) {
+        currentTick++;
+        //find the highest wheel that turns over on this tick and cascade downwards from it
+        int top = 0;
+        while (top < LEVELS - 1 && (currentTick & ((1L << (WHEEL_BITS * (top + 1))) - 1)) == 0) {
+            top++;
+        }
+        for (int level = top; level > 0; level--) {
+            int slot = (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+            Timeout t = slots[level][slot];
+            slots[level][slot] = null;
+            while (t != null) {
+                Timeout next = t.next;
+                t.previous = null;
+                t.next = null;
+                add(t);
+                t = next;
+            }
+        }
+
+        int slot = (int) (currentTick & WHEEL_MASK);
+        Timeout t = slots[0][slot];
+        slots[0][slot] = null;
+        while (t != null) {
+            Timeout next = t.next;
+            t.previous = null;
+            t.next = null;
+            if (t.deadline <= currentTick) {
+                t.state = Timeout.EXPIRED;
+                pending--;
+                expired.add(t);
+            } else {
+                add(t);
+            }
+            t = next;
+        }
+    }
+
+    /**
+     * Places a timer on the lowest wheel whose span reaches its deadline, in the slot that is
+     * emptied on the tick its deadline falls into.
+     */
+    private void add(Timeout timeout) {
+        long distance = timeout.deadline - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && distance >= 1L << (WHEEL_BITS * (level + 1))) {
+            level++;
+        }
+        long due = Math.min(timeout.deadline, currentTick + MAX_SPAN);
+        link(timeout, level, (int) ((due >>> (WHEEL_BITS * level)) & WHEEL_MASK));
+    }
+
+    private void link(Timeout timeout, int level, int slot) {
+        Timeout head = slots[level][slot];
+        timeout.level = level;
+        timeout.slot = slot;
+        timeout.previous = null;
+        timeout.next = head;
+        if (head != null) {
+            head.previous = timeout;
+        }
+        slots[level][slot] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else if (slots[timeout.level][timeout.slot] == timeout) {
+            slots[timeout.level][timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+    }
+}
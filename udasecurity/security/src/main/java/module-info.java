@@ -1,5 +1,6 @@
 module com.udacity.udasecurity.security {
     requires com.udacity.udasecurity.image;
+    requires com.udacity.udasecurity.metrics;
     requires java.desktop;
     requires java.prefs;
     requires com.google.gson;
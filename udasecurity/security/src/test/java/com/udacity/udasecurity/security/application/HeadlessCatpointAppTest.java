@@ -0,0 +1,76 @@
+package com.udacity.udasecurity.security.application;
+
+import com.udacity.udasecurity.image.service.FakeImageService;
+import com.udacity.udasecurity.security.data.AlarmStatus;
+import com.udacity.udasecurity.security.data.EventLogSecurityRepositoryImpl;
+import com.udacity.udasecurity.security.data.Sensor;
+import com.udacity.udasecurity.security.data.SensorType;
+import com.udacity.udasecurity.security.service.SensorEvent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+public class HeadlessCatpointAppTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void process_sensorEvents_appliedBeforeStatusReply() throws IOException {
+        String commands = String.join("\n",
+                "# two sensors, both tripped while armed",
+                "sensor add door DOOR",
+                "sensor add hall MOTION",
+                "arm away",
+                "sensor door active",
+                "sensor hall active",
+                "sync",
+                "status");
+        StringWriter out = new StringWriter();
+        try (HeadlessCatpointApp app = new HeadlessCatpointApp(new EventLogSecurityRepositoryImpl(directory, 0, 100), new FakeImageService())) {
+            app.process(new BufferedReader(new StringReader(commands)), out);
+
+            Assertions.assertEquals(AlarmStatus.ALARM, app.getSecurityService().getAlarmStatus());
+        }
+        Assertions.assertEquals("alarm=ALARM arming=ARMED_AWAY sensors=2 active=2", out.toString().trim());
+    }
+
+    @Test
+    public void close_sensorEventPending_appliedBeforeRepositoryCloses() throws IOException {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        CompletableFuture<Void> applied;
+        try (HeadlessCatpointApp app = new HeadlessCatpointApp(new EventLogSecurityRepositoryImpl(directory, 0, 100), new FakeImageService())) {
+            app.getSecurityService().addSensor(door);
+            applied = app.getSecurityService().submitSensorEvent(new SensorEvent(door, true));
+        }
+
+        try (EventLogSecurityRepositoryImpl reopened = new EventLogSecurityRepositoryImpl(directory, 0, 100)) {
+            Assertions.assertAll(
+                    () -> Assertions.assertTrue(applied.isDone()),
+                    () -> Assertions.assertEquals(1, reopened.getActiveSensorCount())
+            );
+        }
+    }
+
+    @Test
+    public void execute_invalidCommands_replyWithErrors() throws IOException {
+        try (HeadlessCatpointApp app = new HeadlessCatpointApp(new EventLogSecurityRepositoryImpl(directory, 0, 100), new FakeImageService())) {
+            CommandInterpreter interpreter = app.getCommandInterpreter();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertTrue(interpreter.execute("sensor missing active").startsWith("error")),
+                    () -> Assertions.assertTrue(interpreter.execute("arm sideways").startsWith("error")),
+                    () -> Assertions.assertTrue(interpreter.execute("frame nowhere.jpg").startsWith("error")),
+                    () -> Assertions.assertTrue(interpreter.execute("launch").startsWith("error")),
+                    () -> Assertions.assertNull(interpreter.execute("   "))
+            );
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.udacity.udasecurity.security.application;
+
+import com.udacity.udasecurity.security.data.Sensor;
+import com.udacity.udasecurity.security.data.SensorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SensorTableModelTest {
+
+    private final SensorTableModel model = new SensorTableModel((sensor, active) -> {});
+    private final List<TableModelEvent> events = new ArrayList<>();
+
+    private final Sensor back = new Sensor("back", SensorType.DOOR);
+    private final Sensor front = new Sensor("front", SensorType.DOOR);
+    private final Sensor hall = new Sensor("hall", SensorType.MOTION);
+
+    @BeforeEach
+    void init() {
+        model.refresh(List.of(back, front, hall));
+        model.addTableModelListener(events::add);
+    }
+
+    @Test
+    public void refresh_oneSensorToggled_updateOnlyThatRow() {
+        front.setActive(true);
+        model.refresh(List.of(back, front, hall));
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(1, events.size()),
+                () -> Assertions.assertEquals(TableModelEvent.UPDATE, events.get(0).getType()),
+                () -> Assertions.assertEquals(1, events.get(0).getFirstRow()),
+                () -> Assertions.assertEquals(1, events.get(0).getLastRow()),
+                () -> Assertions.assertEquals(true, model.getValueAt(1, SensorTableModel.ACTIVE_COLUMN))
+        );
+    }
+
+    @Test
+    public void refresh_sensorAddedAndRemoved_insertAndDeleteSingleRows() {
+        Sensor garage = new Sensor("garage", SensorType.WINDOW);
+        model.refresh(List.of(back, garage, hall));
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(2, events.size()),
+                () -> Assertions.assertEquals(TableModelEvent.DELETE, events.get(0).getType()),
+                () -> Assertions.assertEquals(1, events.get(0).getFirstRow()),
+                () -> Assertions.assertEquals(TableModelEvent.INSERT, events.get(1).getType()),
+                () -> Assertions.assertEquals(1, events.get(1).getFirstRow()),
+                () -> Assertions.assertEquals(garage, model.getSensorAt(1)),
+                () -> Assertions.assertEquals(3, model.getRowCount())
+        );
+    }
+}
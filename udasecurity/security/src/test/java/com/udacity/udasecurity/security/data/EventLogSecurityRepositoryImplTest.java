@@ -0,0 +1,80 @@
+package com.udacity.udasecurity.security.data;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+public class EventLogSecurityRepositoryImplTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void reopen_afterChanges_restoresState() throws IOException {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        try (EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory)) {
+            repository.addSensor(door);
+            repository.addSensor(window);
+            door.setActive(true);
+            repository.updateSensor(door);
+            repository.removeSensor(window);
+            repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        }
+
+        try (EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory)) {
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(ArmingStatus.ARMED_AWAY, repository.getArmingStatus()),
+                    () -> Assertions.assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus()),
+                    () -> Assertions.assertEquals(1, repository.getSensors().size()),
+                    () -> Assertions.assertTrue(repository.getSensors().contains(door)),
+                    () -> Assertions.assertTrue(repository.isAnySensorActive())
+            );
+        }
+    }
+
+    @Test
+    public void reopen_afterSnapshot_replaysOnlyNewSegments() throws IOException {
+        Sensor motion = new Sensor("motion", SensorType.MOTION);
+        try (EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory, 0, 10)) {
+            repository.addSensor(motion);
+            for (int i = 0; i < 25; i++) {
+                motion.setActive(i % 2 == 0);
+                repository.updateSensor(motion);
+            }
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            Assertions.assertEquals(1, files.count(), "expected only the snapshot written on close");
+        }
+        try (EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory, 0, 10)) {
+            Assertions.assertEquals(1, repository.getSensors().size());
+            Assertions.assertTrue(repository.getSensors().iterator().next().getActive());
+        }
+    }
+
+    @Test
+    public void engineOpen_afterFailedClose_opensAgain() throws IOException {
+        try (EventLogStorageEngine engine = new EventLogStorageEngine(directory, 0, 100, 1)) {
+            EventLogSecurityRepositoryImpl repository = engine.open("home-1");
+            repository.addSensor(new Sensor("door", SensorType.DOOR));
+            //the snapshot written on close cannot replace a non-empty directory
+            Files.createDirectories(directory.resolve("home-1").resolve("snapshot.bin.tmp").resolve("blocker"));
+
+            Assertions.assertThrows(IOException.class, repository::close);
+            Assertions.assertEquals(0, engine.getOpenCount());
+            Files.delete(directory.resolve("home-1").resolve("snapshot.bin.tmp").resolve("blocker"));
+            Files.delete(directory.resolve("home-1").resolve("snapshot.bin.tmp"));
+
+            try (EventLogSecurityRepositoryImpl reopened = engine.open("home-1")) {
+                Assertions.assertEquals(1, reopened.getSensors().size());
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.udacity.udasecurity.security.data;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+public class HistoryStoreTest {
+
+    private static final long HOUR = 3_600_000L;
+    private static final long DAY = 24 * HOUR;
+    private static final long START = 20_000 * DAY;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void countActivations_afterReopen_countsAcrossPartitions() throws IOException {
+        UUID door = UUID.randomUUID();
+        UUID window = UUID.randomUUID();
+        try (HistoryStore store = new HistoryStore(directory)) {
+            for (int day = 0; day < 3; day++) {
+                for (int trip = 0; trip < 4; trip++) {
+                    long time = START + day * DAY + trip * HOUR;
+                    store.recordSensor(time, door, SensorType.DOOR, true);
+                    store.recordSensor(time + 60_000, door, SensorType.DOOR, false);
+                }
+                store.recordSensor(START + day * DAY + 12 * HOUR, window, SensorType.WINDOW, true);
+            }
+        }
+
+        try (HistoryStore store = new HistoryStore(directory)) {
+            store.recordSensor(START + 3 * DAY, door, SensorType.DOOR, true);
+            List<Boolean> windowRows = new ArrayList<>();
+            store.scanSensors(window, START, START + 4 * DAY, (time, id, type, active) -> windowRows.add(active));
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(13, store.countActivations(door, START, START + 4 * DAY)),
+                    () -> Assertions.assertEquals(4, store.countActivations(door, START + DAY, START + 2 * DAY)),
+                    () -> Assertions.assertEquals(2, store.countActivations(door, START + DAY, START + DAY + 2 * HOUR)),
+                    () -> Assertions.assertEquals(3, store.countActivations(SensorType.WINDOW, START, START + 4 * DAY)),
+                    () -> Assertions.assertEquals(0, store.countActivations(SensorType.MOTION, START, START + 4 * DAY)),
+                    () -> Assertions.assertEquals(List.of(true, true, true), windowRows)
+            );
+        }
+    }
+
+    @Test
+    public void timeInStatus_weeklyBuckets_usesStatusFromBeforeRange() throws IOException {
+        try (HistoryStore store = new HistoryStore(directory)) {
+            store.recordAlarm(START - DAY, AlarmStatus.PENDING_ALARM);
+            store.recordAlarm(START + 2 * HOUR, AlarmStatus.NO_ALARM);
+            store.recordAlarm(START + 8 * DAY, AlarmStatus.PENDING_ALARM);
+            store.recordAlarm(START + 8 * DAY + 30 * 60_000, AlarmStatus.ALARM);
+            store.recordAlarm(START + 9 * DAY, AlarmStatus.NO_ALARM);
+
+            long[] weekly = store.timeInStatus(AlarmStatus.PENDING_ALARM, START, START + 14 * DAY, 7 * DAY);
+
+            Assertions.assertAll(
+                    () -> Assertions.assertArrayEquals(new long[]{2 * HOUR, 30 * 60_000}, weekly),
+                    () -> Assertions.assertEquals(DAY - 30 * 60_000, store.timeInStatus(AlarmStatus.ALARM, START, START + 14 * DAY)),
+                    () -> Assertions.assertEquals(DAY + 2 * HOUR, store.timeInStatus(AlarmStatus.PENDING_ALARM, START - DAY, START + 3 * HOUR))
+            );
+        }
+    }
+
+    @Test
+    public void flush_repeated_appendsOnlyNewRows() throws IOException {
+        UUID door = UUID.randomUUID();
+        Path partition = directory.resolve("partition-0.seg");
+        byte[] firstFlush;
+        try (HistoryStore store = new HistoryStore(directory)) {
+            store.recordSensor(START, door, SensorType.DOOR, true);
+            store.recordAlarm(START, AlarmStatus.PENDING_ALARM);
+            store.flush();
+            firstFlush = Files.readAllBytes(partition);
+            store.recordSensor(START + HOUR, door, SensorType.DOOR, true);
+            Assertions.assertEquals(2, store.countActivations(door, START, START + DAY));
+            store.recordSensor(START + 2 * HOUR, door, SensorType.DOOR, true);
+            store.flush();
+        }
+        byte[] secondFlush = Files.readAllBytes(partition);
+        //a crash during the next flush leaves a torn block behind
+        Files.write(partition, new byte[]{0x43, 0x50, 0x48}, StandardOpenOption.APPEND);
+
+        try (HistoryStore store = new HistoryStore(directory)) {
+            Assertions.assertAll(
+                    () -> Assertions.assertArrayEquals(firstFlush, Arrays.copyOf(secondFlush, firstFlush.length)),
+                    () -> Assertions.assertEquals(3, store.countActivations(door, START, START + DAY)),
+                    () -> Assertions.assertEquals(HOUR, store.timeInStatus(AlarmStatus.PENDING_ALARM, START, START + HOUR))
+            );
+        }
+    }
+
+    @Test
+    public void flush_monthOfThousandSensors_staysCompact() throws IOException {
+        List<UUID> sensors = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            sensors.add(UUID.randomUUID());
+        }
+        try (HistoryStore store = new HistoryStore(directory)) {
+            for (int day = 0; day < 30; day++) {
+                for (int event = 0; event < 10; event++) {
+                    for (int i = 0; i < sensors.size(); i++) {
+                        long time = START + day * DAY + event * 2 * HOUR + i * 1_000L;
+                        store.recordSensor(time, sensors.get(i), SensorType.values()[i % 3], event % 2 == 0);
+                    }
+                }
+            }
+            Assertions.assertEquals(5 * 30, store.countActivations(sensors.get(7), START, START + 30 * DAY));
+        }
+
+        long bytes;
+        try (Stream<Path> files = Files.list(directory)) {
+            bytes = files.mapToLong(file -> file.toFile().length()).sum();
+        }
+        Assertions.assertTrue(bytes < 2_000_000, "300,000 rows took " + bytes + " bytes");
+    }
+}
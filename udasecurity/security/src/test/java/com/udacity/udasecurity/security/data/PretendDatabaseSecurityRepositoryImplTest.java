@@ -0,0 +1,59 @@
+package com.udacity.udasecurity.security.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+public class PretendDatabaseSecurityRepositoryImplTest {
+
+    private final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImplTest.class)
+            .node("test-" + UUID.randomUUID());
+
+    @AfterEach
+    void close() throws BackingStoreException {
+        prefs.removeNode();
+    }
+
+    @Test
+    public void updateSensors_moreThanOnePreferenceValue_reloadedWhole() {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(prefs);
+        List<Sensor> added = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            Sensor sensor = new Sensor("sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            sensor.setActive(i % 3 == 0);
+            added.add(sensor);
+        }
+        repository.updateSensors(added);
+
+        PretendDatabaseSecurityRepositoryImpl reloaded = new PretendDatabaseSecurityRepositoryImpl(prefs);
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(1500, reloaded.getSensors().size()),
+                () -> Assertions.assertEquals(500, reloaded.getActiveSensorCount()),
+                () -> Assertions.assertTrue(reloaded.getSensors().containsAll(added))
+        );
+    }
+
+    @Test
+    public void removeSensor_fewerChunksThanBefore_reloadsOnlyRemaining() {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(prefs);
+        List<Sensor> added = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            added.add(new Sensor("sensor " + i, SensorType.DOOR));
+        }
+        repository.updateSensors(added);
+        for (Sensor sensor : added.subList(1, added.size())) {
+            repository.removeSensor(sensor);
+        }
+
+        PretendDatabaseSecurityRepositoryImpl reloaded = new PretendDatabaseSecurityRepositoryImpl(prefs);
+
+        Assertions.assertEquals(List.of(added.get(0)), new ArrayList<>(reloaded.getSensors()));
+    }
+}
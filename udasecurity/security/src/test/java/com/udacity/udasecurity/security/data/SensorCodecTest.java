@@ -0,0 +1,91 @@
+package com.udacity.udasecurity.security.data;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SensorCodecTest {
+
+    @Test
+    public void decodeSensor_encodedSensor_roundTrips() {
+        Sensor sensor = new Sensor("back door é", SensorType.DOOR);
+        sensor.setActive(true);
+        Sensor unnamed = new Sensor(null, SensorType.MOTION);
+
+        Sensor decoded = SensorCodec.decodeSensor(ByteBuffer.wrap(SensorCodec.encodeSensor(sensor)));
+        Sensor decodedUnnamed = SensorCodec.decodeSensor(ByteBuffer.wrap(SensorCodec.encodeSensor(unnamed)));
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(sensor.getSensorId(), decoded.getSensorId()),
+                () -> Assertions.assertEquals("back door é", decoded.getName()),
+                () -> Assertions.assertEquals(SensorType.DOOR, decoded.getSensorType()),
+                () -> Assertions.assertTrue(decoded.getActive()),
+                () -> Assertions.assertNull(decodedUnnamed.getName()),
+                () -> Assertions.assertFalse(decodedUnnamed.getActive())
+        );
+    }
+
+    @Test
+    public void decodeSensor_gsonPayload_readsLegacyFormat() {
+        Sensor sensor = new Sensor("window", SensorType.WINDOW);
+        sensor.setActive(true);
+        byte[] json = new Gson().toJson(sensor).getBytes(StandardCharsets.UTF_8);
+
+        Sensor decoded = SensorCodec.decodeSensor(ByteBuffer.wrap(json));
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(sensor.getSensorId(), decoded.getSensorId()),
+                () -> Assertions.assertEquals("window", decoded.getName()),
+                () -> Assertions.assertTrue(decoded.getActive())
+        );
+    }
+
+    @Test
+    public void decodeSensors_encodedSet_countsBeforeRecordsDecoded() {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Sensor sensor = new Sensor("sensor" + i, SensorType.values()[i % SensorType.values().length]);
+            sensor.setActive(i % 2 == 0);
+            sensors.add(sensor);
+        }
+
+        SensorStore.Source source = SensorCodec.decodeSensors(SensorCodec.encodeSensors(sensors));
+        List<Sensor> decoded = new ArrayList<>();
+        int size = source.size();
+        int activeDoors = source.activeCount(SensorType.DOOR);
+        source.forEach(decoded::add);
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(12, size),
+                () -> Assertions.assertEquals(2, activeDoors),
+                () -> Assertions.assertEquals(sensors, decoded)
+        );
+    }
+
+    @Test
+    public void decodeSensor_unknownVersion_throwsIllegalArgumentException() {
+        byte[] encoded = SensorCodec.encodeSensor(new Sensor("door", SensorType.DOOR));
+        encoded[0] = 99;
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> SensorCodec.decodeSensor(ByteBuffer.wrap(encoded)));
+    }
+
+    @ParameterizedTest
+    @EnumSource(AlarmStatus.class)
+    public void decodeAlarmStatus_encodedStatus_roundTrips(AlarmStatus alarmStatus) {
+        Assertions.assertEquals(alarmStatus, SensorCodec.decodeAlarmStatus(SensorCodec.encode(alarmStatus)));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ArmingStatus.class)
+    public void decodeArmingStatus_encodedStatus_roundTrips(ArmingStatus armingStatus) {
+        Assertions.assertEquals(armingStatus, SensorCodec.decodeArmingStatus(SensorCodec.encode(armingStatus)));
+    }
+}
@@ -0,0 +1,209 @@
+package com.udacity.udasecurity.security.data;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class SensorStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private final SensorStore store = new SensorStore();
+
+    @Test
+    public void update_sensorChangedInPlace_countsFollowLatestState() {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor motion = new Sensor("motion", SensorType.MOTION);
+        store.update(door);
+        store.update(motion);
+        door.setActive(true);
+        store.update(door);
+        motion.setActive(true);
+        store.update(motion);
+        store.update(motion);
+        door.setActive(false);
+        store.update(door);
+
+        Assertions.assertAll(
+                () -> Assertions.assertTrue(store.isAnyActive()),
+                () -> Assertions.assertEquals(1, store.activeCount()),
+                () -> Assertions.assertEquals(0, store.activeCount(SensorType.DOOR)),
+                () -> Assertions.assertEquals(1, store.activeCount(SensorType.MOTION))
+        );
+    }
+
+    @Test
+    public void remove_activeSensor_slotReusedAndCountsCleared() {
+        for (int i = 0; i < 40; i++) {
+            Sensor sensor = new Sensor("window" + i, SensorType.WINDOW);
+            sensor.setActive(true);
+            store.update(sensor);
+            store.remove(sensor.getSensorId());
+        }
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        store.update(door);
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(1, store.size()),
+                () -> Assertions.assertFalse(store.isAnyActive()),
+                () -> Assertions.assertEquals(0, store.activeCount(SensorType.WINDOW))
+        );
+    }
+
+    @Test
+    public void sorted_onlyActiveFlagChanged_reusesView() {
+        Sensor back = new Sensor("back", SensorType.DOOR);
+        Sensor front = new Sensor("front", SensorType.DOOR);
+        store.update(front);
+        store.update(back);
+        Set<Sensor> view = store.sorted();
+        List<String> names = view.stream().map(Sensor::getName).collect(Collectors.toList());
+        back.setActive(true);
+        store.update(back);
+        Set<Sensor> afterToggle = store.sorted();
+        front.setName("attic");
+        store.update(front);
+
+        Assertions.assertAll(
+                () -> Assertions.assertSame(view, afterToggle),
+                () -> Assertions.assertEquals(List.of("back", "front"), names),
+                () -> Assertions.assertEquals(List.of("attic", "back"), store.sorted().stream().map(Sensor::getName).collect(Collectors.toList()))
+        );
+    }
+
+    @Test
+    public void deactivateAll_someActive_returnsOnlyThoseAndClearsCounts() {
+        List<Sensor> active = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Sensor sensor = new Sensor("sensor" + i, SensorType.values()[i % SensorType.values().length]);
+            sensor.setActive(i % 5 == 0);
+            store.update(sensor);
+            if (sensor.getActive()) {
+                active.add(sensor);
+            }
+        }
+
+        List<Sensor> deactivated = store.deactivateAll();
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(Set.copyOf(active), Set.copyOf(deactivated)),
+                () -> Assertions.assertTrue(deactivated.stream().noneMatch(Sensor::getActive)),
+                () -> Assertions.assertFalse(store.isAnyActive()),
+                () -> Assertions.assertEquals(0, store.activeCount(SensorType.DOOR)),
+                () -> Assertions.assertTrue(store.deactivateAll().isEmpty())
+        );
+    }
+
+    @Test
+    public void snapshot_sensorsChangedAfterwards_snapshotUnaffectedAndVersionMoves() {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        store.update(door);
+        SensorSnapshot first = store.snapshot();
+        store.update(door);
+        SensorSnapshot unchanged = store.snapshot();
+        door.setActive(true);
+        store.update(door);
+        SensorSnapshot published = store.publishedSnapshot();
+        SensorSnapshot second = store.snapshot();
+
+        Assertions.assertAll(
+                () -> Assertions.assertSame(first, unchanged),
+                () -> Assertions.assertSame(second, store.publishedSnapshot()),
+                () -> Assertions.assertNull(published),
+                () -> Assertions.assertTrue(second.changedSince(first.getVersion())),
+                () -> Assertions.assertFalse(second.changedSince(second.getVersion())),
+                () -> Assertions.assertFalse(first.getSensors().iterator().next().getActive()),
+                () -> Assertions.assertEquals(0, first.getActiveCount()),
+                () -> Assertions.assertEquals(1, second.getActiveCount()),
+                () -> Assertions.assertThrows(UnsupportedOperationException.class, () -> second.getSensors().clear())
+        );
+    }
+
+    @Test
+    public void update_snapshotCopy_appliedToStoredSensor() {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        store.update(door);
+        Sensor copy = store.snapshot().getSensors().iterator().next();
+        copy.setActive(true);
+        copy.setName("front door");
+        store.update(copy);
+
+        Assertions.assertAll(
+                () -> Assertions.assertSame(door, store.sorted().iterator().next()),
+                () -> Assertions.assertTrue(door.getActive()),
+                () -> Assertions.assertEquals("front door", door.getName()),
+                () -> Assertions.assertEquals(1, store.activeCount(SensorType.DOOR)),
+                () -> Assertions.assertEquals(1, store.size())
+        );
+    }
+
+    @Test
+    public void snapshotSource_countsAnsweredBeforeSensorsDecoded() throws IOException {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Sensor sensor = new Sensor("sensor" + i, SensorType.values()[i % SensorType.values().length]);
+            sensor.setActive(i % 10 == 0);
+            sensors.add(sensor);
+        }
+        Path path = directory.resolve("snapshot.bin");
+        SnapshotFile.write(path, AlarmStatus.PENDING_ALARM, ArmingStatus.ARMED_AWAY, 7, sensors);
+        SnapshotFile snapshot = SnapshotFile.open(path);
+        SensorStore lazy = new SensorStore(snapshot.getSensors());
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(AlarmStatus.PENDING_ALARM, snapshot.getAlarmStatus()),
+                () -> Assertions.assertEquals(ArmingStatus.ARMED_AWAY, snapshot.getArmingStatus()),
+                () -> Assertions.assertEquals(7, snapshot.getSegment()),
+                () -> Assertions.assertEquals(10, lazy.activeCount()),
+                () -> Assertions.assertEquals(100, lazy.size()),
+                () -> Assertions.assertFalse(lazy.isLoaded())
+        );
+        Assertions.assertEquals(sensors.stream().sorted().collect(Collectors.toList()), new ArrayList<>(lazy.sorted()));
+        Assertions.assertAll(
+                () -> Assertions.assertTrue(lazy.isLoaded()),
+                () -> Assertions.assertEquals(10, lazy.activeCount()),
+                () -> Assertions.assertEquals(sensors.get(10).getActive(), lazy.sorted().stream()
+                        .filter(s -> s.getName().equals("sensor10")).findFirst().orElseThrow().getActive())
+        );
+    }
+
+    @Test
+    public void snapshotSource_corruptRecord_storeStaysUnloaded() throws IOException {
+        List<Sensor> sensors = List.of(new Sensor("door", SensorType.DOOR), new Sensor("window", SensorType.WINDOW));
+        Path path = directory.resolve("snapshot.bin");
+        SnapshotFile.write(path, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, 0, sensors);
+        byte[] bytes = Files.readAllBytes(path);
+        //last byte of the last sensor's name
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(path, bytes);
+        SensorStore lazy = new SensorStore(SnapshotFile.open(path).getSensors());
+
+        Assertions.assertAll(
+                () -> Assertions.assertThrows(IllegalArgumentException.class, lazy::sorted),
+                () -> Assertions.assertThrows(IllegalArgumentException.class, lazy::sorted),
+                () -> Assertions.assertFalse(lazy.isLoaded()),
+                () -> Assertions.assertEquals(2, lazy.size())
+        );
+    }
+
+    @Test
+    public void snapshotFile_corruptHeader_failsToOpen() throws IOException {
+        Path path = directory.resolve("snapshot.bin");
+        SnapshotFile.write(path, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, 0, List.of(new Sensor("door", SensorType.DOOR)));
+        byte[] bytes = Files.readAllBytes(path);
+        //low byte of the segment number
+        bytes[23] ^= 1;
+        Files.write(path, bytes);
+
+        Assertions.assertThrows(IOException.class, () -> SnapshotFile.open(path));
+    }
+}
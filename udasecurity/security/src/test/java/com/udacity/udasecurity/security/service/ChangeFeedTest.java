@@ -0,0 +1,71 @@
+package com.udacity.udasecurity.security.service;
+
+import com.udacity.udasecurity.security.data.AlarmStatus;
+import com.udacity.udasecurity.security.data.Sensor;
+import com.udacity.udasecurity.security.data.SensorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+public class ChangeFeedTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void poll_cursorBehindRing_readsOverwrittenEventsFromSpill() throws IOException {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        try (ChangeFeed feed = new ChangeFeed(8, directory.resolve("feed.spill"))) {
+            ChangeFeed.Cursor cursor = feed.cursor(1);
+            for (int i = 0; i < 1000; i++) {
+                door.setActive(i % 2 == 0);
+                feed.sensorChanged(door);
+            }
+            feed.alarmChanged(AlarmStatus.PENDING_ALARM);
+
+            List<ChangeEvent> events = new ArrayList<>();
+            List<ChangeEvent> batch;
+            while (!(batch = cursor.poll(64)).isEmpty()) {
+                events.addAll(batch);
+            }
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(LongStream.rangeClosed(1, 1001).boxed().collect(Collectors.toList()),
+                            events.stream().map(ChangeEvent::getSequence).collect(Collectors.toList())),
+                    () -> Assertions.assertEquals(door.getSensorId(), events.get(0).getSensorId()),
+                    () -> Assertions.assertTrue(events.get(0).isActive()),
+                    () -> Assertions.assertFalse(events.get(1).isActive()),
+                    () -> Assertions.assertEquals(AlarmStatus.PENDING_ALARM, events.get(1000).getAlarmStatus()),
+                    () -> Assertions.assertEquals(0, cursor.getMissed()),
+                    () -> Assertions.assertEquals(1002, cursor.getPosition())
+            );
+        }
+    }
+
+    @Test
+    public void poll_memoryOnlyCursorBehindRing_skipsToOldestAndCountsMissed() {
+        ChangeFeed feed = new ChangeFeed(4);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        for (int i = 0; i < 10; i++) {
+            feed.sensorChanged(window);
+        }
+
+        ChangeFeed.Cursor cursor = feed.cursor(1);
+        List<ChangeEvent> events = cursor.poll(100);
+        ChangeFeed.Cursor resumed = feed.cursor(9);
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(List.of(7L, 8L, 9L, 10L), events.stream().map(ChangeEvent::getSequence).collect(Collectors.toList())),
+                () -> Assertions.assertEquals(6, cursor.getMissed()),
+                () -> Assertions.assertEquals(2, resumed.poll(100).size()),
+                () -> Assertions.assertTrue(feed.tail().poll(100).isEmpty())
+        );
+    }
+}
@@ -0,0 +1,49 @@
+package com.udacity.udasecurity.security.service;
+
+import com.udacity.udasecurity.security.data.HistoryStore;
+import com.udacity.udasecurity.security.data.Sensor;
+import com.udacity.udasecurity.security.data.SensorType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HistoryRecorderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void drain_storeFailsMidBatch_recordsRemainingEventsNextTime() throws IOException {
+        AtomicInteger calls = new AtomicInteger();
+        ChangeFeed changeFeed = new ChangeFeed(ChangeFeed.DEFAULT_CAPACITY);
+        try (HistoryStore store = new HistoryStore(directory) {
+            @Override
+            public synchronized void recordSensor(long timeMillis, UUID sensorId, SensorType sensorType, boolean active) {
+                if (calls.incrementAndGet() == 2) {
+                    throw new IllegalStateException("disk full");
+                }
+                super.recordSensor(timeMillis, sensorId, sensorType, active);
+            }
+        };
+             HistoryRecorder recorder = new HistoryRecorder(changeFeed, store, 60_000)) {
+            for (int i = 0; i < 3; i++) {
+                Sensor door = new Sensor("door " + i, SensorType.DOOR);
+                door.setActive(true);
+                changeFeed.sensorChanged(door);
+            }
+
+            Assertions.assertThrows(IllegalStateException.class, recorder::drain);
+            recorder.drain();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(4, calls.get()),
+                    () -> Assertions.assertEquals(3, store.countActivations(SensorType.DOOR, 0, Long.MAX_VALUE))
+            );
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.udacity.udasecurity.security.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class MicroBatcherTest {
+
+    private final List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void submit_withinWindow_handledAsOneBatch() throws Exception {
+        try (MicroBatcher<Integer, Integer> batcher = new MicroBatcher<>("test", 200, 100, this::square)) {
+            CompletableFuture<Integer> first = batcher.submit(2);
+            CompletableFuture<Integer> second = batcher.submit(3);
+
+            Assertions.assertEquals(4, first.get(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(9, second.get(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(List.of(List.of(2, 3)), batches);
+        }
+    }
+
+    @Test
+    public void submit_batchFull_flushedWithoutWaitingForWindow() throws Exception {
+        try (MicroBatcher<Integer, Integer> batcher = new MicroBatcher<>("test", TimeUnit.MINUTES.toMillis(1), 2, this::square)) {
+            batcher.submit(1);
+            CompletableFuture<Integer> last = batcher.submit(4);
+
+            Assertions.assertEquals(16, last.get(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(List.of(List.of(1, 4)), batches);
+        }
+    }
+
+    private List<Integer> square(List<Integer> batch) {
+        batches.add(batch);
+        return batch.stream().map(i -> i * i).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,136 @@
+package com.udacity.udasecurity.security.service;
+
+import com.udacity.udasecurity.image.service.FakeImageService;
+import com.udacity.udasecurity.security.data.AlarmStatus;
+import com.udacity.udasecurity.security.data.ArmingStatus;
+import com.udacity.udasecurity.security.data.EventLogStorageEngine;
+import com.udacity.udasecurity.security.data.Sensor;
+import com.udacity.udasecurity.security.data.SensorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class SecurityServiceHostTest {
+
+    @TempDir
+    Path directory;
+
+    private EventLogStorageEngine storageEngine;
+    private SecurityServiceHost host;
+
+    @BeforeEach
+    void init() {
+        storageEngine = new EventLogStorageEngine(directory, 0, 100, 1);
+        host = new SecurityServiceHost(storageEngine::open, tenantId -> new FakeImageService(), 0);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        host.close();
+        storageEngine.close();
+    }
+
+    @Test
+    public void withTenant_afterEviction_reloadsOwnState() {
+        host.withTenant("home-1", service -> {
+            Sensor door = new Sensor("door", SensorType.DOOR);
+            service.addSensor(door);
+            service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            return service.submitSensorEvent(new SensorEvent(door, true));
+        });
+        host.withTenant("home-2", service -> {
+            service.addSensor(new Sensor("window", SensorType.WINDOW));
+            return null;
+        });
+
+        Assertions.assertEquals(2, host.evictIdle());
+        Assertions.assertEquals(0, storageEngine.getOpenCount());
+
+        AlarmStatus alarmStatus = host.withTenant("home-1", SecurityService::getAlarmStatus);
+        Set<Sensor> sensors = host.withTenant("home-1", SecurityService::getSensors);
+        ArmingStatus otherArmingStatus = host.withTenant("home-2", SecurityService::getArmingStatus);
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(AlarmStatus.PENDING_ALARM, alarmStatus),
+                () -> Assertions.assertEquals(1, sensors.size()),
+                () -> Assertions.assertTrue(sensors.iterator().next().getActive()),
+                () -> Assertions.assertEquals(ArmingStatus.DISARMED, otherArmingStatus),
+                () -> Assertions.assertEquals(Set.of("home-1", "home-2"), host.getLoadedTenants())
+        );
+    }
+
+    @Test
+    public void evictIdle_tenantInUse_kept() {
+        host.withTenant("home-1", service -> {
+            Assertions.assertEquals(0, host.evictIdle());
+            return null;
+        });
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(Set.of("home-1"), host.getLoadedTenants()),
+                () -> Assertions.assertEquals(1, host.evictIdle()),
+                () -> Assertions.assertTrue(host.getLoadedTenants().isEmpty())
+        );
+    }
+
+    @Test
+    public void processImageAsync_afterAnotherTenantEvicted_sharedWorkersStillRun() throws Exception {
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        host.withTenant("home-1", service -> service.processImageAsync(image)).get(5, TimeUnit.SECONDS);
+        host.withTenant("home-2", service -> null);
+        host.withTenant("home-2", service -> {
+            Assertions.assertEquals(1, host.evictIdle());
+            return null;
+        });
+
+        CompletableFuture<Boolean> result = host.withTenant("home-2", service -> service.processImageAsync(image));
+
+        Assertions.assertNotNull(result.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void evictIdle_imageStillAnalyzed_closesRepositoryAfterResult() throws Exception {
+        CountDownLatch classifying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        host.close();
+        host = new SecurityServiceHost(storageEngine::open, tenantId -> new FakeImageService() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+                classifying.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+        }, 0);
+
+        CompletableFuture<Boolean> result = host.withTenant("home-1",
+                service -> service.processImageAsync(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB)));
+        Assertions.assertTrue(classifying.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Integer> evicted = CompletableFuture.supplyAsync(host::evictIdle);
+
+        Assertions.assertThrows(TimeoutException.class, () -> evicted.get(200, TimeUnit.MILLISECONDS));
+        int openWhileAnalyzing = storageEngine.getOpenCount();
+        release.countDown();
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(1, openWhileAnalyzing),
+                () -> Assertions.assertEquals(1, evicted.get(5, TimeUnit.SECONDS)),
+                () -> Assertions.assertTrue(result.isDone()),
+                () -> Assertions.assertEquals(0, storageEngine.getOpenCount())
+        );
+    }
+}
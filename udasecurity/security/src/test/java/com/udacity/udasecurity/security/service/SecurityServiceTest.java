@@ -1,26 +1,43 @@
 package com.udacity.udasecurity.security.service;
 
 import com.udacity.udasecurity.image.service.FakeImageService;
+import com.udacity.udasecurity.metrics.Counter;
+import com.udacity.udasecurity.metrics.MetricsRegistry;
 import com.udacity.udasecurity.security.application.FakePanel;
 import com.udacity.udasecurity.security.application.StatusListener;
 import com.udacity.udasecurity.security.data.*;
 import com.udacity.udasecurity.security.data.PretendDatabaseSecurityRepositoryImpl;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @ExtendWith(MockitoExtension.class)
 public class SecurityServiceTest {
 
+    @TempDir
+    Path directory;
+
     private SecurityService securityService;
 
     @Mock
@@ -140,6 +157,227 @@ public class SecurityServiceTest {
         Mockito.verify(securityRepository).setAlarmStatus(AlarmStatus.ALARM);
     }
 
+    @ParameterizedTest
+    @MethodSource("differentImageType")
+    public void detectCatAsync_whenAlarmArmedHome_returnAlarmStatusAlarm(BufferedImage image) throws Exception {
+        Mockito.doReturn(true)
+                .when(imageService)
+                .imageContainsCat(Mockito.any(BufferedImage.class), Mockito.anyFloat());
+        Mockito.doReturn(ArmingStatus.ARMED_HOME)
+                .when(securityRepository)
+                .getArmingStatus();
+        securityService.configureImageProcessing(1, 1, Runnable::run);
+
+        Assertions.assertTrue(securityService.processImageAsync(image).get(5, TimeUnit.SECONDS));
+        Mockito.verify(securityRepository).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    @Test
+    public void processImageAsync_notConfigured_throwsIllegalState() {
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> securityService.processImageAsync(image));
+    }
+
+    @Test
+    public void submitFrames_catInOneFrame_classifiedAsOneBatch() throws Exception {
+        BufferedImage quietCamera = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        BufferedImage catCamera = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        Mockito.doReturn(List.of(false, true))
+                .when(imageService)
+                .classifyBatch(Mockito.eq(List.of(quietCamera, catCamera)), Mockito.anyFloat());
+        Mockito.doReturn(ArmingStatus.ARMED_HOME)
+                .when(securityRepository)
+                .getArmingStatus();
+
+        CompletableFuture<Boolean> quiet = securityService.submitFrame(quietCamera);
+        CompletableFuture<Boolean> cat = securityService.submitFrame(catCamera);
+
+        Assertions.assertFalse(quiet.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(cat.get(5, TimeUnit.SECONDS));
+        Mockito.verify(securityRepository).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    @Test
+    public void detectNoCatOnSecondCamera_whenFirstCameraDetectsCat_keepAlarmStatusAlarm() {
+        Camera porch = new Camera("porch");
+        Camera garage = new Camera("garage");
+        securityService.addCamera(porch);
+        securityService.addCamera(garage);
+        BufferedImage catImage = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        BufferedImage emptyImage = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        Mockito.doReturn(true).when(imageService).imageContainsCat(Mockito.eq(catImage), Mockito.anyFloat());
+        Mockito.doReturn(false).when(imageService).imageContainsCat(Mockito.eq(emptyImage), Mockito.anyFloat());
+        Mockito.doReturn(ArmingStatus.ARMED_HOME).when(securityRepository).getArmingStatus();
+
+        securityService.processImage(porch.getCameraId(), catImage);
+        securityService.processImage(garage.getCameraId(), emptyImage);
+
+        Assertions.assertAll(
+                () -> Assertions.assertTrue(porch.isCatDetected()),
+                () -> Assertions.assertFalse(garage.isCatDetected()),
+                () -> Mockito.verify(securityRepository, Mockito.never()).setAlarmStatus(AlarmStatus.NO_ALARM)
+        );
+    }
+
+    @Test
+    public void removeCamera_onlyCameraDetectingCat_returnNoAlarm() {
+        Camera porch = new Camera("porch");
+        securityService.addCamera(porch);
+        BufferedImage catImage = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        Mockito.doReturn(true).when(imageService).imageContainsCat(Mockito.eq(catImage), Mockito.anyFloat());
+        Mockito.doReturn(ArmingStatus.ARMED_HOME).when(securityRepository).getArmingStatus();
+        securityService.processImage(porch.getCameraId(), catImage);
+
+        securityService.removeCamera(porch);
+
+        Assertions.assertAll(
+                () -> Assertions.assertFalse(securityService.isAnyCameraDetectingCat()),
+                () -> Mockito.verify(securityRepository).setAlarmStatus(AlarmStatus.ALARM),
+                () -> Mockito.verify(securityRepository).setAlarmStatus(AlarmStatus.NO_ALARM)
+        );
+    }
+
+    @Test
+    public void activateSensorsConcurrently_whenArmed_escalateToAlarmAndPersistLatestStatus() throws Exception {
+        Mockito.when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_AWAY);
+        Mockito.when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        List<CompletableFuture<Void>> activations = Stream.of(SensorType.values())
+                .map(type -> new Sensor("sensor" + type, type))
+                .map(sensor -> CompletableFuture.runAsync(() -> securityService.changeSensorActivationStatus(sensor, true)))
+                .collect(Collectors.toList());
+        CompletableFuture.allOf(activations.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        ArgumentCaptor<AlarmStatus> written = ArgumentCaptor.forClass(AlarmStatus.class);
+        Mockito.verify(securityRepository, Mockito.atLeastOnce()).setAlarmStatus(written.capture());
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus()),
+                () -> Assertions.assertEquals(AlarmStatus.ALARM, written.getValue())
+        );
+    }
+
+    @Test
+    public void changeSensorActivationStatus_sensorFromSnapshot_snapshotUnchanged() throws IOException {
+        try (EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory, 0, 100)) {
+            securityService = new SecurityService(repository, imageService);
+            securityService.addSensor(new Sensor("door", SensorType.DOOR));
+            SensorSnapshot before = securityService.getSensorSnapshot();
+            Sensor copy = before.getSensors().iterator().next();
+
+            securityService.changeSensorActivationStatus(copy, true);
+            SensorSnapshot after = securityService.getSensorSnapshot();
+
+            Assertions.assertAll(
+                    () -> Assertions.assertFalse(copy.getActive()),
+                    () -> Assertions.assertEquals(0, before.getActiveCount()),
+                    () -> Assertions.assertEquals(1, after.getActiveCount()),
+                    () -> Assertions.assertTrue(after.getSensors().iterator().next().getActive()),
+                    () -> Assertions.assertEquals(1, repository.getActiveSensorCount())
+            );
+        }
+    }
+
+    @Test
+    public void submitSensorEvents_burstFromOneSensor_persistAndEscalateOnce() {
+        Mockito.when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_AWAY);
+        Mockito.when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        List<Runnable> dispatched = new ArrayList<>();
+        securityService = new SecurityService(securityRepository, imageService, new StatusEventBus(dispatched::add, dispatched::add));
+        AtomicInteger sensorNotifications = new AtomicInteger();
+        securityService.addStatusListener(new FakePanel() {
+            @Override
+            public void sensorStatusChanged() {
+                sensorNotifications.incrementAndGet();
+            }
+        });
+        Sensor motion = new Sensor("motion", SensorType.MOTION);
+        List<SensorEvent> burst = Stream.generate(() -> new SensorEvent(motion, true)).limit(50).collect(Collectors.toList());
+
+        securityService.submitSensorEvents(burst);
+        dispatched.forEach(Runnable::run);
+
+        Assertions.assertAll(
+                () -> Assertions.assertTrue(motion.getActive()),
+                () -> Mockito.verify(securityRepository).updateSensors(List.of(motion)),
+                () -> Mockito.verify(securityRepository).setAlarmStatus(AlarmStatus.PENDING_ALARM),
+                () -> Mockito.verify(securityRepository, Mockito.never()).setAlarmStatus(AlarmStatus.ALARM),
+                () -> Assertions.assertEquals(1, sensorNotifications.get())
+        );
+    }
+
+    @Test
+    public void submitSensorEvent_twoSensorsWithinWindow_returnAlarm() throws Exception {
+        Mockito.when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        Mockito.when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+
+        CompletableFuture.allOf(
+                securityService.submitSensorEvent(new SensorEvent(door, true)),
+                securityService.submitSensorEvent(new SensorEvent(window, true))
+        ).get(5, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void changeSensorDeactivated_whenCatDetectedMeanwhile_retryKeepsAlarm() throws IOException {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        BufferedImage catImage = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        Mockito.doReturn(true).when(imageService).imageContainsCat(Mockito.eq(catImage), Mockito.anyFloat());
+        AtomicBoolean catArrived = new AtomicBoolean();
+        try (EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory, 0, 100) {
+            @Override
+            public boolean isAnySensorActive() {
+                //another caller wins the compare-and-set while the deactivation decides
+                if (catArrived.compareAndSet(false, true)) {
+                    securityService.processImage(catImage);
+                }
+                return super.isAnySensorActive();
+            }
+        }) {
+            securityService = new SecurityService(repository, imageService);
+            securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+            securityService.addSensor(door);
+            securityService.changeSensorActivationStatus(door, true);
+
+            securityService.changeSensorActivationStatus(door, false);
+
+            Assertions.assertAll(
+                    () -> Assertions.assertTrue(catArrived.get()),
+                    () -> Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus()),
+                    () -> Assertions.assertEquals(AlarmStatus.ALARM, repository.getAlarmStatus())
+            );
+        }
+    }
+
+    @Test
+    public void toggleSensorsConcurrently_whenArmed_storedStatusMatchesState() throws Exception {
+        try (EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory, 0, 100)) {
+            securityService = new SecurityService(repository, imageService);
+            securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            List<Sensor> sensors = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                Sensor sensor = new Sensor("sensor" + i, SensorType.values()[i % SensorType.values().length]);
+                securityService.addSensor(sensor);
+                sensors.add(sensor);
+            }
+            List<CompletableFuture<Void>> toggles = sensors.stream()
+                    .map(sensor -> CompletableFuture.runAsync(() -> {
+                        for (int i = 0; i < 100; i++) {
+                            securityService.changeSensorActivationStatus(sensor, i % 2 == 0);
+                        }
+                    }))
+                    .collect(Collectors.toList());
+            CompletableFuture.allOf(toggles.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+            Assertions.assertAll(
+                    () -> Assertions.assertEquals(0, repository.getActiveSensorCount()),
+                    () -> Assertions.assertEquals(securityService.getAlarmStatus(), repository.getAlarmStatus())
+            );
+        }
+    }
+
 //  8. If the image service identifies an image that does not contain a cat, change the status to no alarm as long as the sensors are not active.
     @ParameterizedTest
     @MethodSource("differentImageType")
@@ -162,6 +400,24 @@ public class SecurityServiceTest {
         Mockito.verify(securityRepository).setAlarmStatus(AlarmStatus.NO_ALARM);
     }
 
+    @Test
+    public void setArmingStatus_disarmedWithoutAlarm_countsNoTransition() {
+        Mockito.when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        MetricsRegistry metrics = MetricsRegistry.global();
+        boolean wasEnabled = metrics.isEnabled();
+        metrics.setEnabled(true);
+        try {
+            Counter selfTransitions = metrics.counter("alarm.transition.NO_ALARM.NO_ALARM");
+            long before = selfTransitions.getCount();
+
+            securityService.setArmingStatus(ArmingStatus.DISARMED);
+
+            Assertions.assertEquals(before, selfTransitions.getCount());
+        } finally {
+            metrics.setEnabled(wasEnabled);
+        }
+    }
+
 //  10. If the system is armed, reset all sensors to inactive.
     @ParameterizedTest
     @EnumSource(value = ArmingStatus.class, names = {"ARMED_HOME", "ARMED_AWAY"})
@@ -171,6 +427,162 @@ public class SecurityServiceTest {
         Assertions.assertTrue(securityService.getSensors().stream().noneMatch(Sensor::getActive));
     }
 
+    @Test
+    public void resetAllSensors_whenSensorsActive_resetsInOneRepositoryCallAndOneNotification() {
+        Mockito.when(securityRepository.isAnySensorActive()).thenReturn(true);
+        List<Runnable> dispatched = new ArrayList<>();
+        securityService = new SecurityService(securityRepository, imageService, new StatusEventBus(dispatched::add, dispatched::add));
+        AtomicInteger sensorNotifications = new AtomicInteger();
+        securityService.addStatusListener(new FakePanel() {
+            @Override
+            public void sensorStatusChanged() {
+                sensorNotifications.incrementAndGet();
+            }
+        });
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        dispatched.forEach(Runnable::run);
+
+        Assertions.assertAll(
+                () -> Mockito.verify(securityRepository).resetAll(),
+                () -> Mockito.verify(securityRepository, Mockito.never()).updateSensor(Mockito.any()),
+                () -> Assertions.assertEquals(1, sensorNotifications.get())
+        );
+    }
+
+    @Test
+    public void changeFeed_armThenSensorActivated_recordsChangesInOrder() {
+        Mockito.when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.DISARMED);
+        Mockito.when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        ChangeFeed.Cursor cursor = securityService.getChangeFeed().tail();
+        Sensor door = new Sensor("door", SensorType.DOOR);
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.changeSensorActivationStatus(door, true);
+
+        List<ChangeEvent> events = cursor.poll(10);
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(List.of(ChangeEvent.Type.ARMING, ChangeEvent.Type.SENSOR, ChangeEvent.Type.ALARM),
+                        events.stream().map(ChangeEvent::getType).collect(Collectors.toList())),
+                () -> Assertions.assertEquals(ArmingStatus.ARMED_AWAY, events.get(0).getArmingStatus()),
+                () -> Assertions.assertEquals(door.getSensorId(), events.get(1).getSensorId()),
+                () -> Assertions.assertTrue(events.get(1).isActive()),
+                () -> Assertions.assertEquals(AlarmStatus.PENDING_ALARM, events.get(2).getAlarmStatus())
+        );
+    }
+
+    @Test
+    public void entryDelay_pendingAlarmNotDisarmed_escalatesToAlarm() {
+        Mockito.when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.DISARMED);
+        Mockito.when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        AtomicLong clock = new AtomicLong();
+        TimerWheel timerWheel = new TimerWheel(10, clock::get);
+        securityService.configureTimers(timerWheel, Runnable::run);
+        securityService.setEntryDelay(ArmingStatus.ARMED_AWAY, 30_000);
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.changeSensorActivationStatus(new Sensor("door", SensorType.DOOR), true);
+        clock.set(TimeUnit.MILLISECONDS.toNanos(29_990));
+        timerWheel.advance();
+        AlarmStatus beforeDelay = securityService.getAlarmStatus();
+        clock.set(TimeUnit.MILLISECONDS.toNanos(30_000));
+        timerWheel.advance();
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(AlarmStatus.PENDING_ALARM, beforeDelay),
+                () -> Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus()),
+                () -> Mockito.verify(securityRepository).setAlarmStatus(AlarmStatus.ALARM)
+        );
+    }
+
+    @Test
+    public void entryDelay_expired_escalatesOnTimerExecutorNotTickThread() {
+        Mockito.when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.DISARMED);
+        Mockito.when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        AtomicLong clock = new AtomicLong();
+        TimerWheel timerWheel = new TimerWheel(10, clock::get);
+        List<Runnable> handedOff = new ArrayList<>();
+        securityService.configureTimers(timerWheel, handedOff::add);
+        securityService.setEntryDelay(ArmingStatus.ARMED_AWAY, 30_000);
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.changeSensorActivationStatus(new Sensor("door", SensorType.DOOR), true);
+        clock.set(TimeUnit.MILLISECONDS.toNanos(30_000));
+        timerWheel.advance();
+        AlarmStatus afterTick = securityService.getAlarmStatus();
+        handedOff.forEach(Runnable::run);
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(AlarmStatus.PENDING_ALARM, afterTick),
+                () -> Assertions.assertEquals(1, handedOff.size()),
+                () -> Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus())
+        );
+    }
+
+    @Test
+    public void entryDelay_pendingAlarmLoadedFromRepository_escalatesAfterDelay() {
+        Mockito.when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        Mockito.when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.PENDING_ALARM);
+        AtomicLong clock = new AtomicLong();
+        TimerWheel timerWheel = new TimerWheel(10, clock::get);
+        securityService.configureTimers(timerWheel, Runnable::run);
+        securityService.setEntryDelay(ArmingStatus.ARMED_HOME, 30_000);
+
+        AlarmStatus loaded = securityService.getAlarmStatus();
+        clock.set(TimeUnit.MILLISECONDS.toNanos(30_000));
+        timerWheel.advance();
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(AlarmStatus.PENDING_ALARM, loaded),
+                () -> Assertions.assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus()),
+                () -> Mockito.verify(securityRepository).setAlarmStatus(AlarmStatus.ALARM)
+        );
+    }
+
+    @Test
+    public void entryDelay_disarmedDuringDelay_cancelsEscalation() {
+        Mockito.when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.DISARMED);
+        Mockito.when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        AtomicLong clock = new AtomicLong();
+        TimerWheel timerWheel = new TimerWheel(10, clock::get);
+        securityService.configureTimers(timerWheel, Runnable::run);
+        securityService.setEntryDelay(ArmingStatus.ARMED_HOME, 30_000);
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        securityService.changeSensorActivationStatus(new Sensor("door", SensorType.DOOR), true);
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+        clock.set(TimeUnit.MINUTES.toNanos(1));
+        timerWheel.advance();
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(0, timerWheel.getPending()),
+                () -> Assertions.assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus()),
+                () -> Mockito.verify(securityRepository, Mockito.never()).setAlarmStatus(AlarmStatus.ALARM)
+        );
+    }
+
+    @Test
+    public void exitDelay_sensorActivatedDuringDelay_pendingOnceDelayEnds() {
+        Mockito.when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.DISARMED);
+        Mockito.when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        Mockito.when(securityRepository.isAnySensorActive()).thenReturn(false, true);
+        AtomicLong clock = new AtomicLong();
+        TimerWheel timerWheel = new TimerWheel(10, clock::get);
+        securityService.configureTimers(timerWheel, Runnable::run);
+        securityService.setExitDelay(ArmingStatus.ARMED_AWAY, 60_000);
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.changeSensorActivationStatus(new Sensor("door", SensorType.DOOR), true);
+        AlarmStatus duringDelay = securityService.getAlarmStatus();
+        clock.set(TimeUnit.MINUTES.toNanos(1));
+        timerWheel.advance();
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(AlarmStatus.NO_ALARM, duringDelay),
+                () -> Assertions.assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus())
+        );
+    }
+
 //  11. If the system is armed-home while the camera shows a cat, set the alarm status to alarm.
     @ParameterizedTest
     @MethodSource("differentImageType")
@@ -0,0 +1,118 @@
+package com.udacity.udasecurity.security.service;
+
+import com.udacity.udasecurity.security.application.FakePanel;
+import com.udacity.udasecurity.security.data.AlarmStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StatusEventBusTest {
+
+    private final List<Runnable> dispatched = new ArrayList<>();
+    private final List<Runnable> uiDispatched = new ArrayList<>();
+    private final StatusEventBus bus = new StatusEventBus(dispatched::add, uiDispatched::add);
+
+    @Test
+    public void publish_burstBeforeDelivery_listenerSeesLatestStateOnly() {
+        List<Object> received = new ArrayList<>();
+        FakePanel listener = new FakePanel() {
+            @Override
+            public void notify(AlarmStatus status) {
+                received.add(status);
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+                received.add(catDetected);
+            }
+        };
+        bus.subscribe(listener);
+
+        bus.publishAlarmStatus(AlarmStatus.PENDING_ALARM);
+        bus.publishCatDetected(true);
+        bus.publishAlarmStatus(AlarmStatus.ALARM);
+        bus.publishCatDetected(false);
+        bus.publishAlarmStatus(AlarmStatus.NO_ALARM);
+        dispatched.forEach(Runnable::run);
+
+        StatusEventBus.ListenerStats stats = bus.getStats(listener);
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(1, dispatched.size()),
+                () -> Assertions.assertEquals(List.of(AlarmStatus.NO_ALARM, false), received),
+                () -> Assertions.assertEquals(2, stats.getDelivered()),
+                () -> Assertions.assertEquals(3, stats.getDropped())
+        );
+    }
+
+    @Test
+    public void unsubscribe_duringDrain_noFurtherCalls() {
+        List<Object> received = new ArrayList<>();
+        FakePanel listener = new FakePanel() {
+            @Override
+            public void notify(AlarmStatus status) {
+                received.add(status);
+                bus.unsubscribe(this);
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+                received.add(catDetected);
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+                received.add("sensors");
+            }
+        };
+        bus.subscribe(listener);
+
+        bus.publishAlarmStatus(AlarmStatus.ALARM);
+        bus.publishCatDetected(true);
+        bus.publishSensorStatusChanged();
+        dispatched.forEach(Runnable::run);
+        bus.publishAlarmStatus(AlarmStatus.NO_ALARM);
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(List.of(AlarmStatus.ALARM), received),
+                () -> Assertions.assertEquals(1, dispatched.size()),
+                () -> Assertions.assertNull(bus.getStats(listener))
+        );
+    }
+
+    @Test
+    public void publish_failingAndUiListeners_othersStillDelivered() {
+        FakePanel failing = new FakePanel() {
+            @Override
+            public void sensorStatusChanged() {
+                throw new IllegalStateException("broken listener");
+            }
+        };
+        List<String> calls = new ArrayList<>();
+        FakePanel ui = new FakePanel() {
+            @Override
+            public void sensorStatusChanged() {
+                calls.add("ui");
+            }
+
+            @Override
+            public boolean onEventDispatchThread() {
+                return true;
+            }
+        };
+        bus.subscribe(failing);
+        bus.subscribe(ui);
+
+        bus.publishSensorStatusChanged();
+        dispatched.forEach(Runnable::run);
+        uiDispatched.forEach(Runnable::run);
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(1, dispatched.size()),
+                () -> Assertions.assertEquals(1, uiDispatched.size()),
+                () -> Assertions.assertEquals(List.of("ui"), calls),
+                () -> Assertions.assertEquals(1, bus.getStats(failing).getFailed())
+        );
+    }
+}
@@ -0,0 +1,97 @@
+package com.udacity.udasecurity.security.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TimerWheelTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void advance_delaysAcrossAllWheels_runsEachTaskOnItsTick() {
+        TimerWheel wheel = new TimerWheel(1, clock::get);
+        Map<Long, Long> ranAt = new TreeMap<>();
+        List<Long> delays = List.of(1L, 63L, 64L, 65L, 4095L, 4096L, 5000L, 300_000L, 20_000_000L);
+        for (long delay : delays) {
+            wheel.schedule(timeout -> ranAt.put(delay, now()), delay);
+        }
+
+        advanceTo(wheel, 6000, 1);
+        advanceTo(wheel, 400_000, 1000);
+        advanceTo(wheel, 20_000_000, 100_000);
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(delays, List.copyOf(ranAt.keySet())),
+                () -> ranAt.forEach((delay, time) -> Assertions.assertEquals(delay, time, "delay " + delay)),
+                () -> Assertions.assertEquals(0, wheel.getPending())
+        );
+    }
+
+    @Test
+    public void cancel_beforeDeadline_taskNeverRuns() {
+        TimerWheel wheel = new TimerWheel(10, clock::get);
+        int[] runs = new int[1];
+        TimerWheel.Timeout cancelled = wheel.schedule(timeout -> runs[0] += 100, 5000);
+        TimerWheel.Timeout kept = wheel.schedule(timeout -> runs[0]++, 5000);
+
+        boolean firstCancel = cancelled.cancel();
+        advanceTo(wheel, 10_000, 10);
+
+        Assertions.assertAll(
+                () -> Assertions.assertTrue(firstCancel),
+                () -> Assertions.assertFalse(cancelled.cancel()),
+                () -> Assertions.assertFalse(kept.cancel()),
+                () -> Assertions.assertTrue(cancelled.isCancelled()),
+                () -> Assertions.assertEquals(1, runs[0]),
+                () -> Assertions.assertEquals(0, wheel.getPending())
+        );
+    }
+
+    @Test
+    public void advance_taskThrows_otherTasksStillRun() {
+        TimerWheel wheel = new TimerWheel(10, clock::get);
+        int[] runs = new int[1];
+        wheel.schedule(timeout -> {
+            throw new IllegalStateException("test");
+        }, 100);
+        wheel.schedule(timeout -> runs[0]++, 100);
+        wheel.schedule(timeout -> runs[0]++, 200);
+
+        advanceTo(wheel, 300, 10);
+
+        Assertions.assertAll(
+                () -> Assertions.assertEquals(2, runs[0]),
+                () -> Assertions.assertEquals(0, wheel.getPending())
+        );
+    }
+
+    @Test
+    public void schedule_ownThread_runsTaskAfterDelay() throws InterruptedException {
+        try (TimerWheel wheel = new TimerWheel("test", 1)) {
+            CountDownLatch ran = new CountDownLatch(1);
+            long start = System.nanoTime();
+            wheel.schedule(timeout -> ran.countDown(), 50);
+
+            Assertions.assertTrue(ran.await(5, TimeUnit.SECONDS));
+            Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        }
+    }
+
+    private long now() {
+        return TimeUnit.NANOSECONDS.toMillis(clock.get());
+    }
+
+    private void advanceTo(TimerWheel wheel, long millis, long stepMillis) {
+        while (now() < millis) {
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(stepMillis));
+            wheel.advance();
+        }
+    }
+}